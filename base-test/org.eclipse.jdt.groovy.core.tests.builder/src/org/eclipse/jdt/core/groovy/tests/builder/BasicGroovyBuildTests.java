@@ -12,7 +12,10 @@ package org.eclipse.jdt.core.groovy.tests.builder;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -31,6 +34,7 @@ import org.codehaus.groovy.ast.expr.Expression;
 import org.codehaus.groovy.ast.stmt.ReturnStatement;
 import org.codehaus.groovy.vmplugin.VMPluginFactory;
 import org.codehaus.groovy.vmplugin.v5.Java5;
+import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyParser;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTClassNode;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTResolver;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
@@ -2474,6 +2478,213 @@ public class BasicGroovyBuildTests extends GroovierBuilderTests {
 		}
 	}
 
+	// the groovy units of a build are parsed and converted at the same time, with the same results
+	public void testParseAhead() throws Exception {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.addGroovyJars(projectPath);
+		fullBuild(projectPath);
+
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		env.addGroovyClass(root, "p1", "Hello", "package p1\n"
+				+ "class Hello {\n"
+				+ "   static main(args) { print new Other().greeting + new JavaType().name }\n"
+				+ "}\n");
+		env.addGroovyClass(root, "p1", "Other", "package p1\n"
+				+ "class Other {\n"
+				+ "   String greeting = 'Hello '\n"
+				+ "}\n");
+		env.addClass(root, "p1", "JavaType", "package p1;\n"
+				+ "public class JavaType {\n"
+				+ "   public String getName() { return \"Groovy\"; }\n"
+				+ "}\n");
+		env.addGroovyClass(root, "p2", "Broken", "package p2\n"
+				+ "class Broken {\n"
+				+ "   void m() {\n"
+				+ "}\n");
+		env.addGroovyClass(root, "p2", "Unresolved", "package p2\n"
+				+ "class Unresolved {\n"
+				+ "   Missing field\n"
+				+ "}\n");
+
+		try {
+			GroovyParser.setParseThreads(1);
+			int parsedAhead = GroovyParser.getParsedAheadCount();
+			fullBuild(projectPath);
+			assertEquals("Units should have been parsed one by one", parsedAhead, GroovyParser.getParsedAheadCount());
+			String problems = Arrays.toString(env.getProblemsFor(projectPath));
+			List<String> classFiles = getClassFiles(projectPath);
+			executeClass(projectPath, "p1.Hello", "Hello Groovy", null);
+
+			GroovyParser.setParseThreads(4);
+			fullBuild(projectPath);
+			assertEquals("All groovy units should have been parsed ahead", parsedAhead + 4, GroovyParser.getParsedAheadCount());
+			assertEquals(problems, Arrays.toString(env.getProblemsFor(projectPath)));
+			assertEquals(classFiles, getClassFiles(projectPath));
+			executeClass(projectPath, "p1.Hello", "Hello Groovy", null);
+		} finally {
+			GroovyParser.setParseThreads(1);
+		}
+	}
+
+	private List<String> getClassFiles(IPath projectPath) {
+		File bin = env.getWorkspace().getRoot().getFolder(projectPath.append("bin")).getLocation().toFile();
+		List<String> classFiles = new ArrayList<String>();
+		addClassFiles(bin, "", classFiles);
+		Collections.sort(classFiles);
+		return classFiles;
+	}
+
+	private void addClassFiles(File folder, String prefix, List<String> classFiles) {
+		File[] children = folder.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				if (child.isDirectory()) {
+					addClassFiles(child, prefix + child.getName() + "/", classFiles);
+				} else if (child.getName().endsWith(".class")) {
+					classFiles.add(prefix + child.getName());
+				}
+			}
+		}
+	}
+
+	// in the builder, star imports are probed against the listings of the packages
+	public void testStarImportFromJar() throws Exception {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.addGroovyJars(projectPath);
+		env.addJar(projectPath, "lib/junit4_4.5.0.jar"); //$NON-NLS-1$
+		fullBuild(projectPath);
+
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		env.addGroovyClass(root, "p1", "Hello", "package p1\n"
+				+ "import org.junit.*\n"
+				+ "class Hello {\n"
+				+ "   void m() { Assert.assertTrue(true) }\n"
+				+ "}\n");
+
+		incrementalBuild(projectPath);
+		expectingCompiledClassesV("p1.Hello");
+		expectingNoProblems();
+	}
+
+	public void testStarImportFromClassFolder() throws Exception {
+		IPath libPath = env.addProject("Lib"); //$NON-NLS-1$
+		env.addExternalJars(libPath, Util.getJavaClassLibs());
+		env.removePackageFragmentRoot(libPath, ""); //$NON-NLS-1$
+		IPath libRoot = env.addPackageFragmentRoot(libPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(libPath, "bin"); //$NON-NLS-1$
+		env.addClass(libRoot, "lib", "Util", "package lib;\n"
+				+ "public class Util {\n"
+				+ "   public static String greet() { return \"Hello\"; }\n"
+				+ "}\n");
+		fullBuild(libPath);
+		expectingNoProblems();
+
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.addGroovyJars(projectPath);
+		env.addClassFolder(projectPath, libPath.append("bin"), false);
+		fullBuild(projectPath);
+
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		env.addGroovyClass(root, "p1", "Hello", "package p1\n"
+				+ "import lib.*\n"
+				+ "class Hello {\n"
+				+ "   String m() { Util.greet() }\n"
+				+ "}\n");
+
+		incrementalBuild(projectPath);
+		expectingCompiledClassesV("p1.Hello");
+		expectingNoProblems();
+	}
+
+	public void testStarImportFromSameBuild() throws Exception {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.addGroovyJars(projectPath);
+		fullBuild(projectPath);
+
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		env.addGroovyClass(root, "p1", "Hello", "package p1\n"
+				+ "import q.*\n"
+				+ "class Hello {\n"
+				+ "   JavaType javaType\n"
+				+ "   GroovyType groovyType\n"
+				+ "}\n");
+		env.addClass(root, "q", "JavaType", "package q;\n"
+				+ "public class JavaType {}\n");
+		env.addGroovyClass(root, "q", "GroovyType", "package q\n"
+				+ "class GroovyType {}\n");
+
+		incrementalBuild(projectPath);
+		expectingCompiledClassesV("p1.Hello", "q.JavaType", "q.GroovyType");
+		expectingNoProblems();
+
+		// a type that is added to the star imported package while the importing type is changed
+		env.addGroovyClass(root, "p1", "Hello", "package p1\n"
+				+ "import q.*\n"
+				+ "class Hello {\n"
+				+ "   JavaType javaType\n"
+				+ "   Added added\n"
+				+ "}\n");
+		env.addClass(root, "q", "Added", "package q;\n"
+				+ "public class Added {}\n");
+
+		incrementalBuild(projectPath);
+		expectingCompiledClassesV("p1.Hello", "q.Added");
+		expectingNoProblems();
+	}
+
+	// the probe that failed is recorded, so that adding the type builds the importing type again
+	public void testStarImportTypeAddedLater() throws Exception {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.addGroovyJars(projectPath);
+		fullBuild(projectPath);
+
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		IPath helloPath = env.addGroovyClass(root, "p1", "Hello", "package p1\n"
+				+ "import q.*\n"
+				+ "class Hello {\n"
+				+ "   Later later\n"
+				+ "}\n");
+		env.addClass(root, "q", "Other", "package q;\n"
+				+ "public class Other {}\n");
+
+		incrementalBuild(projectPath);
+		Problem[] problems = env.getProblemsFor(helloPath);
+		assertEquals(Arrays.toString(problems), 1, problems.length);
+		assertTrue(problems[0].getMessage(), problems[0].getMessage().startsWith("Groovy:unable to resolve class Later"));
+
+		env.addClass(root, "q", "Later", "package q;\n"
+				+ "public class Later {}\n");
+
+		incrementalBuild(projectPath);
+		expectingCompiledClassesV("p1.Hello", "q.Later");
+		expectingNoProblems();
+	}
+
 	public void testIncrementalCompilationTheBasics() throws Exception {
 		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
 		env.addExternalJars(projectPath, Util.getJavaClassLibs());
@@ -19,9 +19,11 @@ import junit.framework.Test;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.codehaus.jdt.groovy.model.ModuleNodeMapper;
+import org.codehaus.jdt.groovy.model.ModuleNodeMapper.ModuleNodeInfo;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.IAnnotatable;
 import org.eclipse.jdt.core.IAnnotation;
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -212,6 +214,101 @@ public class GroovyCompilationUnitTests extends AbstractGroovyTypeRootTests {
         ModuleNode module2 = unit1.getNewModuleInfo().module;
         assertTrue("getNewModuleNode() should have forced creation of a new module node", module1 != module2);
     }
+
+    private GroovyCompilationUnit createSecondGroovyUnit() {
+        env.addGroovyClass(new Path("Project/src"), "p1", "Hello2",
+            "package p1;\n"+
+            "public class Hello2 {\n"+
+            "}\n"
+            );
+        return (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(getFile("Project/src/p1/Hello2.groovy"));
+    }
+
+    public void testEvictedModuleNodeIsReattached() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        GroovyCompilationUnit unit2 = createSecondGroovyUnit();
+        ModuleNodeMapper.setRetentionPolicy(1, Long.MAX_VALUE, false, true);
+        try {
+            unit1.becomeWorkingCopy(null);
+            ModuleNode node1 = unit1.getModuleNode();
+            ModuleNodeMapper.Statistics before = ModuleNodeMapper.getStatistics();
+            unit2.becomeWorkingCopy(null);
+            ModuleNodeMapper.Statistics afterEviction = ModuleNodeMapper.getStatistics();
+            assertEquals("Storing a second module node should evict the first", before.evictions + 1, afterEviction.evictions);
+
+            ModuleNode node2 = unit1.getModuleNode();
+            ModuleNodeMapper.Statistics afterReattach = ModuleNodeMapper.getStatistics();
+            assertSame("Evicted module node should be reattached", node1, node2);
+            assertEquals("Evicted module node should be reattached", afterEviction.reattachments + 1, afterReattach.reattachments);
+            assertEquals("Evicted module node should not be rebuilt", afterEviction.rebuilds, afterReattach.rebuilds);
+        } finally {
+            ModuleNodeMapper.resetRetentionPolicy();
+            unit1.discardWorkingCopy();
+            unit2.discardWorkingCopy();
+        }
+    }
+
+    public void testEvictedModuleNodeIsRebuiltAfterCollection() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        GroovyCompilationUnit unit2 = createSecondGroovyUnit();
+        // evicted entries are not retained, as if they had been garbage collected
+        ModuleNodeMapper.setRetentionPolicy(1, Long.MAX_VALUE, false, false);
+        try {
+            unit1.becomeWorkingCopy(null);
+            ModuleNode node1 = unit1.getModuleNode();
+            unit2.becomeWorkingCopy(null);
+            ModuleNodeMapper.Statistics afterEviction = ModuleNodeMapper.getStatistics();
+
+            ModuleNode node2 = unit1.getModuleNode();
+            ModuleNodeMapper.Statistics afterRebuild = ModuleNodeMapper.getStatistics();
+            assertNotNull("Collected module node should be rebuilt", node2);
+            assertNotSame("Collected module node should be rebuilt", node1, node2);
+            assertEquals("Collected module node should be rebuilt", afterEviction.rebuilds + 1, afterRebuild.rebuilds);
+            assertEquals("Collected module node cannot be reattached", afterEviction.reattachments, afterRebuild.reattachments);
+        } finally {
+            ModuleNodeMapper.resetRetentionPolicy();
+            unit1.discardWorkingCopy();
+            unit2.discardWorkingCopy();
+        }
+    }
+
+    public void testEvictedResolverIsReattached() throws Exception {
+        if (!ModuleNodeMapper.shouldStoreResovler()) {
+            // resolvers are only stored when DSL support is installed
+            return;
+        }
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        GroovyCompilationUnit unit2 = createSecondGroovyUnit();
+        ModuleNodeMapper.setRetentionPolicy(1, Long.MAX_VALUE, true, true);
+        try {
+            unit1.becomeWorkingCopy(null);
+            ModuleNodeInfo info1 = unit1.getModuleInfo(true);
+            assertNotNull("Resolver should be stored", info1.resolver);
+            ModuleNodeMapper.Statistics before = ModuleNodeMapper.getStatistics();
+            unit2.becomeWorkingCopy(null);
+            ModuleNodeMapper.Statistics afterEviction = ModuleNodeMapper.getStatistics();
+            assertEquals("Storing a second module node should evict the first resolver", before.resolverEvictions + 1,
+                    afterEviction.resolverEvictions);
+
+            assertSame("Module node should be kept when only its resolver is evicted", info1.module, unit1.getModuleNode());
+            assertEquals("Resolver is not needed for the module node", afterEviction.reattachments,
+                    ModuleNodeMapper.getStatistics().reattachments);
+
+            ModuleNodeInfo info2 = unit1.getModuleInfo(true);
+            ModuleNodeMapper.Statistics afterReattach = ModuleNodeMapper.getStatistics();
+            assertSame("Evicted resolver should be reattached", info1.resolver, info2.resolver);
+            assertSame("Evicted resolver should be reattached with its module node", info1.module, info2.module);
+            assertEquals("Evicted resolver should be reattached", afterEviction.reattachments + 1, afterReattach.reattachments);
+            assertEquals("Evicted resolver should not be rebuilt", afterEviction.rebuilds, afterReattach.rebuilds);
+        } finally {
+            ModuleNodeMapper.resetRetentionPolicy();
+            unit1.discardWorkingCopy();
+            unit2.discardWorkingCopy();
+        }
+    }
     
     
     public void testMarkerAnnotation_1() throws Exception {
@@ -222,6 +222,19 @@ public abstract class AbstractInferencingTest extends AbstractGroovySearchTest {
     }
     
     
+    /**
+     * Like {@link #assertType(String, int, int, String)}, but only the members that enclose the expression are inferred
+     */
+    protected void assertTypeInRegion(String contents, int exprStart, int exprEnd, String expectedType) {
+        GroovyCompilationUnit unit = createUnit("Search", contents);
+        TypeInferencingVisitorWithRequestor visitor = factory.createVisitor(unit);
+        SearchRequestor requestor = new SearchRequestor(exprStart, exprEnd);
+        visitor.visitCompilationUnit(requestor, exprStart, exprEnd - exprStart);
+
+        assertNotNull("Did not find expected ASTNode", requestor.node);
+        assertEquals("Wrong type inferred in region visit", expectedType, printTypeName(requestor.result.type));
+    }
+
     protected void assertDeclaringType(String contents, int exprStart, int exprEnd,
             String expectedDeclaringType) {
         assertDeclaringType(contents, exprStart, exprEnd, expectedDeclaringType, false);
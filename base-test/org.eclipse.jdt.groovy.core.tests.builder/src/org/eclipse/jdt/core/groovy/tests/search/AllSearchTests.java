@@ -44,6 +44,9 @@ public class AllSearchTests {
         suite.addTestSuite(Groovy21InferencingTests.class);
         suite.addTestSuite(GenericsMappingTest.class);
         suite.addTestSuite(BinarySearchTests.class);
+        suite.addTestSuite(BinaryGroovySupplementalIndexerTests.class);
+        suite.addTestSuite(InferenceResultStoreTests.class);
+        suite.addTestSuite(IndexingParserTests.class);
         return suite;
     }
 }
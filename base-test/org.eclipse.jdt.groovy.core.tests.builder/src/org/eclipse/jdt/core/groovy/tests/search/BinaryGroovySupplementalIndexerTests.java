@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eclipse.jdt.core.groovy.tests.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.Test;
+
+import org.codehaus.jdt.groovy.integration.ISupplementalIndexer.IReferenceRequestor;
+import org.codehaus.jdt.groovy.integration.internal.BinaryGroovySupplementalIndexer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+
+/**
+ * Tests that the dynamic calls in class files compiled by groovyc are decoded and indexed with their real arity
+ *
+ * @created Oct 17, 2013
+ */
+public class BinaryGroovySupplementalIndexerTests extends AbstractGroovySearchTest {
+
+    public static Test suite() {
+        return buildTestSuite(BinaryGroovySupplementalIndexerTests.class);
+    }
+
+    public BinaryGroovySupplementalIndexerTests(String name) {
+        super(name);
+    }
+
+    private static class RecordingRequestor implements IReferenceRequestor {
+        final Set<String> names = new HashSet<String>();
+        final Map<String, Set<Integer>> methods = new HashMap<String, Set<Integer>>();
+
+        public void acceptNameReference(char[] name) {
+            names.add(String.valueOf(name));
+        }
+
+        public void acceptMethodReference(char[] selector, int argCount) {
+            Set<Integer> arities = methods.get(String.valueOf(selector));
+            if (arities == null) {
+                arities = new TreeSet<Integer>();
+                methods.put(String.valueOf(selector), arities);
+            }
+            arities.add(argCount);
+        }
+
+        void assertArities(String selector, Integer... expected) {
+            assertEquals("Wrong arities indexed for " + selector + " in " + methods,
+                    new TreeSet<Integer>(Arrays.asList(expected)), methods.get(selector));
+        }
+    }
+
+    private RecordingRequestor index(String classFile) throws Exception {
+        fullBuild(project.getFullPath());
+        IFile file = project.getFile("bin/" + classFile);
+        assertTrue("Class file should have been built: " + file, file.exists());
+        byte[] contents = readContents(file);
+        RecordingRequestor requestor = new RecordingRequestor();
+        new BinaryGroovySupplementalIndexer().indexReferences(contents, new ClassFileReader(contents, file.getName().toCharArray()),
+                requestor);
+        return requestor;
+    }
+
+    private byte[] readContents(IFile file) throws Exception {
+        InputStream in = file.getContents();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testDynamicCallsIndexedWithTheirArity() throws Exception {
+        createUnit("p", "Caller",
+                "package p\n" +
+                "class Caller {\n" +
+                "    def run(x) {\n" +
+                "        x.none()\n" +
+                "        x.one('a')\n" +
+                "        x.two(1, 2)\n" +
+                "        x.two(x.one(3), 4)\n" +
+                "    }\n" +
+                "}\n");
+        RecordingRequestor requestor = index("p/Caller.class");
+        requestor.assertArities("none", 0);
+        requestor.assertArities("one", 1);
+        requestor.assertArities("two", 2);
+    }
+
+    public void testCallWithArgumentArrayIndexedWithAllArities() throws Exception {
+        createUnit("p", "Caller",
+                "package p\n" +
+                "class Caller {\n" +
+                "    def run(x) {\n" +
+                "        x.many(1, 2, 3, 4, 5, 6)\n" +
+                "        x.one('a')\n" +
+                "    }\n" +
+                "}\n");
+        RecordingRequestor requestor = index("p/Caller.class");
+        requestor.assertArities("many", 0, 1, 2, 3, 4, 5);
+        requestor.assertArities("one", 1);
+    }
+
+    public void testPropertyAccessIsNotMethodReference() throws Exception {
+        createUnit("p", "Caller",
+                "package p\n" +
+                "class Caller {\n" +
+                "    def run(x) {\n" +
+                "        x.prop\n" +
+                "    }\n" +
+                "}\n");
+        RecordingRequestor requestor = index("p/Caller.class");
+        assertTrue("Property should be indexed as a name reference: " + requestor.names, requestor.names.contains("prop"));
+        assertNull("Property should not be indexed as a method reference", requestor.methods.get("prop"));
+    }
+
+    public void testOnlyStringConstantsIndexedAsNames() throws Exception {
+        createUnit("p", "Caller",
+                "package p\n" +
+                "class Caller {\n" +
+                "    def run(x) {\n" +
+                "        x.none()\n" +
+                "    }\n" +
+                "}\n");
+        RecordingRequestor requestor = index("p/Caller.class");
+        assertTrue("Call site name should be indexed as a name reference: " + requestor.names, requestor.names.contains("none"));
+        // member names and internal names of the class are in UTF8 constants only
+        assertFalse("Method name should not be indexed: " + requestor.names, requestor.names.contains("run"));
+        for (String name : requestor.names) {
+            assertTrue("Not an identifier: " + name, name.indexOf('/') < 0 && name.indexOf(';') < 0 && name.indexOf('(') < 0);
+        }
+    }
+
+    public void testJavaClassHasNoDynamicCalls() throws Exception {
+        createJavaUnit("p", "Plain",
+                "package p;\n" +
+                "public class Plain {\n" +
+                "    String name = \"someName\";\n" +
+                "    void run() {\n" +
+                "        name.length();\n" +
+                "    }\n" +
+                "}\n");
+        RecordingRequestor requestor = index("p/Plain.class");
+        assertEquals("String constants should be indexed as names", new HashSet<String>(Collections.singleton("someName")),
+                requestor.names);
+        assertTrue("Class without call sites should not index method references: " + requestor.methods, requestor.methods.isEmpty());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eclipse.jdt.core.groovy.tests.search;
+
+import groovy.lang.GroovyClassLoader;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.ResolveVisitor;
+import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyCompilationUnitDeclaration;
+import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyParser;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchParticipant;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.SearchRequestor;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+import org.eclipse.jdt.internal.compiler.problem.ProblemReporter;
+
+/**
+ * Tests that one Groovy parser can index several files in a row
+ *
+ * @created Oct 17, 2013
+ */
+public class IndexingParserTests extends AbstractGroovySearchTest {
+
+    public static Test suite() {
+        return buildTestSuite(IndexingParserTests.class);
+    }
+
+    public IndexingParserTests(String name) {
+        super(name);
+    }
+
+    public void testParserKeepsLoaderAndResolverAcrossFiles() throws Exception {
+        CompilerOptions options = new CompilerOptions();
+        ProblemReporter problemReporter = new ProblemReporter(DefaultErrorHandlingPolicies.proceedWithAllProblems(), options,
+                new DefaultProblemFactory());
+        GroovyParser parser = new GroovyParser(options, problemReporter, false, true);
+        GroovyClassLoader loader = parser.getGroovyCompilationUnit().getClassLoader();
+        ResolveVisitor resolver = parser.getGroovyCompilationUnit().getResolveVisitor();
+
+        CompilationUnit previous = null;
+        for (String name : new String[] { "First", "Second", "Third" }) {
+            ICompilationUnit unit = new org.eclipse.jdt.internal.compiler.batch.CompilationUnit(
+                    ("class " + name + " {\n def m() { }\n}\n").toCharArray(), name + ".groovy", null);
+            GroovyCompilationUnitDeclaration declaration = parser.dietParseForIndexing(unit, new CompilationResult(unit, 0, 1, 100));
+            assertEquals("Each file should be parsed on its own", 1, declaration.types.length);
+            assertEquals(name, String.valueOf(declaration.types[0].name));
+
+            CompilationUnit groovyUnit = parser.getGroovyCompilationUnit();
+            assertNotSame("Each file should get a new groovy compilation unit", previous, groovyUnit);
+            assertEquals("Groovy compilation unit should only hold the current file", 1, countSources(groovyUnit));
+            assertSame("Loader should be kept across files", loader, groovyUnit.getClassLoader());
+            assertSame("Resolver should be kept across files", resolver, groovyUnit.getResolveVisitor());
+            previous = groovyUnit;
+        }
+    }
+
+    private int countSources(CompilationUnit groovyUnit) {
+        int count = 0;
+        for (Iterator<?> iter = groovyUnit.iterator(); iter.hasNext(); iter.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    public void testSeveralFilesIndexed() throws Exception {
+        createUnit("p", "IndexedFirst", "package p\nclass IndexedFirst {\n def one() { }\n}\n");
+        createUnit("p", "IndexedSecond", "package p\nclass IndexedSecond {\n def two() { new IndexedFirst().one() }\n}\n");
+        createUnit("p", "IndexedThird", "package p\nclass IndexedThird {\n def three() { new IndexedSecond().two() }\n}\n");
+        fullBuild(project.getFullPath());
+
+        List<SearchMatch> types = search(SearchPattern.createPattern("Indexed*", IJavaSearchConstants.TYPE,
+                IJavaSearchConstants.DECLARATIONS, SearchPattern.R_PATTERN_MATCH | SearchPattern.R_CASE_SENSITIVE));
+        assertEquals("Every file should be indexed: " + types, 3, types.size());
+
+        List<SearchMatch> references = search(SearchPattern.createPattern("one", IJavaSearchConstants.METHOD,
+                IJavaSearchConstants.REFERENCES, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+        assertEquals("Reference in the second file should be found: " + references, 1, references.size());
+        assertEquals("IndexedSecond", ((IType) ((IJavaElement) references.get(0).getElement()).getAncestor(IJavaElement.TYPE))
+                .getElementName());
+
+        references = search(SearchPattern.createPattern("two", IJavaSearchConstants.METHOD, IJavaSearchConstants.REFERENCES,
+                SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE));
+        assertEquals("Reference in the third file should be found: " + references, 1, references.size());
+        assertEquals("IndexedThird", ((IType) ((IJavaElement) references.get(0).getElement()).getAncestor(IJavaElement.TYPE))
+                .getElementName());
+    }
+
+    private List<SearchMatch> search(SearchPattern pattern) throws CoreException {
+        final List<SearchMatch> matches = new ArrayList<SearchMatch>();
+        new SearchEngine().search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() },
+                SearchEngine.createJavaSearchScope(new IJavaElement[] { JavaCore.create(project) }), new SearchRequestor() {
+                    @Override
+                    public void acceptSearchMatch(SearchMatch match) {
+                        matches.add(match);
+                    }
+                }, null);
+        return matches;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eclipse.jdt.core.groovy.tests.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.codehaus.jdt.groovy.model.ModuleNodeMapper.ModuleNodeInfo;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.groovy.search.IReplayableRequestor;
+import org.eclipse.jdt.groovy.search.InferenceResultStore;
+import org.eclipse.jdt.groovy.search.TypeLookupResult;
+
+/**
+ * Tests that the results of a complete inferencing visit are stored and replayed, and discarded once the module node changes
+ *
+ * @created Oct 17, 2013
+ */
+public class InferenceResultStoreTests extends AbstractInferencingTest {
+
+    private static final String CONTENTS = "def x = 'a'\nx.length()";
+
+    public static Test suite() {
+        return buildTestSuite(InferenceResultStoreTests.class);
+    }
+
+    public InferenceResultStoreTests(String name) {
+        super(name);
+    }
+
+    private static class RecordingRequestor implements IReplayableRequestor {
+        final List<ASTNode> nodes = new ArrayList<ASTNode>();
+        final List<TypeLookupResult> results = new ArrayList<TypeLookupResult>();
+
+        public VisitStatus acceptASTNode(ASTNode node, TypeLookupResult result, IJavaElement enclosingElement) {
+            nodes.add(node);
+            results.add(result);
+            return VisitStatus.CONTINUE;
+        }
+    }
+
+    private RecordingRequestor visit(GroovyCompilationUnit unit) {
+        RecordingRequestor requestor = new RecordingRequestor();
+        factory.createVisitor(unit).visitCompilationUnit(requestor);
+        return requestor;
+    }
+
+    public void testStoredResultsAreReplayed() throws Exception {
+        GroovyCompilationUnit unit = createUnit("Search", CONTENTS);
+        unit.becomeWorkingCopy(null);
+        try {
+            RecordingRequestor first = visit(unit);
+            InferenceResultStore store = InferenceResultStore.getStore(unit.getModuleInfo(false));
+            assertTrue("Results of a complete visit should be stored", store.hasResults());
+
+            RecordingRequestor second = visit(unit);
+            RecordingRequestor third = visit(unit);
+            assertEquals("Replay should send the same number of results", first.nodes.size(), second.nodes.size());
+            for (int i = 0; i < first.nodes.size(); i++) {
+                assertSame("Replay should send the inferred nodes", first.nodes.get(i), second.nodes.get(i));
+                assertSame("Replay should send the inferred types", first.results.get(i).type, second.results.get(i).type);
+                // a new visit would create new results
+                assertSame("Stored results should be reused", second.results.get(i), third.results.get(i));
+                assertNull("Stored results should not retain the variable scope", second.results.get(i).scope);
+            }
+        } finally {
+            unit.discardWorkingCopy();
+        }
+    }
+
+    public void testStoredResultsInvalidatedAfterEdit() throws Exception {
+        GroovyCompilationUnit unit = createUnit("Search", CONTENTS);
+        unit.becomeWorkingCopy(null);
+        try {
+            RecordingRequestor first = visit(unit);
+            ModuleNodeInfo oldInfo = unit.getModuleInfo(false);
+            InferenceResultStore oldStore = InferenceResultStore.getStore(oldInfo);
+            assertTrue("Results of a complete visit should be stored", oldStore.hasResults());
+
+            unit.getBuffer().append("\nx.length()");
+            RecordingRequestor second = visit(unit);
+            assertNotSame("Edit should create a new module node", oldInfo.module, unit.getModuleInfo(false).module);
+            assertFalse("Results of the old module node should be discarded", oldStore.hasResults());
+            assertTrue("Visit after the edit should infer the new contents", second.nodes.size() > first.nodes.size());
+            assertNotSame("Visit after the edit should not replay the old results", first.nodes.get(0), second.nodes.get(0));
+        } finally {
+            unit.discardWorkingCopy();
+        }
+    }
+
+    public void testStoredResultsDiscardedWithWorkingCopy() throws Exception {
+        GroovyCompilationUnit unit = createUnit("Search", CONTENTS);
+        unit.becomeWorkingCopy(null);
+        visit(unit);
+        InferenceResultStore store = InferenceResultStore.getStore(unit.getModuleInfo(false));
+        assertTrue("Results of a complete visit should be stored", store.hasResults());
+        unit.discardWorkingCopy();
+        assertFalse("Results should be discarded with the working copy", store.hasResults());
+    }
+
+    public void testResultsOnlyKeptForRecentModules() throws Exception {
+        int maxModules = Integer.getInteger("greclipse.inferenceStore.maxModules", 8);
+        List<GroovyCompilationUnit> units = new ArrayList<GroovyCompilationUnit>();
+        List<InferenceResultStore> stores = new ArrayList<InferenceResultStore>();
+        try {
+            for (int i = 0; i <= maxModules; i++) {
+                GroovyCompilationUnit unit = createUnit("Search" + i, CONTENTS);
+                unit.becomeWorkingCopy(null);
+                units.add(unit);
+                visit(unit);
+                stores.add(InferenceResultStore.getStore(unit.getModuleInfo(false)));
+            }
+            assertTrue("Too many modules with stored results: " + InferenceResultStore.getStoredModuleCount(),
+                    InferenceResultStore.getStoredModuleCount() <= maxModules);
+            assertFalse("Results of the least recently used module should be discarded", stores.get(0).hasResults());
+            assertTrue("Results of the most recently used module should be kept", stores.get(maxModules).hasResults());
+        } finally {
+            for (GroovyCompilationUnit unit : units) {
+                unit.discardWorkingCopy();
+            }
+        }
+    }
+}
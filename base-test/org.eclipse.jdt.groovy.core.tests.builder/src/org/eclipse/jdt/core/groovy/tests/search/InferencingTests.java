@@ -16,14 +16,19 @@
 
 package org.eclipse.jdt.core.groovy.tests.search;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import junit.framework.Test;
 
 import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.tests.util.GroovyUtils;
+import org.eclipse.jdt.groovy.search.ITypeRequestor;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
+import org.eclipse.jdt.groovy.search.TypeLookupResult;
 
 /**
  * Lots of tests to see that expressions have the proper type associated with them
@@ -1445,6 +1450,44 @@ public class InferencingTests extends AbstractInferencingTest {
         		"}\n" + 
         		"new Me().meth()");
     }
+    public void testOverloadsOnSameReceiver() throws Exception {
+        String contents = "class A {\n" +
+                "    String m() { '' }\n" +
+                "    Integer m(a) { 0 }\n" +
+                "}\n" +
+                "def a = new A()\n" +
+                "a.m()\n" +
+                "a.m(1)\n" +
+                "a.m()";
+        int start = contents.indexOf("a.m(1)") + 2;
+        int end = start + "m".length();
+        assertType(contents, start, end, "java.lang.Integer");
+        start = contents.lastIndexOf("m");
+        end = start + "m".length();
+        assertType(contents, start, end, "java.lang.String");
+    }
+    public void testNestedCategories() throws Exception {
+        String contents = "class Cat1 {\n" +
+                "    static String foo(Integer self) { '' }\n" +
+                "}\n" +
+                "class Cat2 {\n" +
+                "    static Integer getBar(Number self) { 0 }\n" +
+                "}\n" +
+                "use (Cat1) {\n" +
+                "    use (Cat2) {\n" +
+                "        1.foo()\n" +
+                "        1.bar\n" +
+                "    }\n" +
+                "}";
+        int start = contents.lastIndexOf("foo");
+        int end = start + "foo".length();
+        assertType(contents, start, end, "java.lang.String");
+        assertDeclaringType(contents, start, end, "Cat1");
+        start = contents.lastIndexOf("bar");
+        end = start + "bar".length();
+        assertType(contents, start, end, "java.lang.Integer");
+        assertDeclaringType(contents, start, end, "Cat2");
+    }
 
     // GRECLIPSE-1304
     public void testNoGString1() throws Exception {
@@ -1535,6 +1578,43 @@ public class InferencingTests extends AbstractInferencingTest {
     	assertDeclaringType(contents, start, end, "Search$2");
     }
     
+    public void testRegionVisitLocalAssignedBeforeRegion() throws Exception {
+        String contents = "class A {\n" +
+                "    def m() {\n" +
+                "        def x\n" +
+                "        x = ''\n" +
+                "        x\n" +
+                "    }\n" +
+                "}";
+        int start = contents.lastIndexOf("x");
+        int end = start + "x".length();
+        assertTypeInRegion(contents, start, end, "java.lang.String");
+    }
+
+    public void testRegionVisitSkipsOtherMembers() throws Exception {
+        String contents = "class A {\n" +
+                "    def before() { 'a'.length() }\n" +
+                "    def inRegion() { 1.intValue() }\n" +
+                "    def after() { 'b'.size() }\n" +
+                "}";
+        final int regionMember = contents.indexOf("def inRegion");
+        final int afterMember = contents.indexOf("def after");
+        int start = contents.indexOf("intValue");
+        GroovyCompilationUnit unit = createUnit("Search", contents);
+        TypeInferencingVisitorWithRequestor visitor = factory.createVisitor(unit);
+        final List<ASTNode> outside = new ArrayList<ASTNode>();
+        visitor.visitCompilationUnit(new ITypeRequestor() {
+            public VisitStatus acceptASTNode(ASTNode node, TypeLookupResult result, IJavaElement enclosingElement) {
+                if (node.getEnd() > 0 && !(node instanceof ClassNode)
+                        && (node.getStart() < regionMember || node.getStart() >= afterMember)) {
+                    outside.add(node);
+                }
+                return VisitStatus.CONTINUE;
+            }
+        }, start, "intValue".length());
+        assertTrue("Should not have visited nodes outside of the region, but found:\n" + outside, outside.isEmpty());
+    }
+
     protected void assertNoUnknowns(String contents) {
         GroovyCompilationUnit unit = createUnit("Search", contents);
         
@@ -210,6 +210,46 @@ public class StaticInferencingTests extends AbstractInferencingTest {
         int end = start + "p.Other".length();
         assertType(contents, start, end, "p.Other", false);
     }
+
+    public void testStaticImportAssignedBeforeRegion() throws Exception {
+        createUnit("p", "Other", "package p\nclass Other { static FOO }");
+        String contents = "import static p.Other.FOO\n" +
+                "class A {\n" +
+                "    def before() { FOO = '' }\n" +
+                "    def inRegion() { FOO }\n" +
+                "}";
+        int start = contents.lastIndexOf("FOO");
+        int end = start + "FOO".length();
+        assertType(contents, start, end, "java.lang.String", false);
+        assertTypeInRegion(contents, start, end, "java.lang.String");
+    }
+
+    public void testStaticImportHiddenBeforeRegion() throws Exception {
+        createUnit("p", "Other", "package p\nclass Other { static FOO }");
+        String contents = "import static p.Other.FOO\n" +
+                "class A {\n" +
+                "    def before(FOO) { FOO = '' }\n" +
+                "    def inRegion() { FOO }\n" +
+                "}";
+        int start = contents.lastIndexOf("FOO");
+        int end = start + "FOO".length();
+        assertType(contents, start, end, "java.lang.Object", false);
+        assertTypeInRegion(contents, start, end, "java.lang.Object");
+    }
+
+    public void testStaticImportAssignedMethodCallBeforeRegion() throws Exception {
+        createUnit("p", "Other", "package p\nclass Other { static FOO }");
+        String contents = "import static p.Other.FOO\n" +
+                "class A {\n" +
+                "    def before() { FOO = new Date(); FOO = 'a'.concat('b') }\n" +
+                "    def inRegion() { FOO }\n" +
+                "}";
+        int start = contents.lastIndexOf("FOO");
+        int end = start + "FOO".length();
+        assertType(contents, start, end, "java.lang.String", false);
+        // the method call is not inferred, so the type must not be guessed from the earlier assignment or from the call
+        assertTypeInRegion(contents, start, end, "java.lang.Object");
+    }
     
     // GRECLIPSE-1544
     public void testSTCAndClassInstance() throws Exception {
@@ -120,6 +120,8 @@ import org.codehaus.groovy.ast.stmt.WhileStatement;
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.ParserPlugin;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
+import org.codehaus.groovy.control.io.ReaderSource;
 import org.codehaus.groovy.syntax.ASTHelper;
 import org.codehaus.groovy.syntax.Numbers;
 import org.codehaus.groovy.syntax.ParserException;
@@ -155,7 +157,13 @@ public class AntlrParserPlugin extends ASTHelper implements ParserPlugin, Groovy
 
     
     public /*final*/ Reduction parseCST(final SourceUnit sourceUnit, Reader reader) throws CompilationFailedException {
+        // GRECLIPSE: start
+        /*old{
         final SourceBuffer sourceBuffer = new SourceBuffer();
+        }*/
+        // newcode
+        final SourceBuffer sourceBuffer = createSourceBuffer(sourceUnit);
+        // end
         transformCSTIntoAST(sourceUnit, reader, sourceBuffer);
         processAST();
         return outputAST(sourceUnit,sourceBuffer);
@@ -207,6 +215,20 @@ public class AntlrParserPlugin extends ASTHelper implements ParserPlugin, Groovy
     }
     // end
 
+    // GRECLIPSE: new method
+    /**
+     * Sources that are already in memory are not copied into the buffer
+     * while they are read, unless their columns may be changed by unicode escapes.
+     */
+    protected SourceBuffer createSourceBuffer(SourceUnit sourceUnit) {
+        ReaderSource source = sourceUnit.getSource();
+        if (source instanceof CharArrayReaderSource && !((CharArrayReaderSource) source).hasUnicodeEscapes()) {
+            return new SourceBuffer((CharArrayReaderSource) source);
+        }
+        return new SourceBuffer();
+    }
+    // end
+
     protected void processAST() {
         AntlrASTProcessor snippets = new AntlrASTProcessSnippets();
         ast = snippets.process(ast);
@@ -29,11 +29,16 @@ import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.codehaus.groovy.GroovyBugError;
 import org.codehaus.groovy.ast.ASTNode;
@@ -182,8 +187,15 @@ public class CompilationUnit extends ProcessingUnit {
             phaseOperations[i] = new LinkedList();
             newPhaseOperations[i] = new LinkedList();
         }
+        // GRECLIPSE: start: parsing may be done for several sources at once
+        /*old{
         addPhaseOperation(new SourceUnitOperation() {
             public void call(SourceUnit source) throws CompilationFailedException {
+        }*/
+        // newcode
+        addPhaseOperation(new ConcurrentSourceUnitOperation() {
+            public void callConcurrently(SourceUnit source) throws CompilationFailedException {
+        // end
                 source.parse();
             }
         }, Phases.PARSING);
@@ -710,9 +722,20 @@ public class CompilationUnit extends ProcessingUnit {
     /**
      * Runs convert() on a single SourceUnit.
      */
+    // GRECLIPSE: start: converting may be done for several sources at once, adding the module may not
+    /*old{
     private SourceUnitOperation convert = new SourceUnitOperation() {
         public void call(SourceUnit source) throws CompilationFailedException {
             source.convert();
+    }*/
+    // newcode
+    private SourceUnitOperation convert = new ConcurrentSourceUnitOperation() {
+        public void callConcurrently(SourceUnit source) throws CompilationFailedException {
+            source.convert();
+        }
+
+        public void callInOrder(SourceUnit source) throws CompilationFailedException {
+    // end
             CompilationUnit.this.ast.addModule(source.getAST());
 
 
@@ -940,6 +963,146 @@ public class CompilationUnit extends ProcessingUnit {
         public abstract void call(SourceUnit source) throws CompilationFailedException;
     }
 
+    // GRECLIPSE: start
+    /**
+     * A SourceUnitOperation whose work on a source touches nothing but that
+     * source, so that it may be done for several sources at once.  Whatever
+     * has to be done in the order of the sources goes into callInOrder.
+     */
+    private abstract static class ConcurrentSourceUnitOperation extends SourceUnitOperation {
+        public abstract void callConcurrently(SourceUnit source) throws CompilationFailedException;
+
+        public void callInOrder(SourceUnit source) throws CompilationFailedException {
+        }
+
+        public void call(SourceUnit source) throws CompilationFailedException {
+            callConcurrently(source);
+            callInOrder(source);
+        }
+    }
+
+    /**
+     * A ConcurrentSourceUnitOperation that was started for a source.  If the
+     * error collector of the source is shared with other sources, the source
+     * is given its own one until the call is joined.
+     */
+    private static class ConcurrentCall {
+        Future<?> future;
+        ErrorCollector sharedCollector;
+    }
+
+    /**
+     * Parses and converts the sources that are due at the same time, or null
+     * to process them one by one.  This only pays off when several sources
+     * are added before they are compiled.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Sets the executor on which the sources that are due are parsed and
+     * converted at the same time, or null to process them one by one.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the operation on all sources that are due for it, if there are
+     * several of them.
+     *
+     * @return the started calls, or null if the sources are to be processed one by one
+     */
+    private Map<SourceUnit, ConcurrentCall> startConcurrently(final ConcurrentSourceUnitOperation body) {
+        List<SourceUnit> due = new ArrayList<SourceUnit>();
+        Map<ErrorCollector, Boolean> collectors = new IdentityHashMap<ErrorCollector, Boolean>();
+        collectors.put(errorCollector, Boolean.TRUE);
+        for (String name : names) {
+            SourceUnit source = sources.get(name);
+            if ((source.phase < phase) || (source.phase == phase && !source.phaseComplete)) {
+                due.add(source);
+                ErrorCollector collector = source.getErrorCollector();
+                collectors.put(collector, Boolean.valueOf(collectors.containsKey(collector)));
+            }
+        }
+        if (due.size() < 2) {
+            return null;
+        }
+
+        Map<SourceUnit, ConcurrentCall> calls = new HashMap<SourceUnit, ConcurrentCall>();
+        for (final SourceUnit source : due) {
+            ConcurrentCall call = new ConcurrentCall();
+            if (collectors.get(source.getErrorCollector()) == Boolean.TRUE) {
+                // messages go into the shared collector in the order of the sources when the call is joined
+                call.sharedCollector = source.getErrorCollector();
+                source.errorCollector = new ErrorCollector(source.getConfiguration());
+            }
+            call.future = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    body.callConcurrently(source);
+                    return null;
+                }
+            });
+            calls.put(source, call);
+        }
+        return calls;
+    }
+
+    /**
+     * Waits for a call to complete, and then reports its messages and its
+     * failure as if the operation had been done for the source right now.
+     */
+    private void joinConcurrently(SourceUnit source, ConcurrentCall call) throws Exception {
+        Throwable failure = null;
+        try {
+            call.future.get();
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        } finally {
+            if (call.sharedCollector != null) {
+                ErrorCollector collector = source.getErrorCollector();
+                source.errorCollector = call.sharedCollector;
+                call.sharedCollector.addCollectorContents(collector);
+            }
+        }
+        if (call.sharedCollector != null && (failure instanceof CompilationFailedException
+                || call.sharedCollector.getErrorCount() >= configuration.getTolerance())) {
+            // fail with all messages so far, like the shared collector would have
+            call.sharedCollector.failIfErrors();
+        }
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * Waits for the calls that were not joined because an earlier source
+     * failed, and drops their messages.  These sources are processed again
+     * the next time, as they would not have been processed one by one.
+     */
+    private void abandonConcurrently(Map<SourceUnit, ConcurrentCall> calls) {
+        boolean interrupted = false;
+        for (Map.Entry<SourceUnit, ConcurrentCall> entry : calls.entrySet()) {
+            ConcurrentCall call = entry.getValue();
+            try {
+                call.future.get();
+            } catch (ExecutionException e) {
+                // the earlier failure is the one that is reported
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            if (call.sharedCollector != null) {
+                entry.getKey().errorCollector = call.sharedCollector;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    // end
+
 
     // GRECLIPSE: new field
     private boolean iterating = false;
@@ -951,14 +1114,37 @@ public class CompilationUnit extends ProcessingUnit {
      */
     public void applyToSourceUnits(SourceUnitOperation body) throws CompilationFailedException {
     // GRECLIPSE: start
+    	Map<SourceUnit, ConcurrentCall> calls = null;
     	try {
     		iterating = true;
+    		if (executor != null && body instanceof ConcurrentSourceUnitOperation) {
+    			calls = startConcurrently((ConcurrentSourceUnitOperation) body);
+    		}
     // end
 	  for (String name : names) {
             SourceUnit source = sources.get(name);
+	            // GRECLIPSE: start
+	            // a started call owns its source, including its phase
+	            ConcurrentCall call = calls == null ? null : calls.remove(source);
+	            /*old{
 	            if ((source.phase < phase) || (source.phase == phase && !source.phaseComplete)) {
+	            }*/
+	            // newcode
+	            if (call != null || (source.phase < phase) || (source.phase == phase && !source.phaseComplete)) {
+	            // end
 	                try {
+	                    // GRECLIPSE: start
+	                    /*old{
 	                    body.call(source);
+	                    }*/
+	                    // newcode
+	                    if (call != null) {
+	                        joinConcurrently(source, call);
+	                        ((ConcurrentSourceUnitOperation) body).callInOrder(source);
+	                    } else {
+	                        body.call(source);
+	                    }
+	                    // end
 	                    // GRECLIPSE: start
 	                    if (phase==Phases.CONVERSION && getProgressListener()!=null && body==phaseOperations[phase].getLast()) {
 	                    	getProgressListener().parseComplete(phase,name);
@@ -979,6 +1165,9 @@ public class CompilationUnit extends ProcessingUnit {
     // GRECLIPSE: start
     	} finally {
     		iterating = false;
+    		if (calls != null) {
+    			abandonConcurrently(calls);
+    		}
     	}
     // end
 
@@ -15,6 +15,8 @@
  */
 package org.codehaus.groovy.antlr;
 
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,11 +35,30 @@ public class SourceBuffer {
     // GRECLIPSE: start
     private final List<Integer> lineEndings;
 
+    // the contents and lines, if they are not copied into the buffer
+    private final CharArrayReaderSource source;
+
     // GRECLIPSE-805 Support for unicode escape sequences
     private UnicodeEscapingReader unescaper;
     // end
 
+    // GRECLIPSE: start
+    /**
+     * Creates a buffer for the lines of a source that is already in memory,
+     * so that they don't have to be copied as they are read.  Only for sources
+     * without unicode escapes, since the lexer counts the unescaped columns.
+     */
+    public SourceBuffer(CharArrayReaderSource source) {
+        this.source = source;
+        lines = null;
+        lineEndings = null;
+        unescaper = new NoEscaper();
+    }
+    // end
+
     public SourceBuffer() {
+        // GRECLIPSE: extra line
+        source = null;
         lines = new ArrayList<StringBuilder>();
         //lines.add(new StringBuffer()); // dummy row for position [0] in the List
         // GRECLIPSE: start
@@ -59,7 +80,14 @@ public class SourceBuffer {
         // preconditions
         if (start == null || end == null) { return null; } // no text to return
         if (start.equals(end)) { return null; } // no text to return
+        // GRECLIPSE: start
+        /*old{
         if (lines.size() == 1 && current.length() == 0) { return null; } // buffer hasn't been filled yet
+        }*/
+        // newcode
+        if (isEmpty()) { return null; } // buffer hasn't been filled yet
+        int lineCount = getLineCount();
+        // end
 
         // working variables
         int startLine = start.getLine();
@@ -72,13 +100,26 @@ public class SourceBuffer {
         if (endLine < 1) { endLine = 1;}
         if (startColumn < 1) { startColumn = 1;}
         if (endColumn < 1) { endColumn = 1;}
+        // GRECLIPSE: start
+        /*old{
         if (startLine > lines.size()) { startLine = lines.size(); }
         if (endLine > lines.size()) { endLine = lines.size(); }
+        }*/
+        // newcode
+        if (startLine > lineCount) { startLine = lineCount; }
+        if (endLine > lineCount) { endLine = lineCount; }
+        // end
 
         // obtain the snippet from the buffer within specified bounds
         StringBuffer snippet = new StringBuffer();
         for (int i = startLine - 1; i < endLine;i++) {
+            // GRECLIPSE: start
+            /*old{
             String line = (lines.get(i)).toString();
+            }*/
+            // newcode
+            String line = getLine(i);
+            // end
             if (startLine == endLine) {
                 // reset any out of bounds requests (again)
                 if (startColumn > line.length()) { startColumn = line.length();}
@@ -129,6 +170,10 @@ public class SourceBuffer {
     private int col = 0;
     // FIXASC tidy this up, looks slow
     public void write(int c) {
+        if (source != null) {
+            // the lines are already known
+            return;
+        }
         if (c != -1) {
         	col++;
             current.append((char)c);
@@ -160,6 +205,15 @@ public class SourceBuffer {
     }
     
     public LocationSupport getLocationSupport() {
+        if (source != null) {
+            int[] lineSeparators = source.getLineSeparatorPositions();
+            int[] lineEndingsArray = new int[lineSeparators.length + 2];
+            for (int i = 0; i < lineSeparators.length; i++) {
+                lineEndingsArray[i + 1] = lineSeparators[i] + 1;
+            }
+            lineEndingsArray[lineEndingsArray.length - 1] = source.getChars().length;
+            return new LocationSupport(lineEndingsArray);
+        }
     	lineEndings.add(col + unescaper.getUnescapedUnicodeOffsetCount()); // last line ends where the data runs out
     	int[] lineEndingsArray = new int[lineEndings.size()];
     	for (int i=0,max=lineEndings.size();i<max;i++) {
@@ -167,5 +221,25 @@ public class SourceBuffer {
     	}
     	return new LocationSupport(lineEndingsArray);
     }
+
+    private boolean isEmpty() {
+        return source != null ? source.getChars().length == 0 : lines.size() == 1 && current.length() == 0;
+    }
+
+    private int getLineCount() {
+        return source != null ? source.getLineCount() : lines.size();
+    }
+
+    /**
+     * @param index a 0 based line index
+     * @return the line including its line separator
+     */
+    private String getLine(int index) {
+        if (source != null) {
+            int start = source.getLineStart(index + 1);
+            return new String(source.getChars(), start, source.getLineEnd(index + 1) - start);
+        }
+        return lines.get(index).toString();
+    }
     // end
 }
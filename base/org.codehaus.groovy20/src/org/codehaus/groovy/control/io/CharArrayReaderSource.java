@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.control.io;
+
+import java.io.CharArrayReader;
+import java.io.Reader;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Janitor;
+
+/**
+ * A ReaderSource for contents that are already in memory, like the contents
+ * of an editor.  The char array is shared, not copied, and must not be changed
+ * afterwards.  The line separators are found once when the source is created,
+ * so that the lexer, the source buffer, the AST locations and the compilation
+ * result in JDT can all use the same text and line table.
+ *
+ * A line separator is a '\n', a '\r' or a "\r\n", and its position is the
+ * position of its last char, which is what JDT expects.
+ *
+ * @created Aug 9, 2013
+ */
+public class CharArrayReaderSource extends AbstractReaderSource {
+
+    private static final int[] NO_LINE_SEPARATORS = new int[0];
+
+    private final char[] chars;
+
+    private final int[] lineSeparators;
+
+    private final boolean hasUnicodeEscapes;
+
+    public CharArrayReaderSource(char[] chars, CompilerConfiguration configuration) {
+        super(configuration);
+        this.chars = chars;
+        this.lineSeparators = findLineSeparators(chars);
+        this.hasUnicodeEscapes = findUnicodeEscape(chars);
+    }
+
+    public Reader getReader() {
+        return new CharArrayReader(chars);
+    }
+
+    /**
+     * @return the shared contents, which must not be changed
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * @return the shared positions of the line separators, which must not be changed
+     */
+    public int[] getLineSeparatorPositions() {
+        return lineSeparators;
+    }
+
+    /**
+     * @return true if the contents may contain unicode escapes, in which case
+     *         the lexer sees other columns than the ones in the contents
+     */
+    public boolean hasUnicodeEscapes() {
+        return hasUnicodeEscapes;
+    }
+
+    public int getLineCount() {
+        return lineSeparators.length + 1;
+    }
+
+    /**
+     * @param lineNumber a 1 based line number
+     * @return the offset of the first char of the line
+     */
+    public int getLineStart(int lineNumber) {
+        return lineNumber > 1 ? lineSeparators[lineNumber - 2] + 1 : 0;
+    }
+
+    /**
+     * @param lineNumber a 1 based line number
+     * @return the offset after the line, including its line separator
+     */
+    public int getLineEnd(int lineNumber) {
+        return lineNumber <= lineSeparators.length ? lineSeparators[lineNumber - 1] + 1 : chars.length;
+    }
+
+    /**
+     * Returns a line without its line separator, or null if there is no such
+     * line, just like reading the lines from the reader would.
+     */
+    @Override
+    public String getLine(int lineNumber, Janitor janitor) {
+        if (lineNumber < 1 || lineNumber > getLineCount()) {
+            return null;
+        }
+        int start = getLineStart(lineNumber);
+        int end = getLineEnd(lineNumber);
+        if (start == chars.length) {
+            return null;
+        }
+        if (end > start && chars[end - 1] == '\n') {
+            end--;
+        }
+        if (end > start && chars[end - 1] == '\r') {
+            end--;
+        }
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * @return the positions of the line separators in the given contents
+     */
+    public static int[] findLineSeparators(char[] chars) {
+        int[] separators = NO_LINE_SEPARATORS;
+        int count = 0;
+        for (int i = 0, max = chars.length; i < max; i++) {
+            char c = chars[i];
+            if (c == '\r') {
+                if (i + 1 < max && chars[i + 1] == '\n') {
+                    i++;
+                }
+            } else if (c != '\n') {
+                continue;
+            }
+            if (count == separators.length) {
+                int[] grown = new int[Math.max(16, count * 2)];
+                System.arraycopy(separators, 0, grown, 0, count);
+                separators = grown;
+            }
+            separators[count++] = i;
+        }
+        if (count < separators.length) {
+            int[] trimmed = new int[count];
+            System.arraycopy(separators, 0, trimmed, 0, count);
+            separators = trimmed;
+        }
+        return separators;
+    }
+
+    private static boolean findUnicodeEscape(char[] chars) {
+        for (int i = 0, max = chars.length - 1; i < max; i++) {
+            if (chars[i] == '\\' && chars[i + 1] == 'u') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -16,6 +16,7 @@ import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.ReaderSource;
 import org.eclipse.core.resources.IFile;
 
 /**
@@ -35,6 +36,12 @@ public class EclipseSourceUnit extends SourceUnit {
 		this.file = resource;
 	}
 
+	public EclipseSourceUnit(IFile resource, String filepath, ReaderSource source, CompilerConfiguration groovyCompilerConfig,
+			GroovyClassLoader classLoader, ErrorCollector errorCollector) {
+		super(filepath, source, groovyCompilerConfig, classLoader, errorCollector);
+		this.file = resource;
+	}
+
 	/**
 	 * Will be null if workspace is closed (ie- batch compilation mode)
 	 */
@@ -18,58 +18,420 @@
 package org.codehaus.jdt.groovy.integration.internal;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.codehaus.jdt.groovy.integration.ISupplementalIndexer;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.codegen.AttributeNamesConstants;
 
 /**
- * 
+ * Indexes the dynamic references in a class file compiled by groovyc. Statically compiled calls are ordinary member references in
+ * the constant pool and are indexed by the {@link org.eclipse.jdt.internal.core.search.indexing.BinaryIndexer} already.
+ * <p>
+ * Dynamic method calls go through call sites. The names of the call sites are stored by the <code>$createCallSiteArray_n</code>
+ * methods, and each call loads its call site from the array, pushes the receiver and arguments, and then invokes one of the
+ * <code>call*</code> methods of <code>CallSite</code>. The number of arguments is part of the descriptor of that method, so each
+ * dynamic call is indexed as a method reference with its real name and arity. Calls with more arguments than <code>CallSite</code>
+ * has overloads for, and classes whose call sites cannot be decoded, fall back to indexing a range of arities.
+ * <p>
+ * The identifiers in string constants are indexed as name references, since property accesses and call site names are string
+ * constants. Descriptors, internal names and other UTF8 constants are not indexed.
+ *
  * @author Andrew Eisenberg
  * @created 2013-04-30
  */
 public class BinaryGroovySupplementalIndexer implements ISupplementalIndexer {
 
-	public List<char[]> extractNamedReferences(byte[] contents, ClassFileReader reader) {
-		int[] constantPoolOffsets = reader.getConstantPoolOffsets();
-		int constantPoolCount = constantPoolOffsets.length;
-		List<char[]> refs = new ArrayList<char[]>();
-		for (int i = 1; i < constantPoolCount; i++) {
-			int tag = reader.u1At(constantPoolOffsets[i]);
-			switch (tag) {
-				case ClassFileConstants.Utf8Tag:
-					char[] strConst = extractStringConstant(constantPoolOffsets, reader, i);
-					if (isValidId(strConst)) {
-						char[][] splits = CharOperation.splitOn('.', strConst);
-						for (char[] split : splits) {
-							refs.add(split);
+	private static final int MethodHandleTag = 15;
+	private static final int MethodTypeTag = 16;
+	private static final int InvokeDynamicTag = 18;
+
+	private static final String CALL_SITE = "org/codehaus/groovy/runtime/callsite/CallSite"; //$NON-NLS-1$
+	private static final String CALL_SITE_ARRAY = "[L" + CALL_SITE + ";"; //$NON-NLS-1$ //$NON-NLS-2$
+	private static final String CREATE_CALL_SITE_ARRAY = "$createCallSiteArray_"; //$NON-NLS-1$
+	private static final String OBJECT_ARRAY = "[Ljava/lang/Object;"; //$NON-NLS-1$
+
+	/** the range of arities indexed for calls whose number of arguments is not known */
+	private static final int MAX_UNKNOWN_ARITY = 5;
+
+	/** the length of each instruction, or 0 for instructions of variable length */
+	private static final int[] INSTRUCTION_LENGTHS = new int[256];
+	static {
+		for (int op = 0; op <= 201; op++) {
+			INSTRUCTION_LENGTHS[op] = 1;
+		}
+		INSTRUCTION_LENGTHS[16] = 2; // bipush
+		INSTRUCTION_LENGTHS[17] = 3; // sipush
+		INSTRUCTION_LENGTHS[18] = 2; // ldc
+		INSTRUCTION_LENGTHS[19] = 3; // ldc_w
+		INSTRUCTION_LENGTHS[20] = 3; // ldc2_w
+		for (int op = 21; op <= 25; op++) {
+			INSTRUCTION_LENGTHS[op] = 2; // loads
+		}
+		for (int op = 54; op <= 58; op++) {
+			INSTRUCTION_LENGTHS[op] = 2; // stores
+		}
+		INSTRUCTION_LENGTHS[132] = 3; // iinc
+		for (int op = 153; op <= 168; op++) {
+			INSTRUCTION_LENGTHS[op] = 3; // branches
+		}
+		INSTRUCTION_LENGTHS[169] = 2; // ret
+		INSTRUCTION_LENGTHS[170] = 0; // tableswitch
+		INSTRUCTION_LENGTHS[171] = 0; // lookupswitch
+		for (int op = 178; op <= 184; op++) {
+			INSTRUCTION_LENGTHS[op] = 3; // field accesses and invokes
+		}
+		INSTRUCTION_LENGTHS[185] = 5; // invokeinterface
+		INSTRUCTION_LENGTHS[186] = 5; // invokedynamic
+		INSTRUCTION_LENGTHS[187] = 3; // new
+		INSTRUCTION_LENGTHS[188] = 2; // newarray
+		INSTRUCTION_LENGTHS[189] = 3; // anewarray
+		INSTRUCTION_LENGTHS[192] = 3; // checkcast
+		INSTRUCTION_LENGTHS[193] = 3; // instanceof
+		INSTRUCTION_LENGTHS[196] = 0; // wide
+		INSTRUCTION_LENGTHS[197] = 4; // multianewarray
+		INSTRUCTION_LENGTHS[198] = 3; // ifnull
+		INSTRUCTION_LENGTHS[199] = 3; // ifnonnull
+		INSTRUCTION_LENGTHS[200] = 5; // goto_w
+		INSTRUCTION_LENGTHS[201] = 5; // jsr_w
+	}
+
+	public void indexReferences(byte[] contents, ClassFileReader reader, IReferenceRequestor requestor) {
+		ClassScanner scanner = new ClassScanner(reader);
+		try {
+			scanner.scan();
+		} catch (RuntimeException e) {
+			// unexpected byte code, so index the names without knowing how they are used
+			scanner.decoded = false;
+		}
+		for (char[] name : scanner.names) {
+			requestor.acceptNameReference(name);
+		}
+		if (scanner.decoded) {
+			for (Map.Entry<String, Set<Integer>> entry : scanner.calls.entrySet()) {
+				char[] selector = entry.getKey().toCharArray();
+				for (Integer arity : entry.getValue()) {
+					requestor.acceptMethodReference(selector, arity);
+				}
+			}
+		} else {
+			for (char[] name : scanner.names) {
+				for (int arity = 0; arity <= MAX_UNKNOWN_ARITY; arity++) {
+					requestor.acceptMethodReference(name, arity);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the constant pool and the code of a single class file
+	 */
+	private static class ClassScanner {
+		private final ClassFileReader reader;
+		private final int[] offsets;
+
+		/** identifiers in string constants */
+		final List<char[]> names = new ArrayList<char[]>();
+		/** the arities of each dynamically called method */
+		final Map<String, Set<Integer>> calls = new HashMap<String, Set<Integer>>();
+		/** false if some dynamic calls could not be decoded */
+		boolean decoded = true;
+
+		private final Map<Integer, String> callSiteNames = new HashMap<Integer, String>();
+		private final List<int[]> codeRanges = new ArrayList<int[]>();
+
+		ClassScanner(ClassFileReader reader) {
+			this.reader = reader;
+			this.offsets = reader.getConstantPoolOffsets();
+		}
+
+		void scan() {
+			int end = 10;
+			for (int i = 1; i < offsets.length; i++) {
+				int tag = reader.u1At(offsets[i]);
+				int size;
+				switch (tag) {
+					case ClassFileConstants.Utf8Tag:
+						size = 3 + reader.u2At(offsets[i] + 1);
+						break;
+					case ClassFileConstants.StringTag:
+						char[] str = utf8(reader.u2At(offsets[i] + 1));
+						if (isValidId(str)) {
+							names.add(str);
 						}
+						size = 3;
+						break;
+					case ClassFileConstants.ClassTag:
+					case MethodTypeTag:
+						size = 3;
+						break;
+					case MethodHandleTag:
+						size = 4;
+						break;
+					case InvokeDynamicTag:
+						// compiled for invokedynamic, which does not use call sites
+						decoded = false;
+						size = 5;
+						break;
+					case ClassFileConstants.LongTag:
+					case ClassFileConstants.DoubleTag:
+						size = 9;
+						break;
+					default:
+						size = 5;
+				}
+				end = offsets[i] + size;
+				if (tag == ClassFileConstants.LongTag || tag == ClassFileConstants.DoubleTag) {
+					i++; // takes two entries
+				}
+			}
+			if (!decoded) {
+				return;
+			}
+
+			// skip access flags, this class, super class and interfaces
+			int pos = end + 6;
+			pos += 2 + 2 * reader.u2At(pos);
+			pos = skipMembers(pos, false);
+			skipMembers(pos, true);
+
+			for (int[] range : codeRanges) {
+				scanCode(range[0], range[1]);
+			}
+		}
+
+		/**
+		 * Skips the fields or methods starting at pos, remembering the code of methods
+		 * @return the position after the members
+		 */
+		private int skipMembers(int pos, boolean methods) {
+			int count = reader.u2At(pos);
+			pos += 2;
+			for (int i = 0; i < count; i++) {
+				String name = methods ? new String(utf8(reader.u2At(pos + 2))) : null;
+				int attributeCount = reader.u2At(pos + 6);
+				pos += 8;
+				for (int a = 0; a < attributeCount; a++) {
+					int length = (int) reader.u4At(pos + 2);
+					if (methods && CharOperation.equals(utf8(reader.u2At(pos)), AttributeNamesConstants.CodeName)) {
+						int codeLength = (int) reader.u4At(pos + 10);
+						int codeStart = pos + 14;
+						if (name.startsWith(CREATE_CALL_SITE_ARRAY)) {
+							scanCallSiteNames(codeStart, codeLength);
+						} else {
+							codeRanges.add(new int[] { codeStart, codeLength });
+						}
+					}
+					pos += 6 + length;
+				}
+			}
+			return pos;
+		}
+
+		/**
+		 * Reads <code>names[index] = "name"</code> for every call site
+		 */
+		private void scanCallSiteNames(int codeStart, int codeLength) {
+			int lastInt = -1;
+			String lastString = null;
+			for (int pc = 0; pc < codeLength;) {
+				int op = reader.u1At(codeStart + pc);
+				int intConst = intConstant(codeStart, pc, op);
+				if (intConst >= 0) {
+					lastInt = intConst;
+				} else if (op == 18 || op == 19) {
+					int index = op == 18 ? reader.u1At(codeStart + pc + 1) : reader.u2At(codeStart + pc + 1);
+					lastString = stringConstant(index);
+				} else if (op == 83 && lastInt >= 0 && lastString != null) { // aastore
+					callSiteNames.put(lastInt, lastString);
+					lastInt = -1;
+					lastString = null;
+				}
+				pc += instructionLength(codeStart, pc, op);
+			}
+		}
+
+		/**
+		 * Matches every invocation of a call site with the call site that was loaded last. Call sites are loaded before their
+		 * receiver and arguments, so calls in the arguments are loaded and invoked in between.
+		 */
+		private void scanCode(int codeStart, int codeLength) {
+			Set<Integer> callSiteLocals = new HashSet<Integer>();
+			List<Integer> pending = new ArrayList<Integer>();
+			boolean arrayOnStack = false;
+			int index = -1;
+			for (int pc = 0; pc < codeLength;) {
+				int op = reader.u1At(codeStart + pc);
+				int length = instructionLength(codeStart, pc, op);
+				int intConst = intConstant(codeStart, pc, op);
+				int local = loadOrStoreIndex(codeStart, pc, op);
+
+				if (op == 184 && isCallSiteArrayGetter(reader.u2At(codeStart + pc + 1))) { // invokestatic $getCallSiteArray
+					arrayOnStack = true;
+					index = -1;
+				} else if (arrayOnStack && index < 0 && local >= 0 && isStore(codeStart, pc, op)) {
+					callSiteLocals.add(local);
+					arrayOnStack = false;
+				} else if (local >= 0 && !isStore(codeStart, pc, op) && callSiteLocals.contains(local)) {
+					arrayOnStack = true;
+					index = -1;
+				} else if (arrayOnStack && index < 0 && intConst >= 0) {
+					index = intConst;
+				} else if (op == 50 && arrayOnStack && index >= 0) { // aaload
+					pending.add(index);
+					arrayOnStack = false;
+					index = -1;
+				} else {
+					arrayOnStack = false;
+					index = -1;
+					if (op == 185) { // invokeinterface
+						invokeCallSite(reader.u2At(codeStart + pc + 1), pending);
 					}
+				}
+				pc += length;
+			}
+		}
+
+		private void invokeCallSite(int methodRef, List<Integer> pending) {
+			int nameAndType = reader.u2At(offsets[methodRef] + 3);
+			String owner = new String(utf8(reader.u2At(offsets[reader.u2At(offsets[methodRef] + 1)] + 1)));
+			if (!CALL_SITE.equals(owner)) {
+				return;
+			}
+			if (pending.isEmpty()) {
+				decoded = false;
+				return;
+			}
+			String callSiteName = callSiteNames.get(pending.remove(pending.size() - 1));
+			if (callSiteName == null) {
+				decoded = false;
+				return;
+			}
+			String method = new String(utf8(reader.u2At(offsets[nameAndType] + 1)));
+			if (!method.equals("call") && !method.equals("callSafe") && !method.equals("callCurrent") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					&& !method.equals("callStatic")) { //$NON-NLS-1$
+				// property accesses and constructor calls are not method references
+				return;
+			}
+			String descriptor = new String(utf8(reader.u2At(offsets[nameAndType] + 3)));
+			String params = descriptor.substring(1, descriptor.indexOf(')'));
+			Set<Integer> arities = calls.get(callSiteName);
+			if (arities == null) {
+				arities = new HashSet<Integer>();
+				calls.put(callSiteName, arities);
+			}
+			if (params.endsWith(OBJECT_ARRAY)) {
+				// the arguments are passed in an array
+				for (int arity = 0; arity <= MAX_UNKNOWN_ARITY; arity++) {
+					arities.add(arity);
+				}
+			} else {
+				// all parameters are references, and the first is the receiver
+				arities.add(CharOperation.occurencesOf(';', params.toCharArray()) - 1);
+			}
+		}
+
+		private boolean isCallSiteArrayGetter(int methodRef) {
+			int nameAndType = reader.u2At(offsets[methodRef] + 3);
+			String descriptor = new String(utf8(reader.u2At(offsets[nameAndType] + 3)));
+			return descriptor.equals("()" + CALL_SITE_ARRAY); //$NON-NLS-1$
+		}
+
+		/**
+		 * @return the value pushed by an int constant instruction, or -1
+		 */
+		private int intConstant(int codeStart, int pc, int op) {
+			if (op >= 3 && op <= 8) { // iconst_0 to iconst_5
+				return op - 3;
+			} else if (op == 16) { // bipush
+				return (byte) reader.u1At(codeStart + pc + 1);
+			} else if (op == 17) { // sipush
+				return (short) reader.u2At(codeStart + pc + 1);
+			} else if (op == 18 || op == 19) { // ldc, ldc_w
+				int index = op == 18 ? reader.u1At(codeStart + pc + 1) : reader.u2At(codeStart + pc + 1);
+				if (reader.u1At(offsets[index]) == ClassFileConstants.IntegerTag) {
+					return reader.i4At(offsets[index] + 1);
+				}
 			}
+			return -1;
+		}
+
+		/**
+		 * @return the local variable of an aload or astore instruction, or -1
+		 */
+		private int loadOrStoreIndex(int codeStart, int pc, int op) {
+			if (op == 25 || op == 58) { // aload, astore
+				return reader.u1At(codeStart + pc + 1);
+			} else if (op >= 42 && op <= 45) { // aload_n
+				return op - 42;
+			} else if (op >= 75 && op <= 78) { // astore_n
+				return op - 75;
+			} else if (op == 196) { // wide
+				int wideOp = reader.u1At(codeStart + pc + 1);
+				if (wideOp == 25 || wideOp == 58) {
+					return reader.u2At(codeStart + pc + 2);
+				}
+			}
+			return -1;
+		}
+
+		private boolean isStore(int codeStart, int pc, int op) {
+			return op == 58 || (op >= 75 && op <= 78) || (op == 196 && reader.u1At(codeStart + pc + 1) == 58);
+		}
+
+		private int instructionLength(int codeStart, int pc, int op) {
+			int length = INSTRUCTION_LENGTHS[op];
+			if (length > 0) {
+				return length;
+			}
+			if (op == 196) { // wide
+				return reader.u1At(codeStart + pc + 1) == 132 ? 6 : 4;
+			}
+			// switches are padded so that their operands start at a multiple of 4 from the start of the code
+			int operands = pc + 4 - (pc % 4);
+			if (op == 170) { // tableswitch
+				int low = reader.i4At(codeStart + operands + 4);
+				int high = reader.i4At(codeStart + operands + 8);
+				return operands - pc + 12 + 4 * (high - low + 1);
+			} else if (op == 171) { // lookupswitch
+				int pairs = reader.i4At(codeStart + operands + 4);
+				return operands - pc + 8 + 8 * pairs;
+			}
+			throw new IllegalStateException("Unknown instruction " + op); //$NON-NLS-1$
+		}
+
+		private String stringConstant(int index) {
+			if (reader.u1At(offsets[index]) == ClassFileConstants.StringTag) {
+				return new String(utf8(reader.u2At(offsets[index] + 1)));
+			}
+			return null;
+		}
+
+		private char[] utf8(int index) {
+			int strlen = reader.u2At(offsets[index] + 1); // / +1 for the tag type
+			int strstart = offsets[index] + 3; // +1 for the tag type and +2 for the strlen
+			return reader.utf8At(strstart, strlen);
 		}
-		return refs;
 	}
 
-	private boolean isValidId(char[] strConst) {
+	private static boolean isValidId(char[] strConst) {
 		if (strConst == null || strConst.length == 0) {
 			return false;
 		}
-		if (!(Character.isJavaIdentifierStart(strConst[0]) || strConst[0] == '.') || strConst[0] == '$') {
+		if (!Character.isJavaIdentifierStart(strConst[0]) || strConst[0] == '$') {
 			return false;
 		}
 		for (int i = 1; i < strConst.length; i++) {
-			if (!(Character.isJavaIdentifierPart(strConst[i]) || strConst[i] == '.') || strConst[i] == '$') {
+			if (!Character.isJavaIdentifierPart(strConst[i]) || strConst[i] == '$') {
 				return false;
 			}
 		}
 		return true;
 	}
-
-	private char[] extractStringConstant(int[] constantPoolOffsets, ClassFileReader reader, int index) {
-		int strlen = reader.u2At(constantPoolOffsets[index] + 1); // / +1 for the tag type
-		int strstart = constantPoolOffsets[index] + 3; // +1 for the tag type and +2 for the strlen
-		return reader.utf8At(strstart, strlen);
-	}
 }
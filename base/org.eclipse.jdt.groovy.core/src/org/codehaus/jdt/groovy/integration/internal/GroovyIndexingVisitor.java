@@ -126,8 +126,8 @@ public class GroovyIndexingVisitor extends ClassCodeVisitorSupport {
 
 	@Override
 	public void visitConstantExpression(ConstantExpression expression) {
-		if (!(expression.isTrueExpression() || expression.isFalseExpression() || expression.isNullExpression() || expression
-				.isEmptyStringExpression())) {
+		// only strings can name fields and methods
+		if (expression.getValue() instanceof String && !expression.isEmptyStringExpression()) {
 			char[] constName = expression.getValue().toString().toCharArray();
 			int start = expression.getStart();
 			requestor.acceptFieldReference(constName, start);
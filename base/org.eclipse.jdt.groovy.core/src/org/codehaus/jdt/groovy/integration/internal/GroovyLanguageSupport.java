@@ -16,14 +16,25 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
 import org.codehaus.jdt.groovy.integration.EventHandler;
 import org.codehaus.jdt.groovy.integration.ISupplementalIndexer;
 import org.codehaus.jdt.groovy.integration.LanguageSupport;
+import org.codehaus.jdt.groovy.integration.LanguageSupportFactory;
 import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyCompilationUnitDeclaration;
 import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyErrorCollectorForJDT;
 import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyTypeDeclaration;
@@ -32,6 +43,9 @@ import org.codehaus.jdt.groovy.model.GroovyClassFileWorkingCopy;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.codehaus.jdt.groovy.model.GroovyNature;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.JavaModelException;
@@ -40,8 +54,8 @@ import org.eclipse.jdt.core.search.IJavaSearchScope;
 import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.SearchRequestor;
 import org.eclipse.jdt.groovy.core.util.ContentTypeUtils;
-import org.eclipse.jdt.groovy.core.util.GroovyUtils;
 import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+import org.eclipse.jdt.groovy.search.BufferingSearchRequestor;
 import org.eclipse.jdt.groovy.search.ITypeRequestor;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorFactory;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
@@ -83,6 +97,39 @@ import org.eclipse.jdt.internal.core.util.Util;
 @SuppressWarnings("restriction")
 public class GroovyLanguageSupport implements LanguageSupport {
 
+	private static final ThreadFactory SEARCH_THREAD_FACTORY = new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new SearchThread(r, "Groovy search " + count.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/**
+	 * The threads of the search pool, which search their possible matches sequentially if they start a search themselves, since
+	 * they would otherwise wait for the pool that they are part of
+	 */
+	private static class SearchThread extends Thread {
+		SearchThread(Runnable r, String name) {
+			super(r, name);
+		}
+	}
+
+	// how long to wait for a search before checking for cancelation again
+	private static final long CANCEL_POLL_MILLIS = 100;
+
+	// shared by all searches and created by the first one that runs in parallel
+	private static ExecutorService searchPool;
+
+	private static synchronized ExecutorService getSearchPool() {
+		if (searchPool == null) {
+			searchPool = Executors.newFixedThreadPool(LanguageSupportFactory.SEARCH_THREADS, SEARCH_THREAD_FACTORY);
+		}
+		return searchPool;
+	}
+
 	public Parser getParser(Object requestor, CompilerOptions compilerOptions, ProblemReporter problemReporter,
 			boolean parseLiteralExpressionsAsConstants, int variant) {
 		if (variant == 1) {
@@ -96,6 +143,12 @@ public class GroovyLanguageSupport implements LanguageSupport {
 		}
 	}
 
+	public void parseAhead(Parser parser, ICompilationUnit[] sourceUnits, int maxUnits) {
+		if (parser instanceof MultiplexingParser) {
+			((MultiplexingParser) parser).parseAhead(sourceUnits, maxUnits);
+		}
+	}
+
 	public IndexingParser getIndexingParser(ISourceElementRequestor requestor, IProblemFactory problemFactory,
 			CompilerOptions options, boolean reportLocalDeclarations, boolean optimizeStringLiterals, boolean useSourceJavadocParser) {
 		return new MultiplexingIndexingParser(requestor, problemFactory, options, reportLocalDeclarations, optimizeStringLiterals,
@@ -134,8 +187,9 @@ public class GroovyLanguageSupport implements LanguageSupport {
 			CompilerConfiguration groovyCompilerConfig = new CompilerConfiguration();
 			// groovyCompilerConfig.setPluginFactory(new ErrorRecoveredCSTParserPluginFactory(null));
 			ErrorCollector errorCollector = new GroovyErrorCollectorForJDT(groovyCompilerConfig);
-			SourceUnit groovySourceUnit = new SourceUnit(new String(compilationResult.getFileName()),
-					new String(unit.getContents()), groovyCompilerConfig, null, errorCollector);
+			CharArrayReaderSource source = new CharArrayReaderSource(unit.getContents(), groovyCompilerConfig);
+			SourceUnit groovySourceUnit = new SourceUnit(new String(compilationResult.getFileName()), source,
+					groovyCompilerConfig, null, errorCollector);
 
 			// FIXASC missing the classloader configuration (eg. to include transformers)
 			org.codehaus.groovy.control.CompilationUnit groovyCU = new org.codehaus.groovy.control.CompilationUnit(
@@ -144,8 +198,7 @@ public class GroovyLanguageSupport implements LanguageSupport {
 			JDTResolver resolver = new JDTResolver(groovyCU);
 			groovyCU.setResolveVisitor(resolver);
 
-			// TODO groovy get this from the Antlr parser
-			compilationResult.lineSeparatorPositions = GroovyUtils.getSourceLineSeparatorsIn(unit.getContents());
+			compilationResult.lineSeparatorPositions = source.getLineSeparatorPositions();
 
 			groovyCU.addSource(groovySourceUnit);
 			GroovyCompilationUnitDeclaration gcuDeclaration = new GroovyCompilationUnitDeclaration(problemReporter,
@@ -197,6 +250,91 @@ public class GroovyLanguageSupport implements LanguageSupport {
 		return false;
 	}
 
+	public boolean[] maybePerformDelegatedSearch(PossibleMatch[] possibleMatches, SearchPattern pattern, SearchRequestor requestor,
+			IProgressMonitor monitor) {
+		boolean[] matchesPerformed = new boolean[possibleMatches.length];
+		if (LanguageSupportFactory.SEARCH_THREADS <= 1 || possibleMatches.length < 2 || Thread.currentThread() instanceof SearchThread) {
+			for (int i = 0; i < possibleMatches.length; i++) {
+				checkCanceled(monitor);
+				matchesPerformed[i] = maybePerformDelegatedSearch(possibleMatches[i], pattern, requestor);
+			}
+			return matchesPerformed;
+		}
+
+		// each possible match is searched on its own thread into its own buffer. The buffers are then replayed in the order of the
+		// possible matches, so the requestor sees the same matches in the same order as with a sequential search
+		ExecutorService pool = getSearchPool();
+		List<Future<BufferingSearchRequestor>> results = new ArrayList<Future<BufferingSearchRequestor>>(possibleMatches.length);
+		try {
+			for (final PossibleMatch possibleMatch : possibleMatches) {
+				checkCanceled(monitor);
+				final SearchPattern searchPattern = pattern;
+				final BufferingSearchRequestor buffer = new BufferingSearchRequestor(requestor);
+				results.add(pool.submit(new Callable<BufferingSearchRequestor>() {
+					public BufferingSearchRequestor call() {
+						return maybePerformDelegatedSearch(possibleMatch, searchPattern, buffer) ? buffer : null;
+					}
+				}));
+			}
+			for (int i = 0; i < possibleMatches.length; i++) {
+				BufferingSearchRequestor buffer = waitFor(results.get(i), monitor);
+				if (buffer != null) {
+					matchesPerformed[i] = true;
+					try {
+						buffer.replay();
+					} catch (CoreException e) {
+						Util.log(e);
+					}
+				}
+				// release the matches of this possible match as soon as they have been reported
+				results.set(i, null);
+			}
+		} finally {
+			// only does something when the search has been canceled or has failed. The pool is shared, so the searches that
+			// have not started yet must not hold up the next search
+			for (Future<BufferingSearchRequestor> result : results) {
+				if (result != null) {
+					result.cancel(false);
+				}
+			}
+		}
+		return matchesPerformed;
+	}
+
+	private static void checkCanceled(IProgressMonitor monitor) {
+		if (monitor != null && monitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+	}
+
+	private static <T> T waitFor(Future<T> result, IProgressMonitor monitor) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				checkCanceled(monitor);
+				try {
+					return result.get(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// check for cancelation again
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
 	public EventHandler getEventHandler() {
 		// FIXASC could be une singleton?
 		return new GroovyEventHandler();
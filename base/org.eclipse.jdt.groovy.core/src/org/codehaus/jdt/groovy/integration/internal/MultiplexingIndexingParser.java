@@ -41,6 +41,9 @@ public class MultiplexingIndexingParser extends IndexingParser {
 	SourceElementNotifier notifier;
 	boolean groovyReportReferenceInfo;
 	ISourceElementRequestor requestor;
+	// reused for all groovy files indexed by this parser, unless parsing recurses
+	private GroovyParser groovyParser;
+	private boolean parsing;
 
 	public MultiplexingIndexingParser(ISourceElementRequestor requestor, IProblemFactory problemFactory, CompilerOptions options,
 			boolean reportLocalDeclarations, boolean optimizeStringLiterals, boolean useSourceJavadocParser) {
@@ -67,9 +70,24 @@ public class MultiplexingIndexingParser extends IndexingParser {
 
 			CompilationResult compilationResult = new CompilationResult(unit, 0, 0, this.options.maxProblemsPerUnit);
 
-			// FIXASC Is it ok to use a new parser here everytime? If we don't we sometimes recurse back into the first one
-			GroovyCompilationUnitDeclaration cud = (GroovyCompilationUnitDeclaration) new GroovyParser(this.options,
-					problemReporter, false, true).dietParse(unit, compilationResult);
+			// a new parser is only needed if we recurse back into this one
+			GroovyParser parser;
+			if (parsing) {
+				parser = new GroovyParser(this.options, problemReporter, false, true);
+			} else {
+				if (groovyParser == null) {
+					groovyParser = new GroovyParser(this.options, problemReporter, false, true);
+				}
+				parser = groovyParser;
+			}
+			boolean wasParsing = parsing;
+			parsing = true;
+			GroovyCompilationUnitDeclaration cud;
+			try {
+				cud = parser.dietParseForIndexing(unit, compilationResult);
+			} finally {
+				parsing = wasParsing;
+			}
 
 			// CompilationUnitDeclaration cud groovyParser.dietParse(sourceUnit, compilationResult);
 			HashtableOfObjectToInt sourceEnds = createSourceEnds(cud);
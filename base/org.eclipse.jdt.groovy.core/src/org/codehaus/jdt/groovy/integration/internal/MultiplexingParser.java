@@ -47,6 +47,13 @@ public class MultiplexingParser extends Parser {
 		}
 	}
 
+	/**
+	 * Lets the groovy parser start on the groovy units of a compile before they are asked for one by one
+	 */
+	public void parseAhead(ICompilationUnit[] sourceUnits, int maxUnits) {
+		groovyParser.parseAhead(sourceUnits, maxUnits);
+	}
+
 	@Override
 	public void reset() {
 		groovyParser.reset();
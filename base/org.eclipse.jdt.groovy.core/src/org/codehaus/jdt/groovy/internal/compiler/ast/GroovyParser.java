@@ -22,12 +22,19 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarFile;
 
 import org.apache.xbean.classloader.NonLockingJarFileClassLoader;
+import org.codehaus.groovy.GroovyBugError;
 import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilationUnit.PrimaryClassNodeOperation;
 import org.codehaus.groovy.control.CompilationUnit.ProgressListener;
@@ -35,6 +42,7 @@ import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
 import org.codehaus.groovy.eclipse.GroovyLogManager;
 import org.codehaus.groovy.eclipse.TraceCategory;
 import org.codehaus.jdt.groovy.control.EclipseSourceUnit;
@@ -44,7 +52,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.util.CompilerUtils;
-import org.eclipse.jdt.groovy.core.util.GroovyUtils;
+import org.eclipse.jdt.groovy.core.util.ContentTypeUtils;
 import org.eclipse.jdt.groovy.core.util.ScriptFolderSelector;
 import org.eclipse.jdt.internal.compiler.CompilationResult;
 import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
@@ -79,6 +87,76 @@ public class GroovyParser {
 	public Object requestor;
 	private boolean allowTransforms;
 	private boolean isReconcile;
+	// created on first use and shared by all the units parsed by this parser
+	private CompilerConfiguration groovyCompilerConfig;
+	// true once a unit has been added to the groovy compilation unit
+	private boolean hasSources;
+	// the loaders of the groovy compilation unit, kept so that the indexer can start a new unit with the same loaders
+	private GroovyClassLoader transformLoader;
+	private GrapeAwareGroovyClassLoader grabbyLoader;
+	// the sources that have been parsed ahead and not yet asked for, by their unit
+	private Map<ICompilationUnit, PreparedSource> parsedAhead;
+
+	// Number of threads that parse and convert the groovy units of a compile at the same time. Off by default.
+	private static int parseThreads = Integer.getInteger("greclipse.compiler.threads", 1); //$NON-NLS-1$
+
+	// shared by all parsers and created by the first one that parses ahead
+	private static ExecutorService parsePool;
+
+	private static int parsedAheadCount;
+
+	private static final ThreadFactory PARSE_THREAD_FACTORY = new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Groovy parser " + count.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/**
+	 * A groovy source that has been created for a unit and added to the groovy compilation unit
+	 */
+	private static class PreparedSource {
+		char[] sourceCode;
+		IFile eclipseFile;
+		CharArrayReaderSource source;
+		SourceUnit groovySourceUnit;
+	}
+
+	/**
+	 * @return the pool that parses ahead, or null if the units are parsed one by one
+	 */
+	private static synchronized ExecutorService getParsePool() {
+		if (parseThreads <= 1) {
+			return null;
+		}
+		if (parsePool == null) {
+			parsePool = Executors.newFixedThreadPool(parseThreads, PARSE_THREAD_FACTORY);
+		}
+		return parsePool;
+	}
+
+	/**
+	 * For testing only. Sets the number of threads that parse ahead, or 1 to parse the units one by one.
+	 */
+	public static synchronized void setParseThreads(int threads) {
+		parseThreads = threads;
+		if (parsePool != null) {
+			parsePool.shutdown();
+			parsePool = null;
+		}
+	}
+
+	/**
+	 * For testing only.
+	 * 
+	 * @return the number of units that have been parsed ahead
+	 */
+	public static synchronized int getParsedAheadCount() {
+		return parsedAheadCount;
+	}
 
 	/*
 	 * Each project is allowed a GroovyClassLoader that will be used to load transform definitions and supporting classes. A cache
@@ -266,20 +344,9 @@ public class GroovyParser {
 		// with URLs when grab processing is running. This classloader is used as a last resort when resolving
 		// types and is *only* called if a grab has occurred somewhere during compilation.
 		// Currently it is not cached but created each time - we'll have to decide if there is a need to cache
-		GrapeAwareGroovyClassLoader grabbyLoader = new GrapeAwareGroovyClassLoader(gcl);
-		this.groovyCompilationUnit = makeCompilationUnit(grabbyLoader, gcl, isReconcile, allowTransforms);
-		this.groovyCompilationUnit.tweak(isReconcile);
-		this.groovyCompilationUnit.removeOutputPhaseOperation();
-		if ((options.groovyFlags & CompilerUtils.IsGrails) != 0) {
-			// its probably grails!
-			// nothing up my sleeve, abracadabra!
-			this.groovyCompilationUnit.addPhaseOperation(new GrailsInjector(gcl), Phases.CANONICALIZATION);
-			new Grails20TestSupport(options, gcl).addGrailsTestCompilerCustomizers(groovyCompilationUnit);
-			if (allowTransforms && gcl != null) {
-				this.groovyCompilationUnit.addPhaseOperation(new GrailsGlobalPluginAwareEntityInjector(gcl),
-						Phases.CANONICALIZATION);
-			}
-		}
+		this.transformLoader = gcl;
+		this.grabbyLoader = new GrapeAwareGroovyClassLoader(gcl);
+		this.groovyCompilationUnit = createGroovyCompilationUnit();
 		// this.lookupEnvironment = lookupEnvironment;
 		this.problemReporter = problemReporter;
 		this.resolver = new JDTResolver(groovyCompilationUnit);
@@ -287,6 +354,38 @@ public class GroovyParser {
 		groovyCompilationUnit.setResolveVisitor(resolver);
 	}
 
+	/**
+	 * Creates a groovy compilation unit for the loaders of this parser
+	 */
+	private CompilationUnit createGroovyCompilationUnit() {
+		GroovyClassLoader gcl = transformLoader;
+		CompilationUnit groovyCompilationUnit = makeCompilationUnit(grabbyLoader, gcl, isReconcile, allowTransforms);
+		groovyCompilationUnit.tweak(isReconcile);
+		groovyCompilationUnit.removeOutputPhaseOperation();
+		if ((compilerOptions.groovyFlags & CompilerUtils.IsGrails) != 0) {
+			// its probably grails!
+			// nothing up my sleeve, abracadabra!
+			groovyCompilationUnit.addPhaseOperation(new GrailsInjector(gcl), Phases.CANONICALIZATION);
+			new Grails20TestSupport(compilerOptions, gcl).addGrailsTestCompilerCustomizers(groovyCompilationUnit);
+			if (allowTransforms && gcl != null) {
+				groovyCompilationUnit.addPhaseOperation(new GrailsGlobalPluginAwareEntityInjector(gcl), Phases.CANONICALIZATION);
+			}
+		}
+		return groovyCompilationUnit;
+	}
+
+	/**
+	 * Starts a new groovy compilation unit for the next file to index. The loaders and the resolver, with the types it has already
+	 * resolved, are kept.
+	 */
+	private void startNextUnit() {
+		this.groovyCompilationUnit = createGroovyCompilationUnit();
+		this.resolver.setCompilationUnit(groovyCompilationUnit);
+		this.groovyCompilationUnit.setResolveVisitor(resolver);
+		this.hasSources = false;
+		this.parsedAhead = null;
+	}
+
 	static class GrapeAwareGroovyClassLoader extends GroovyClassLoader {
 
 		// Could be prodded to indicate a grab has occurred within this compilation unit
@@ -395,13 +494,91 @@ public class GroovyParser {
 	 * Call the groovy parser to drive the first few phases of
 	 */
 	public CompilationUnitDeclaration dietParse(ICompilationUnit sourceUnit, CompilationResult compilationResult) {
+		return dietParse(sourceUnit, compilationResult, false);
+	}
+
+	/**
+	 * Parses a single unit for the indexer, so that one parser can be used for all the files of an indexing job. A new groovy
+	 * compilation unit is started if the current one already holds another file, since the groovy units of the same compilation
+	 * unit proceed through the phases together. Types are not recorded with the resolver and scripts are not tagged because the
+	 * indexer never resolves or generates code.
+	 */
+	public GroovyCompilationUnitDeclaration dietParseForIndexing(ICompilationUnit sourceUnit, CompilationResult compilationResult) {
+		if (hasSources) {
+			startNextUnit();
+		}
+		return dietParse(sourceUnit, compilationResult, true);
+	}
+
+	/**
+	 * Adds the groovy units among the given units to the groovy compilation unit and parses and converts them all at once, before
+	 * they are asked for one by one. The sources are parsed and converted at the same time, but their problems are still reported
+	 * for each unit as it is asked for. Nothing is done unless several threads are to be used and there are at least two groovy
+	 * units. If the groovy compiler fails, the units are dropped again and parsed one by one, so that the failure is reported as
+	 * it would have been.
+	 * 
+	 * @param sourceUnits the units to compile, in the order they will be asked for
+	 * @param maxUnits the number of units of the array to compile
+	 */
+	public void parseAhead(ICompilationUnit[] sourceUnits, int maxUnits) {
+		if (hasSources || isReconcile) {
+			return;
+		}
+		ExecutorService pool = getParsePool();
+		if (pool == null) {
+			return;
+		}
+		List<ICompilationUnit> groovyUnits = new ArrayList<ICompilationUnit>();
+		for (int i = 0; i < maxUnits; i++) {
+			if (ContentTypeUtils.isGroovyLikeFileName(sourceUnits[i].getFileName())) {
+				groovyUnits.add(sourceUnits[i]);
+			}
+		}
+		if (groovyUnits.size() < 2) {
+			return;
+		}
+
+		Map<ICompilationUnit, PreparedSource> prepared = new IdentityHashMap<ICompilationUnit, PreparedSource>();
+		for (ICompilationUnit unit : groovyUnits) {
+			PreparedSource source = prepare(unit);
+			groovyCompilationUnit.addSource(source.groovySourceUnit);
+			prepared.put(unit, source);
+		}
+		hasSources = true;
+		setProgressListener();
+		CompilationUnit compilationUnit = groovyCompilationUnit;
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		try {
+			Thread.currentThread().setContextClassLoader(compilationUnit.getTransformLoader());
+			compilationUnit.setExecutor(pool);
+			compilationUnit.compile(Phases.CONVERSION);
+			parsedAhead = prepared;
+			synchronized (GroovyParser.class) {
+				parsedAheadCount += prepared.size();
+			}
+		} catch (CompilationFailedException e) {
+			startNextUnit();
+		} catch (GroovyBugError e) {
+			startNextUnit();
+		} finally {
+			compilationUnit.setExecutor(null);
+			Thread.currentThread().setContextClassLoader(cl);
+		}
+	}
+
+	/**
+	 * Creates the groovy source for a unit
+	 */
+	private PreparedSource prepare(ICompilationUnit sourceUnit) {
 		char[] sourceCode = sourceUnit.getContents();
 		if (sourceCode == null) {
 			sourceCode = CharOperation.NO_CHAR; // pretend empty from thereon
 		}
 
 		// FIXASC (M3) need our own tweaked subclass of CompilerConfiguration?
-		CompilerConfiguration groovyCompilerConfig = new CompilerConfiguration();
+		if (groovyCompilerConfig == null) {
+			groovyCompilerConfig = new CompilerConfiguration();
+		}
 		// groovyCompilerConfig.setPluginFactory(new ErrorRecoveredCSTParserPluginFactory(null));
 		ErrorCollector errorCollector = new GroovyErrorCollectorForJDT(groovyCompilerConfig);
 		String filepath = null;
@@ -430,16 +607,21 @@ public class GroovyParser {
 			}
 		}
 
-		SourceUnit groovySourceUnit = new EclipseSourceUnit(eclipseFile, filepath, new String(sourceCode), groovyCompilerConfig,
+		// the parser, the locations and the compilation result share the contents and their line separators
+		PreparedSource prepared = new PreparedSource();
+		prepared.sourceCode = sourceCode;
+		prepared.eclipseFile = eclipseFile;
+		prepared.source = new CharArrayReaderSource(sourceCode, groovyCompilerConfig);
+		prepared.groovySourceUnit = new EclipseSourceUnit(eclipseFile, filepath, prepared.source, groovyCompilerConfig,
 				groovyCompilationUnit.getClassLoader(), errorCollector);
-		groovySourceUnit.isReconcile = isReconcile;
-		GroovyCompilationUnitDeclaration gcuDeclaration = new GroovyCompilationUnitDeclaration(problemReporter, compilationResult,
-				sourceCode.length, groovyCompilationUnit, groovySourceUnit, compilerOptions);
-		// FIXASC get this from the Antlr parser
-		compilationResult.lineSeparatorPositions = GroovyUtils.getSourceLineSeparatorsIn(sourceCode);
-		groovyCompilationUnit.addSource(groovySourceUnit);
+		prepared.groovySourceUnit.isReconcile = isReconcile;
+		return prepared;
+	}
 
-		// Check if it is worth plugging in a callback listener for parse/generation
+	/**
+	 * Check if it is worth plugging in a callback listener for parse/generation
+	 */
+	private void setProgressListener() {
 		if (requestor instanceof org.eclipse.jdt.internal.compiler.Compiler) {
 			org.eclipse.jdt.internal.compiler.Compiler compiler = ((org.eclipse.jdt.internal.compiler.Compiler) requestor);
 			if (compiler.requestor instanceof BatchImageBuilder) {
@@ -449,21 +631,41 @@ public class GroovyParser {
 				}
 			}
 		}
+	}
+
+	private GroovyCompilationUnitDeclaration dietParse(ICompilationUnit sourceUnit, CompilationResult compilationResult,
+			boolean forIndexing) {
+		PreparedSource prepared = parsedAhead == null ? null : parsedAhead.remove(sourceUnit);
+		if (prepared == null) {
+			prepared = prepare(sourceUnit);
+			groovyCompilationUnit.addSource(prepared.groovySourceUnit);
+			hasSources = true;
+		}
+		IFile eclipseFile = prepared.eclipseFile;
+		SourceUnit groovySourceUnit = prepared.groovySourceUnit;
+		GroovyCompilationUnitDeclaration gcuDeclaration = new GroovyCompilationUnitDeclaration(problemReporter, compilationResult,
+				prepared.sourceCode.length, groovyCompilationUnit, groovySourceUnit, compilerOptions);
+		compilationResult.lineSeparatorPositions = prepared.source.getLineSeparatorPositions();
+
+		setProgressListener();
+		// a source that was parsed ahead is already converted, and only its problems are recorded here
 		gcuDeclaration.processToPhase(Phases.CONVERSION);
 
 		// Groovy moduleNode is null when there is a fatal error
 		// Otherwise, recover what we can
 		if (gcuDeclaration.getModuleNode() != null) {
 			gcuDeclaration.populateCompilationUnitDeclaration();
-			for (TypeDeclaration decl : gcuDeclaration.types) {
-				GroovyTypeDeclaration gtDeclaration = (GroovyTypeDeclaration) decl;
-				resolver.record(gtDeclaration);
+			if (!forIndexing) {
+				for (TypeDeclaration decl : gcuDeclaration.types) {
+					GroovyTypeDeclaration gtDeclaration = (GroovyTypeDeclaration) decl;
+					resolver.record(gtDeclaration);
+				}
 			}
 		}
 		// Is this a script?
 		// If allowTransforms is TRUE then this is a 'full build' and we should remember which are scripts so that
 		// .class file output can be suppressed
-		if (projectName != null && eclipseFile != null) {
+		if (projectName != null && eclipseFile != null && !forIndexing) {
 			ScriptFolderSelector scriptFolderSelector = scriptFolderSelectorCache.get(projectName);
 			if (scriptFolderSelector == null) {
 				scriptFolderSelector = new ScriptFolderSelector(ResourcesPlugin.getWorkspace().getRoot().getProject(projectName));
@@ -536,6 +738,8 @@ public class GroovyParser {
 		this.groovyCompilationUnit = makeCompilationUnit(grabbyLoader, gcl, isReconcile, allowTransforms);
 		this.resolver = new JDTResolver(groovyCompilationUnit);
 		this.groovyCompilationUnit.setResolveVisitor(resolver);
+		this.hasSources = false;
+		this.parsedAhead = null;
 	}
 
 	private CompilationUnit makeCompilationUnit(GroovyClassLoader loader, GroovyClassLoader transformLoader, boolean isReconcile,
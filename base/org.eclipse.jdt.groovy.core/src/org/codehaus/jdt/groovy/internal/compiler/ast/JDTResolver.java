@@ -13,6 +13,9 @@ package org.codehaus.jdt.groovy.internal.compiler.ast;
 
 import groovy.lang.GroovyClassLoader;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -22,6 +25,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.groovy.ast.ClassHelper;
 import org.codehaus.groovy.ast.ClassNode;
@@ -33,7 +38,11 @@ import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyParser.GrapeAwareGroo
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.ast.TypeDeclaration;
 import org.eclipse.jdt.internal.compiler.lookup.Binding;
+import org.eclipse.jdt.internal.compiler.lookup.LookupEnvironment;
+import org.eclipse.jdt.internal.compiler.lookup.ReferenceBinding;
 import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
+import org.eclipse.jdt.internal.compiler.util.SimpleSet;
+import org.eclipse.jdt.internal.core.builder.NameEnvironment;
 
 /**
  * An extension to the standard groovy ResolveVisitor that can ask JDT for types when groovy cannot find them. A groovy project in
@@ -104,6 +113,20 @@ public class JDTResolver extends ResolveVisitor {
 	// Cache from bindings to JDTClassNodes to avoid unnecessary JDTClassNode creation
 	private Map<Binding, JDTClassNode> nodeCache = Collections.synchronizedMap(new WeakHashMap<Binding, JDTClassNode>());
 
+	// Index of the nodeCache by the readable name of the binding. Nodes are only weakly referenced so that they can be collected
+	// along with their entries in the nodeCache
+	private final ConcurrentMap<String, NodeReference> nodesByName = new ConcurrentHashMap<String, NodeReference>();
+	private final ReferenceQueue<JDTClassNode> collectedNodes = new ReferenceQueue<JDTClassNode>();
+
+	private static class NodeReference extends WeakReference<JDTClassNode> {
+		final String name;
+
+		NodeReference(String name, JDTClassNode node, ReferenceQueue<JDTClassNode> queue) {
+			super(node, queue);
+			this.name = name;
+		}
+	}
+
 	public JDTResolver(CompilationUnit groovyCompilationUnit) {
 		super(groovyCompilationUnit);
 		if (recordInstances) {
@@ -114,29 +137,40 @@ public class JDTResolver extends ResolveVisitor {
 		}
 	}
 
+	/**
+	 * Moves this resolver to a new groovy compilation unit of the same parser. Types resolved so far are kept, but the scopes
+	 * recorded for the declarations of the old unit are dropped.
+	 */
+	void setCompilationUnit(CompilationUnit groovyCompilationUnit) {
+		this.compilationUnit = groovyCompilationUnit;
+		scopes.clear();
+	}
+
 	public static JDTClassNode getCachedNode(JDTResolver instance, String name) {
-		for (Map.Entry<Binding, JDTClassNode> nodeFromCache : instance.nodeCache.entrySet()) {
-			String nodename = new String(nodeFromCache.getKey().readableName());
-			if (nodename.equals(name)) {
-				return nodeFromCache.getValue();
-			}
-		}
-		return null;
+		NodeReference ref = instance.nodesByName.get(name);
+		return ref != null ? ref.get() : null;
 	}
 
 	public static JDTClassNode getCachedNode(String name) {
 		for (JDTResolver resolver : instances) {
-			for (Map.Entry<Binding, JDTClassNode> nodeFromCache : resolver.nodeCache.entrySet()) {
-				String nodename = new String(nodeFromCache.getKey().readableName());
-				System.out.println(nodename);
-				if (nodename.equals(name)) {
-					return nodeFromCache.getValue();
-				}
+			JDTClassNode node = getCachedNode(resolver, name);
+			if (node != null) {
+				return node;
 			}
 		}
 		return null;
 	}
 
+	private void indexNode(TypeBinding jdtBinding, JDTClassNode jdtNode) {
+		Reference<? extends JDTClassNode> collected;
+		while ((collected = collectedNodes.poll()) != null) {
+			NodeReference ref = (NodeReference) collected;
+			nodesByName.remove(ref.name, ref);
+		}
+		String name = new String(jdtBinding.readableName());
+		nodesByName.put(name, new NodeReference(name, jdtNode, collectedNodes));
+	}
+
 	/**
 	 * resolveFromModule() - look at other types in the same source file (no need to talk to JDT)
 	 */
@@ -359,6 +393,12 @@ public class JDTResolver extends ResolveVisitor {
 	// over and over (GRECLIPSE-870)
 	private Set<String> unresolvables = new HashSet<String>();
 
+	// The simple type names in the packages of the builder's name environment, by package name, for the lookup environment that
+	// they were listed in. Lets the probes of star and default imports skip the lookup of types that are not there
+	private LookupEnvironment indexedEnvironment;
+	private Map<String, SimpleSet> typeNamesByPackage = new HashMap<String, SimpleSet>();
+	private static final SimpleSet UNKNOWN_TYPE_NAMES = new SimpleSet(1);
+
 	@Override
 	protected boolean resolve(ClassNode type, boolean testModuleImports, boolean testDefaultImports, boolean testStaticInnerClasses) {
 		String name = type.getName();
@@ -373,6 +413,12 @@ public class JDTResolver extends ResolveVisitor {
 		if (unresolvables.contains(name)) {
 			// System.out.println("Skipping... " + name);
 			return false;
+		} else if (type instanceof ConstructedClassWithPackage && !testModuleImports && !testDefaultImports
+				&& isMissingFromPackageIndex(name)) {
+			// still record the reference, so that the type appearing later on causes a rebuild
+			recordDependency(name);
+			unresolvables.add(name);
+			return false;
 		} else {
 			boolean b = super.resolve(type, testModuleImports, testDefaultImports, testStaticInnerClasses);
 			// System.out.println("resolving... " + type.getName() + " = " + b);
@@ -383,6 +429,66 @@ public class JDTResolver extends ResolveVisitor {
 		}
 	}
 
+	/**
+	 * A probe like java.util.Foo for a star or default import cannot succeed if none of the packages along the name contains a
+	 * type that the rest of the name could start with. The builder's name environment can answer that from the listing of the
+	 * package, without looking for the class files. When in doubt, like for packages that cannot be listed, for types that the
+	 * lookup environment or this compilation unit already knows or when grapes have been grabbed, the normal lookup is used.
+	 */
+	private boolean isMissingFromPackageIndex(String name) {
+		GroovyCompilationUnitScope scope = getScope();
+		if (scope == null) {
+			return false;
+		}
+		LookupEnvironment environment = scope.environment();
+		if (!(environment.nameEnvironment instanceof NameEnvironment)) {
+			// reconciling and batch compiling have no listings to go by
+			return false;
+		}
+		GroovyClassLoader loader = compilationUnit.getClassLoader();
+		if (loader instanceof GrapeAwareGroovyClassLoader && ((GrapeAwareGroovyClassLoader) loader).grabbed) {
+			return false;
+		}
+		if (environment != indexedEnvironment) {
+			indexedEnvironment = environment;
+			typeNamesByPackage.clear();
+		}
+
+		int dot = name.indexOf('.');
+		if (dot < 0) {
+			return false;
+		}
+		while (dot >= 0) {
+			int next = name.indexOf('.', dot + 1);
+			String typeName = next < 0 ? name : name.substring(0, next);
+			SimpleSet typeNames = getTypeNames((NameEnvironment) environment.nameEnvironment, name.substring(0, dot));
+			if (typeNames == null || typeNames.includes(typeName.substring(dot + 1))) {
+				return false;
+			}
+			ReferenceBinding cachedType = environment.getCachedType(CharOperation.splitOn('.', typeName.toCharArray()));
+			if (cachedType != null && cachedType.isValidBinding()) {
+				return false;
+			}
+			if (compilationUnit.getAST().getClass(typeName) != null) {
+				return false;
+			}
+			dot = next;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the simple type names of the package, or null if they are not known
+	 */
+	private SimpleSet getTypeNames(NameEnvironment nameEnvironment, String packageName) {
+		SimpleSet typeNames = typeNamesByPackage.get(packageName);
+		if (typeNames == null) {
+			typeNames = nameEnvironment.findTypeNames(packageName.replace('.', '/'));
+			typeNamesByPackage.put(packageName, typeNames == null ? UNKNOWN_TYPE_NAMES : typeNames);
+		}
+		return typeNames == UNKNOWN_TYPE_NAMES ? null : typeNames;
+	}
+
 	public ClassNode resolve(String qualifiedName) {
 		ClassNode type = ClassHelper.makeWithoutCaching(qualifiedName);
 		if (super.resolve(type)) {
@@ -479,6 +585,7 @@ public class JDTResolver extends ResolveVisitor {
 			jdtNode.setupGenerics(); // for a binarytypebinding this fixes up those generics.
 			inProgress.remove(jdtBinding);
 			nodeCache.put(jdtBinding, jdtNode);
+			indexNode(jdtBinding, jdtNode);
 		}
 		return classNode;
 	}
@@ -99,7 +99,7 @@ public class GroovyCompilationUnit extends CompilationUnit {
 	 * 
 	 */
 	public ModuleNode getModuleNode() {
-		ModuleNodeInfo moduleInfo = getModuleInfo(true);
+		ModuleNodeInfo moduleInfo = getModuleInfo(true, false);
 		return moduleInfo != null ? moduleInfo.module : null;
 	}
 
@@ -112,12 +112,20 @@ public class GroovyCompilationUnit extends CompilationUnit {
 	 *         working copy. Also will be null if a problem occurs
 	 */
 	public ModuleNodeInfo getModuleInfo(boolean force) {
+		return getModuleInfo(force, true);
+	}
+
+	/**
+	 * @param needsResolver if false, and only the resolver of the module node has been evicted from the cache, the module node is
+	 *        returned without its resolver instead of reattaching or rebuilding the resolver
+	 */
+	private ModuleNodeInfo getModuleInfo(boolean force, boolean needsResolver) {
 		try {
 			if (!isConsistent()) {
 				makeConsistent(null);
 			}
 			boolean becameWorkingCopy = false;
-			ModuleNodeMapper.getInstance().lock();
+			ModuleNodeMapper.getInstance().lock(this);
 			// discard the working copy after finishing
 			// if there was no working copy to begin with
 			try {
@@ -126,7 +134,18 @@ public class GroovyCompilationUnit extends CompilationUnit {
 				}
 				PerWorkingCopyInfo info = getPerWorkingCopyInfo();
 				if (info != null) {
-					return ModuleNodeMapper.getInstance().get(info);
+					ModuleNodeMapper mapper = ModuleNodeMapper.getInstance();
+					if (mapper.isEvicted(info)) {
+						ModuleNodeInfo withoutResolver = needsResolver ? null : mapper.get(info);
+						if (withoutResolver != null) {
+							return withoutResolver;
+						}
+						if (!mapper.reattach(info)) {
+							// the evicted module node or resolver has been garbage collected, so rebuild it
+							openWhenClosed(createElementInfo(), false, new NullProgressMonitor());
+						}
+					}
+					return mapper.get(info);
 				}
 			} finally {
 				try {
@@ -134,7 +153,7 @@ public class GroovyCompilationUnit extends CompilationUnit {
 						discardWorkingCopy();
 					}
 				} finally {
-					ModuleNodeMapper.getInstance().unlock();
+					ModuleNodeMapper.getInstance().unlock(this);
 				}
 			}
 		} catch (JavaModelException e) {
@@ -162,7 +181,7 @@ public class GroovyCompilationUnit extends CompilationUnit {
 	@Override
 	public void discardWorkingCopy() throws JavaModelException {
 		// GRECLIPSE-804 must synchronize
-		ModuleNodeMapper.getInstance().lock();
+		ModuleNodeMapper.getInstance().lock(this);
 		try {
 			PerWorkingCopyInfo info = getPerWorkingCopyInfo();
 			if (workingCopyInfoWillBeDiscarded(info)) {
@@ -170,7 +189,7 @@ public class GroovyCompilationUnit extends CompilationUnit {
 			}
 			super.discardWorkingCopy();
 		} finally {
-			ModuleNodeMapper.getInstance().unlock();
+			ModuleNodeMapper.getInstance().unlock(this);
 		}
 	}
 
@@ -11,10 +11,15 @@
 
 package org.codehaus.jdt.groovy.model;
 
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.codehaus.groovy.ast.ModuleNode;
@@ -25,7 +30,9 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
-import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.groovy.search.InferenceResultStore;
+import org.eclipse.jdt.internal.core.CompilationUnit;
 import org.eclipse.jdt.internal.core.JavaModelManager;
 import org.eclipse.jdt.internal.core.JavaModelManager.PerWorkingCopyInfo;
 import org.eclipse.jdt.internal.core.util.Util;
@@ -36,7 +43,9 @@ import org.eclipse.jdt.internal.core.util.Util;
  * 
  *          This class stores module nodes for groovy compilation units This class is not meant to be accessed externally.
  * 
- *          One module node is stored per working copy of a unit
+ *          One module node is stored per working copy of a unit. Reads and writes of the map do not lock. Operations that must see
+ *          a consistent working copy state (eg- becoming a working copy, reading the module node and discarding the working copy
+ *          again) lock the stripe of their compilation unit, so that operations on different units never wait for each other.
  */
 public class ModuleNodeMapper {
 
@@ -48,6 +57,88 @@ public class ModuleNodeMapper {
 
 		public final ModuleNode module;
 		public final JDTResolver resolver;
+
+		// used by the retention policy
+		volatile long lastAccess;
+		int sourceLength;
+	}
+
+	/**
+	 * Counters for the module nodes cached by the mapper
+	 */
+	public static class Statistics {
+		public final long hits;
+		public final long misses;
+		public final long evictions;
+		public final long resolverEvictions;
+		public final long reattachments;
+		public final long rebuilds;
+		public final int entries;
+		public final long retainedEstimate;
+
+		Statistics(long hits, long misses, long evictions, long resolverEvictions, long reattachments, long rebuilds, int entries,
+				long retainedEstimate) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.resolverEvictions = resolverEvictions;
+			this.reattachments = reattachments;
+			this.rebuilds = rebuilds;
+			this.entries = entries;
+			this.retainedEstimate = retainedEstimate;
+		}
+
+		@Override
+		public String toString() {
+			return "entries: " + entries + ", hits: " + hits + ", misses: " + misses + ", evictions: " + evictions
+					+ ", resolver evictions: " + resolverEvictions + ", reattachments: " + reattachments + ", rebuilds: " + rebuilds
+					+ ", retained estimate: " + (retainedEstimate >> 10) + "KB";
+		}
+	}
+
+	// Retention policy. Only the least recently used entries are evicted once one of the limits has been exceeded. By default
+	// only their resolvers are dropped, since resolvers and their lookup environments retain far more than the module nodes.
+	// Evicted entries stay softly reachable, so that they can be reattached instead of rebuilt until memory actually runs low.
+	private static final int DEFAULT_MAX_ENTRIES = Integer.getInteger("greclipse.moduleCache.maxEntries", Integer.MAX_VALUE);
+	private static final long DEFAULT_MAX_RETAINED_BYTES = Long.getLong("greclipse.moduleCache.maxRetainedMB", 256) << 20;
+	private static final boolean DEFAULT_EVICT_RESOLVERS_ONLY = !Boolean.getBoolean("greclipse.moduleCache.evictModules");
+
+	private static volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+	private static volatile long maxRetainedBytes = DEFAULT_MAX_RETAINED_BYTES;
+	private static volatile boolean evictResolversOnly = DEFAULT_EVICT_RESOLVERS_ONLY;
+	private static volatile boolean retainEvicted = true;
+
+	/**
+	 * For testing only. Replaces the retention policy that is read from the system properties
+	 * 
+	 * @param retainEvicted false to drop evicted entries right away, so that they must be rebuilt
+	 */
+	public static void setRetentionPolicy(int maxEntries, long maxRetainedBytes, boolean evictResolversOnly, boolean retainEvicted) {
+		ModuleNodeMapper.maxEntries = maxEntries;
+		ModuleNodeMapper.maxRetainedBytes = maxRetainedBytes;
+		ModuleNodeMapper.evictResolversOnly = evictResolversOnly;
+		ModuleNodeMapper.retainEvicted = retainEvicted;
+	}
+
+	/**
+	 * For testing only. Restores the retention policy that is read from the system properties
+	 */
+	public static void resetRetentionPolicy() {
+		setRetentionPolicy(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_RETAINED_BYTES, DEFAULT_EVICT_RESOLVERS_ONLY, true);
+	}
+
+	// Rough estimates of the heap retained per character of source
+	private static final int MODULE_BYTES_PER_CHAR = 64;
+	private static final int RESOLVER_BYTES_PER_CHAR = 256;
+	// The lookup environment of a resolver retains bindings for everything that the unit references
+	private static final long RESOLVER_BASE_BYTES = 2 << 20;
+
+	static long estimateRetainedSize(ModuleNodeInfo info) {
+		long size = (long) info.sourceLength * MODULE_BYTES_PER_CHAR;
+		if (info.resolver != null) {
+			size += RESOLVER_BASE_BYTES + (long) info.sourceLength * RESOLVER_BYTES_PER_CHAR;
+		}
+		return size;
 	}
 
 	private static final ModuleNodeMapper INSTANCE = new ModuleNodeMapper();
@@ -56,18 +147,132 @@ public class ModuleNodeMapper {
 		return INSTANCE;
 	}
 
-	private final ReentrantLock lock = new ReentrantLock(true);
+	// must be a power of 2
+	private static final int STRIPE_COUNT = 32;
 
-	private final Map<PerWorkingCopyInfo, ModuleNodeInfo> infoToModuleMap = new HashMap<PerWorkingCopyInfo, ModuleNodeInfo>();
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+	{
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+	}
 
-	void store(PerWorkingCopyInfo info, ModuleNode module, JDTResolver resolver) {
-		lock.lock();
-		try {
-			sweepAndPurgeModuleNodes();
-			infoToModuleMap.put(info, new ModuleNodeInfo(module, shouldStoreResovler() ? resolver : null));
-		} finally {
-			lock.unlock();
+	private final ConcurrentMap<PerWorkingCopyInfo, ModuleNodeInfo> infoToModuleMap = new ConcurrentHashMap<PerWorkingCopyInfo, ModuleNodeInfo>();
+
+	// working copies whose module node or resolver has been evicted, and the evicted entries. These are reattached if they are
+	// requested again before they have been garbage collected, and rebuilt otherwise
+	private final Map<PerWorkingCopyInfo, SoftReference<ModuleNodeInfo>> evicted = new ConcurrentHashMap<PerWorkingCopyInfo, SoftReference<ModuleNodeInfo>>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong resolverEvictions = new AtomicLong();
+	private final AtomicLong reattachments = new AtomicLong();
+	private final AtomicLong rebuilds = new AtomicLong();
+
+	void store(PerWorkingCopyInfo info, ModuleNode module, JDTResolver resolver, int sourceLength) {
+		ModuleNodeInfo moduleNodeInfo = new ModuleNodeInfo(module, shouldStoreResovler() ? resolver : null);
+		moduleNodeInfo.sourceLength = sourceLength;
+		moduleNodeInfo.lastAccess = System.nanoTime();
+		ModuleNodeInfo previous = infoToModuleMap.put(info, moduleNodeInfo);
+		if (previous != null) {
+			InferenceResultStore.discard(previous);
 		}
+		evicted.remove(info);
+		enforceRetentionPolicy(info);
+	}
+
+	/**
+	 * Evicts the least recently used entries until the cache is within its limits again
+	 * 
+	 * @param justStored never evicted
+	 */
+	private synchronized void enforceRetentionPolicy(PerWorkingCopyInfo justStored) {
+		int retainedCount = 0;
+		long retainedSize = 0;
+		List<Map.Entry<PerWorkingCopyInfo, ModuleNodeInfo>> candidates = new ArrayList<Map.Entry<PerWorkingCopyInfo, ModuleNodeInfo>>();
+		for (Map.Entry<PerWorkingCopyInfo, ModuleNodeInfo> entry : infoToModuleMap.entrySet()) {
+			ModuleNodeInfo info = entry.getValue();
+			retainedSize += estimateRetainedSize(info);
+			if (!evictResolversOnly || info.resolver != null) {
+				retainedCount++;
+				if (entry.getKey() != justStored) {
+					candidates.add(entry);
+				}
+			}
+		}
+		if (retainedCount <= maxEntries && retainedSize <= maxRetainedBytes) {
+			return;
+		}
+
+		Collections.sort(candidates, new Comparator<Map.Entry<PerWorkingCopyInfo, ModuleNodeInfo>>() {
+			public int compare(Map.Entry<PerWorkingCopyInfo, ModuleNodeInfo> e1, Map.Entry<PerWorkingCopyInfo, ModuleNodeInfo> e2) {
+				long a1 = e1.getValue().lastAccess, a2 = e2.getValue().lastAccess;
+				return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+			}
+		});
+		for (Map.Entry<PerWorkingCopyInfo, ModuleNodeInfo> candidate : candidates) {
+			if (retainedCount <= maxEntries && retainedSize <= maxRetainedBytes) {
+				break;
+			}
+			ModuleNodeInfo info = candidate.getValue();
+			if (evictResolversOnly) {
+				ModuleNodeInfo withoutResolver = new ModuleNodeInfo(info.module, null);
+				withoutResolver.sourceLength = info.sourceLength;
+				withoutResolver.lastAccess = info.lastAccess;
+				if (infoToModuleMap.replace(candidate.getKey(), info, withoutResolver)) {
+					InferenceResultStore.discard(info);
+					evicted.put(candidate.getKey(), new SoftReference<ModuleNodeInfo>(retainEvicted ? info : null));
+					retainedSize -= estimateRetainedSize(info) - estimateRetainedSize(withoutResolver);
+					resolverEvictions.incrementAndGet();
+				}
+			} else {
+				if (infoToModuleMap.remove(candidate.getKey()) != null) {
+					InferenceResultStore.discard(info);
+					evicted.put(candidate.getKey(), new SoftReference<ModuleNodeInfo>(retainEvicted ? info : null));
+					retainedSize -= estimateRetainedSize(info);
+					evictions.incrementAndGet();
+				}
+			}
+			retainedCount--;
+		}
+	}
+
+	/**
+	 * @return true iff the module node or the resolver of the working copy has been evicted
+	 */
+	boolean isEvicted(PerWorkingCopyInfo info) {
+		return evicted.containsKey(info);
+	}
+
+	/**
+	 * Puts the evicted module node and resolver of the working copy back into the cache, unless they have been garbage collected.
+	 * Must be called with the stripe of the working copy locked.
+	 * 
+	 * @return true iff the entry has been reattached, false if it must be rebuilt
+	 */
+	boolean reattach(PerWorkingCopyInfo info) {
+		SoftReference<ModuleNodeInfo> ref = evicted.get(info);
+		ModuleNodeInfo evictedInfo = ref != null ? ref.get() : null;
+		if (evictedInfo == null) {
+			rebuilds.incrementAndGet();
+			return false;
+		}
+		store(info, evictedInfo.module, evictedInfo.resolver, evictedInfo.sourceLength);
+		reattachments.incrementAndGet();
+		return true;
+	}
+
+	public static Statistics getStatistics() {
+		ModuleNodeMapper mapper = INSTANCE;
+		int entries = 0;
+		long retained = 0;
+		for (ModuleNodeInfo info : mapper.infoToModuleMap.values()) {
+			entries++;
+			retained += estimateRetainedSize(info);
+		}
+		return new Statistics(mapper.hits.get(), mapper.misses.get(), mapper.evictions.get(), mapper.resolverEvictions.get(),
+				mapper.reattachments.get(), mapper.rebuilds.get(), entries, retained);
 	}
 
 	private final static boolean DSL_BUNDLE_INSTALLED;
@@ -86,44 +291,33 @@ public class ModuleNodeMapper {
 	}
 
 	ModuleNode getModule(PerWorkingCopyInfo info) {
-		lock.lock();
-		try {
-			ModuleNodeInfo moduleNodeInfo = get(info);
-			return moduleNodeInfo != null ? moduleNodeInfo.module : null;
-		} finally {
-			lock.unlock();
-		}
+		ModuleNodeInfo moduleNodeInfo = get(info);
+		return moduleNodeInfo != null ? moduleNodeInfo.module : null;
 	}
 
 	ModuleNodeInfo get(PerWorkingCopyInfo info) {
-		lock.lock();
-		try {
-			sweepAndPurgeModuleNodes();
-			return infoToModuleMap.get(info);
-		} finally {
-			lock.unlock();
+		ModuleNodeInfo moduleNodeInfo = infoToModuleMap.get(info);
+		if (moduleNodeInfo != null) {
+			moduleNodeInfo.lastAccess = System.nanoTime();
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
 		}
+		return moduleNodeInfo;
 	}
 
 	JDTResolver getResolver(PerWorkingCopyInfo info) {
-		lock.lock();
-		try {
-			ModuleNodeInfo moduleNodeInfo = get(info);
-			return moduleNodeInfo != null ? moduleNodeInfo.resolver : null;
-		} finally {
-			lock.unlock();
-		}
+		ModuleNodeInfo moduleNodeInfo = get(info);
+		return moduleNodeInfo != null ? moduleNodeInfo.resolver : null;
 	}
 
 	ModuleNode remove(PerWorkingCopyInfo info) {
-		lock.lock();
-		try {
-			sweepAndPurgeModuleNodes();
-			ModuleNodeInfo removed = infoToModuleMap.remove(info);
-			return removed != null ? removed.module : null;
-		} finally {
-			lock.unlock();
+		evicted.remove(info);
+		ModuleNodeInfo removed = infoToModuleMap.remove(info);
+		if (removed != null) {
+			InferenceResultStore.discard(removed);
 		}
+		return removed != null ? removed.module : null;
 	}
 
 	/**
@@ -134,25 +328,27 @@ public class ModuleNodeMapper {
 	 */
 	protected void maybeCacheModuleNode(final JavaModelManager.PerWorkingCopyInfo perWorkingCopyInfo,
 			final GroovyCompilationUnitDeclaration compilationUnitDeclaration) {
+		if (perWorkingCopyInfo == null || compilationUnitDeclaration == null) {
+			return;
+		}
 
-		if (lock.tryLock()) {
+		ReentrantLock stripe = getStripe(perWorkingCopyInfo.getWorkingCopy());
+		if (stripe.tryLock()) {
 			try {
-				if (perWorkingCopyInfo != null && compilationUnitDeclaration != null) {
-					ModuleNode module = compilationUnitDeclaration.getModuleNode();
-
-					// Store it for later
-					if (module != null) {
-						JDTResolver resolver;
-						if (shouldStoreResovler()) {
-							resolver = (JDTResolver) compilationUnitDeclaration.getCompilationUnit().getResolveVisitor();
-						} else {
-							resolver = null;
-						}
-						store(perWorkingCopyInfo, module, resolver);
+				ModuleNode module = compilationUnitDeclaration.getModuleNode();
+
+				// Store it for later, unless the working copy has been discarded in the meantime
+				if (module != null && isCurrent(perWorkingCopyInfo)) {
+					JDTResolver resolver;
+					if (shouldStoreResovler()) {
+						resolver = (JDTResolver) compilationUnitDeclaration.getCompilationUnit().getResolveVisitor();
+					} else {
+						resolver = null;
 					}
+					store(perWorkingCopyInfo, module, resolver, Math.max(0, compilationUnitDeclaration.sourceEnd + 1));
 				}
 			} finally {
-				lock.unlock();
+				stripe.unlock();
 			}
 		} else {
 			// lock grabbed by someone else. rerun this operation later
@@ -166,47 +362,33 @@ public class ModuleNodeMapper {
 		}
 	}
 
+	/**
+	 * @return true iff the info still belongs to a live working copy. Entries for discarded infos would never be removed
+	 */
+	private boolean isCurrent(PerWorkingCopyInfo info) {
+		ICompilationUnit workingCopy = info.getWorkingCopy();
+		return workingCopy instanceof CompilationUnit && ((CompilationUnit) workingCopy).getPerWorkingCopyInfo() == info;
+	}
+
 	public static boolean isEmpty() {
 		return INSTANCE.infoToModuleMap.isEmpty();
 	}
 
-	// GRECLIPSE-804 check to see that the stored nodes are correct
-	// provide info to stdout if not and purge any stale elements
-	void sweepAndPurgeModuleNodes() {
-		lock.lock();
-		try {
-			if (System.getProperty("groovy.eclipse.model.purge") == null) {
-				return;
-			}
-
-			List<PerWorkingCopyInfo> toPurge = new ArrayList<PerWorkingCopyInfo>();
-			for (PerWorkingCopyInfo info : infoToModuleMap.keySet()) {
-				int useCount = ((Integer) ReflectionUtils.getPrivateField(PerWorkingCopyInfo.class, "useCount", info)).intValue();
-				if (useCount <= 0) {
-					String message = "Bad module node map entry: " + info.getWorkingCopy().getElementName();
-					System.out.println(message);
-					Util.log(new RuntimeException(message), message);
-					toPurge.add(info);
-				} else if (useCount > 1) {
-					System.out.println(info.getWorkingCopy().getElementName() + " : useCount : " + useCount);
-				}
-			}
-
-			if (toPurge.size() > 0) {
-				for (PerWorkingCopyInfo info : toPurge) {
-					infoToModuleMap.remove(info);
-				}
-			}
-		} finally {
-			lock.unlock();
-		}
+	private ReentrantLock getStripe(ICompilationUnit unit) {
+		int hash = unit != null ? unit.hashCode() : 0;
+		// spread the bits since handle hash codes are often close together
+		hash ^= (hash >>> 16);
+		return stripes[hash & (STRIPE_COUNT - 1)];
 	}
 
-	public void lock() {
-		lock.lock();
+	/**
+	 * Locks the module node state of the given compilation unit. All working copies of the unit share the same lock
+	 */
+	public void lock(ICompilationUnit unit) {
+		getStripe(unit).lock();
 	}
 
-	public void unlock() {
-		lock.unlock();
+	public void unlock(ICompilationUnit unit) {
+		getStripe(unit).unlock();
 	}
-}
\ No newline at end of file
+}
@@ -21,6 +21,8 @@ import groovyjarjarantlr.TokenStreamException;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.codehaus.groovy.antlr.parser.GroovyLexer;
 import org.eclipse.jface.text.BadLocationException;
@@ -33,8 +35,60 @@ import org.eclipse.jface.text.IDocument;
  */
 public class GroovyScanner {
 
+	/**
+	 * The state of the lexer after a token, from which scanning can be restarted at the end of that token without scanning the
+	 * text before it again.
+	 */
+	public static class RestartPoint {
+
+		private final int parenLevel;
+		private final int suppressNewline;
+		private final int stringCtorState;
+		private final Object[] parenLevelStack;
+		private final int lastSigTokenType;
+
+		RestartPoint(int parenLevel, int suppressNewline, int stringCtorState, Object[] parenLevelStack, int lastSigTokenType) {
+			this.parenLevel = parenLevel;
+			this.suppressNewline = suppressNewline;
+			this.stringCtorState = stringCtorState;
+			this.parenLevelStack = parenLevelStack;
+			this.lastSigTokenType = lastSigTokenType;
+		}
+
+		/**
+		 * @return true if scanning the same text from both restart points produces the same tokens
+		 */
+		public boolean hasSameState(RestartPoint other) {
+			return parenLevel == other.parenLevel && suppressNewline == other.suppressNewline
+					&& stringCtorState == other.stringCtorState && lastSigTokenType == other.lastSigTokenType
+					&& Arrays.equals(parenLevelStack, other.parenLevelStack);
+		}
+	}
+
+	/**
+	 * Gives access to the state that the Antlr lexer keeps between tokens, like the nesting of parentheses and strings.
+	 */
+	private static class RestartableLexer extends GroovyLexer {
+
+		RestartableLexer(Reader input) {
+			super(input);
+		}
+
+		RestartPoint getRestartPoint() {
+			return new RestartPoint(parenLevel, suppressNewline, stringCtorState, parenLevelStack.toArray(), lastSigTokenType);
+		}
+
+		void restart(RestartPoint restartPoint) {
+			parenLevel = restartPoint.parenLevel;
+			suppressNewline = restartPoint.suppressNewline;
+			stringCtorState = restartPoint.stringCtorState;
+			parenLevelStack = new ArrayList<Object>(Arrays.asList(restartPoint.parenLevelStack));
+			lastSigTokenType = restartPoint.lastSigTokenType;
+		}
+	}
+
 	private TokenStream stream;
-	private GroovyLexer lexer;
+	private RestartableLexer lexer;
 	private boolean whiteSpaceIncluded;
 
 	public GroovyScanner(Reader input) {
@@ -47,7 +101,7 @@ public class GroovyScanner {
 
 	private void init(Reader input, boolean whiteSpaceIncluded) {
 		this.whiteSpaceIncluded = whiteSpaceIncluded;
-		lexer = new GroovyLexer(input);
+		lexer = new RestartableLexer(input);
 		lexer.setWhitespaceIncluded(whiteSpaceIncluded);
 		this.stream = (TokenStream) lexer.plumb();
 	}
@@ -56,10 +110,30 @@ public class GroovyScanner {
 		this(new StringReader(text), false);
 	}
 
+	/**
+	 * Creates a scanner that continues scanning a document from a restart point, which must have been taken at the given offset
+	 * by a scanner of a document with the same text before that offset. The tokens have the line and column positions of the
+	 * document.
+	 * 
+	 * @throws BadLocationException
+	 */
+	public GroovyScanner(IDocument document, int offset, RestartPoint restartPoint) throws BadLocationException {
+		this(new StringReader(document.get(offset, document.getLength() - offset)), false);
+		setPosition(document, offset);
+		lexer.restart(restartPoint);
+	}
+
 	public Token nextToken() throws TokenStreamException {
 		return stream.nextToken();
 	}
 
+	/**
+	 * @return the state of the scanner after the last token that was returned
+	 */
+	public RestartPoint getRestartPoint() {
+		return lexer.getRestartPoint();
+	}
+
 	/**
 	 * Attempt to recover after a scanning error. We will recreate the Antlr lexer one character past the place where we got an
 	 * error and try to continue scanning from there.
@@ -70,14 +144,16 @@ public class GroovyScanner {
 		int line = lexer.getInputState().getLine(); // Line and
 		int col = lexer.getInputState().getColumn(); // column where error happened.
 		int offset = getOffset(document, line, col) + 1; // +1 to skip one character.
-		line = document.getLineOfOffset(offset);
-		int lineStart = document.getLineOffset(line);
-		line = line + 1; // antlr lines start at 1
-		col = offset - lineStart + 1; // antlr cols start at 1
 		String remainingInput = document.get(offset, document.getLength() - offset);
 		init(new StringReader(remainingInput), whiteSpaceIncluded); // Reinitialize with remaining input
-		lexer.setLine(line); // Fix antlr line and
-		lexer.setColumn(col);// column infos because we are not starting at the start
+		setPosition(document, offset);
+	}
+
+	private void setPosition(IDocument document, int offset) throws BadLocationException {
+		int line = document.getLineOfOffset(offset);
+		int lineStart = document.getLineOffset(line);
+		lexer.setLine(line + 1); // antlr lines start at 1
+		lexer.setColumn(offset - lineStart + 1); // antlr cols start at 1
 	}
 
 	/**
@@ -11,8 +11,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.groovy.core.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
 
 /**
  * Helper methods - can be made more eclipse friendly or replaced if the groovy infrastructure provides the information (eg.
@@ -24,23 +23,6 @@ public class GroovyUtils {
 
 	// FIXASC don't use this any more?
 	public static int[] getSourceLineSeparatorsIn(char[] code) {
-		List<Integer> lineSeparatorsCollection = new ArrayList<Integer>();
-		for (int i = 0, max = code.length; i < max; i++) {
-			if (code[i] == '\r') {
-				if ((i + 1) < max && code[i + 1] == '\n') {// \r\n
-					lineSeparatorsCollection.add(i + 1); // add the position of the \n
-					i++;
-				} else {
-					lineSeparatorsCollection.add(i); // add the position of the \r
-				}
-			} else if (code[i] == '\n') {
-				lineSeparatorsCollection.add(i);
-			}
-		}
-		int[] lineSepPositions = new int[lineSeparatorsCollection.size()];
-		for (int i = 0; i < lineSeparatorsCollection.size(); i++) {
-			lineSepPositions[i] = lineSeparatorsCollection.get(i);
-		}
-		return lineSepPositions;
+		return CharArrayReaderSource.findLineSeparators(code);
 	}
 }
@@ -16,6 +16,8 @@
 
 package org.eclipse.jdt.groovy.search;
 
+import java.util.Set;
+
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotationNode;
 import org.codehaus.groovy.ast.ClassNode;
@@ -35,7 +37,7 @@ import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
  * @created Nov 20, 2009 A simplified type lookup that targets the general case where a provider wants to add initialization to a
  *          class and add new methods/fields to certain types of objects
  */
-public abstract class AbstractSimplifiedTypeLookup implements ITypeLookupExtension {
+public abstract class AbstractSimplifiedTypeLookup implements ITypeLookupExtension, ISelectiveTypeLookup {
 
 	public static class TypeAndDeclaration {
 		public TypeAndDeclaration(ClassNode type, ASTNode declaration) {
@@ -141,6 +143,21 @@ public abstract class AbstractSimplifiedTypeLookup implements ITypeLookupExtensi
 		return null;
 	}
 
+	/**
+	 * Only constants, GStrings and variables are ever looked up
+	 */
+	public boolean handlesExpressionType(Class<? extends Expression> expressionType) {
+		return ConstantExpression.class.isAssignableFrom(expressionType) || GStringExpression.class.isAssignableFrom(expressionType)
+				|| VariableExpression.class.isAssignableFrom(expressionType);
+	}
+
+	/**
+	 * Sub-classes that know which names they contribute should override
+	 */
+	public Set<String> getNamesOfInterest() {
+		return null;
+	}
+
 	/**
 	 * @return the confidence level of lookup results for this type lookup. Defaults to {@link TypeConfidence#LOOSELY_INFERRED}
 	 */
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eclipse.jdt.groovy.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchRequestor;
+
+/**
+ * Holds on to the matches found in a single possible match, so that a search can run off the thread that owns the real
+ * requestor. The matches are sent to the real requestor by {@link #replay()}.
+ *
+ * @created Jul 31, 2013
+ */
+public class BufferingSearchRequestor extends SearchRequestor {
+
+	private final SearchRequestor delegate;
+
+	private final List<SearchMatch> matches = new ArrayList<SearchMatch>();
+
+	public BufferingSearchRequestor(SearchRequestor delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void acceptSearchMatch(SearchMatch match) throws CoreException {
+		matches.add(match);
+	}
+
+	/**
+	 * Sends all buffered matches to the real requestor, in the order they were found, and then forgets them
+	 */
+	public void replay() throws CoreException {
+		try {
+			for (SearchMatch match : matches) {
+				delegate.acceptSearchMatch(match);
+			}
+		} finally {
+			matches.clear();
+		}
+	}
+
+	/**
+	 * @return the requestor that the matches are eventually sent to
+	 */
+	public static SearchRequestor unwrap(SearchRequestor requestor) {
+		while (requestor instanceof BufferingSearchRequestor) {
+			requestor = ((BufferingSearchRequestor) requestor).delegate;
+		}
+		return requestor;
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eclipse.jdt.groovy.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+
+/**
+ * An immutable index of the methods declared in a set of categories. Methods are keyed by every name that they can be referenced
+ * with, so static category getters and setters are also available under their property name. The candidates for each name are
+ * grouped by the type of their first (self) parameter and kept in the order that the categories are searched in.
+ * <p>
+ * The index for the default categories is built once and shared. Indexes for scopes that declare additional categories only
+ * contain the additional categories and defer to the default index first.
+ *
+ * @created Jul 8, 2013
+ */
+public class CategoryMethodIndex {
+
+	private static final Candidate[] NO_CANDIDATES = new Candidate[0];
+
+	private static CategoryMethodIndex defaultIndex;
+
+	/**
+	 * A category method and the name of the type that it can be applied to. Only the first method for a given self type is kept
+	 * since it is the only one that can ever be chosen.
+	 */
+	private static class Candidate {
+		final String selfTypeName;
+		final MethodNode method;
+
+		Candidate(String selfTypeName, MethodNode method) {
+			this.selfTypeName = selfTypeName;
+			this.method = method;
+		}
+	}
+
+	/**
+	 * @return the shared index of {@link VariableScope#ALL_DEFAULT_CATEGORIES}
+	 */
+	public static synchronized CategoryMethodIndex getDefaultIndex() {
+		if (defaultIndex == null) {
+			defaultIndex = new CategoryMethodIndex(null, VariableScope.ALL_DEFAULT_CATEGORIES);
+		}
+		return defaultIndex;
+	}
+
+	/**
+	 * Creates an index for the given categories. The default categories are not re-indexed
+	 *
+	 * @param categories all categories in scope, starting with the default categories
+	 * @return a new index
+	 */
+	public static CategoryMethodIndex create(Set<ClassNode> categories) {
+		List<ClassNode> additional = new ArrayList<ClassNode>(2);
+		for (ClassNode category : categories) {
+			if (!VariableScope.ALL_DEFAULT_CATEGORIES.contains(category)) {
+				additional.add(category);
+			}
+		}
+		return new CategoryMethodIndex(getDefaultIndex(), additional);
+	}
+
+	/**
+	 * checked before this index
+	 */
+	private final CategoryMethodIndex parent;
+
+	private final Map<String, Candidate[]> nameToCandidates;
+
+	private CategoryMethodIndex(CategoryMethodIndex parent, Iterable<ClassNode> categories) {
+		this.parent = parent;
+		Map<String, List<MethodNode>> allMethods = new LinkedHashMap<String, List<MethodNode>>();
+		for (ClassNode category : categories) {
+			indexCategory(category, allMethods);
+		}
+		Map<String, Candidate[]> index = new HashMap<String, Candidate[]>(allMethods.size() * 2);
+		for (Entry<String, List<MethodNode>> entry : allMethods.entrySet()) {
+			index.put(entry.getKey(), groupBySelfType(entry.getValue()));
+		}
+		this.nameToCandidates = Collections.unmodifiableMap(index);
+	}
+
+	/**
+	 * Adds the methods of the category to the accumulator. Within a category, methods referenced by their own name come first,
+	 * followed by getters and then setters
+	 */
+	private static void indexCategory(ClassNode category, Map<String, List<MethodNode>> allMethods) {
+		Map<String, List<MethodNode>> byName = new LinkedHashMap<String, List<MethodNode>>();
+		Map<String, List<MethodNode>> byGetterName = new HashMap<String, List<MethodNode>>();
+		Map<String, List<MethodNode>> bySetterName = new HashMap<String, List<MethodNode>>();
+		for (MethodNode method : category.getMethods()) {
+			Parameter[] params = method.getParameters();
+			if (params == null || params.length == 0) {
+				// can never be applied as a category method
+				continue;
+			}
+			addToIndex(method.getName(), method, byName);
+			if (method.isStatic()) {
+				AccessorSupport kind = AccessorSupport.findAccessorKind(method, true);
+				if (kind == AccessorSupport.GETTER) {
+					for (String property : findPropertyNames(method.getName(), kind)) {
+						addToIndex(property, method, byGetterName);
+					}
+				} else if (kind == AccessorSupport.SETTER) {
+					for (String property : findPropertyNames(method.getName(), kind)) {
+						addToIndex(property, method, bySetterName);
+					}
+				}
+			}
+		}
+
+		Set<String> allNames = new HashSet<String>(byName.keySet());
+		allNames.addAll(byGetterName.keySet());
+		allNames.addAll(bySetterName.keySet());
+		for (String name : allNames) {
+			List<MethodNode> methods = allMethods.get(name);
+			if (methods == null) {
+				methods = new ArrayList<MethodNode>(2);
+				allMethods.put(name, methods);
+			}
+			addAll(byName.get(name), methods);
+			addAll(byGetterName.get(name), methods);
+			addAll(bySetterName.get(name), methods);
+		}
+	}
+
+	/**
+	 * The inverse of {@link AccessorSupport#createAccessorName(String)}. There may be two property names for an accessor, eg-
+	 * <code>getFoo</code> is referenced by <code>foo</code> and <code>Foo</code>
+	 */
+	private static List<String> findPropertyNames(String accessorName, AccessorSupport kind) {
+		List<String> names = new ArrayList<String>(2);
+		String suffix = accessorName.substring(3);
+		String decapitalized = Character.toLowerCase(suffix.charAt(0)) + suffix.substring(1);
+		if (accessorName.equals(kind.createAccessorName(decapitalized))) {
+			names.add(decapitalized);
+		}
+		if (!suffix.equals(decapitalized) && accessorName.equals(kind.createAccessorName(suffix))) {
+			names.add(suffix);
+		}
+		return names;
+	}
+
+	private static void addToIndex(String name, MethodNode method, Map<String, List<MethodNode>> index) {
+		List<MethodNode> methods = index.get(name);
+		if (methods == null) {
+			methods = new ArrayList<MethodNode>(2);
+			index.put(name, methods);
+		}
+		methods.add(method);
+	}
+
+	private static void addAll(List<MethodNode> from, List<MethodNode> to) {
+		if (from != null) {
+			to.addAll(from);
+		}
+	}
+
+	/**
+	 * Keeps only the first method for each self type. Since the applicability of a category method only depends on its self type,
+	 * the first applicable candidate of the result is the same as the first applicable method of the original list.
+	 */
+	private static Candidate[] groupBySelfType(List<MethodNode> methods) {
+		Map<String, Candidate> bySelfType = new LinkedHashMap<String, Candidate>();
+		for (MethodNode method : methods) {
+			String selfTypeName = method.getParameters()[0].getType().getName();
+			if (!bySelfType.containsKey(selfTypeName)) {
+				bySelfType.put(selfTypeName, new Candidate(selfTypeName, method));
+			}
+		}
+		return bySelfType.values().toArray(new Candidate[bySelfType.size()]);
+	}
+
+	private Candidate[] getCandidates(String name) {
+		Candidate[] candidates = nameToCandidates.get(name);
+		return candidates != null ? candidates : NO_CANDIDATES;
+	}
+
+	/**
+	 * @param name the method or property name as it appears in source
+	 * @return true iff some category method may be referenced by this name
+	 */
+	public boolean containsName(String name) {
+		return nameToCandidates.containsKey(name) || (parent != null && parent.containsName(name));
+	}
+
+	/**
+	 * Finds the first category method with the given name that can be applied to the given type
+	 *
+	 * @param name the method or property name as it appears in source
+	 * @param selfType the type that the method is applied to
+	 * @return the category method or null if none applies
+	 */
+	public MethodNode findMethod(String name, ClassNode selfType) {
+		if (selfType == null || !containsName(name)) {
+			return null;
+		}
+		Set<String> allSupers = new HashSet<String>();
+		allSupers.add("java.lang.Object");
+		findAllSupers(VariableScope.maybeConvertFromPrimitive(selfType), allSupers);
+		return findMethod(name, allSupers);
+	}
+
+	private MethodNode findMethod(String name, Set<String> allSupers) {
+		if (parent != null) {
+			MethodNode method = parent.findMethod(name, allSupers);
+			if (method != null) {
+				return method;
+			}
+		}
+		for (Candidate candidate : getCandidates(name)) {
+			if (allSupers.contains(candidate.selfTypeName)) {
+				return candidate.method;
+			}
+		}
+		return null;
+	}
+
+	private static void findAllSupers(ClassNode clazz, Set<String> allSupers) {
+		if (allSupers.add(clazz.getName())) {
+			if (clazz.getSuperClass() != null) {
+				findAllSupers(clazz.getSuperClass(), allSupers);
+			}
+			if (clazz.getInterfaces() != null) {
+				for (ClassNode superInterface : clazz.getInterfaces()) {
+					findAllSupers(superInterface, allSupers);
+				}
+			}
+		}
+	}
+}
@@ -16,9 +16,6 @@
 
 package org.eclipse.jdt.groovy.search;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 import org.codehaus.groovy.ast.AnnotationNode;
@@ -40,56 +37,41 @@ import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
  *          Looks up the type of an expression in the currently applicable categories. Note that DefaultGroovyMethods are always
  *          considered to be an applicable category. This lookup is not being used yet
  */
-public class CategoryTypeLookup implements ITypeLookup {
+public class CategoryTypeLookup implements ISelectiveTypeLookup {
+
+	public boolean handlesExpressionType(Class<? extends Expression> expressionType) {
+		return ConstantExpression.class.isAssignableFrom(expressionType) || VariableExpression.class.isAssignableFrom(expressionType);
+	}
+
+	/**
+	 * Categories can be added by any <code>use</code> block, so the names are not known in advance
+	 */
+	public Set<String> getNamesOfInterest() {
+		return null;
+	}
 
 	/**
 	 * Looks up method calls to see if they are declared in any current categories
 	 */
 	public TypeLookupResult lookupType(Expression node, VariableScope scope, ClassNode objectExpressionType) {
 		if (node instanceof ConstantExpression || node instanceof VariableExpression) {
-			Set<ClassNode> categories = scope.getCategoryNames();
-			ClassNode currentType = objectExpressionType != null ? objectExpressionType : scope.getDelegateOrThis();
-			List<MethodNode> possibleMethods = new ArrayList<MethodNode>();
-			// go through all categories and look for and look for a method with the given name
+			// go through all categories and look for a method with the given name (or its getter or setter variant)
 			String text = node.getText();
 			if (text.startsWith("${") && text.endsWith("}")) {
 				text = text.substring(2, text.length() - 1);
 			} else if (text.startsWith("$")) {
 				text = text.substring(1);
 			}
-			String getterName = AccessorSupport.GETTER.createAccessorName(text);
-			String setterName = AccessorSupport.SETTER.createAccessorName(text);
-			for (ClassNode category : categories) {
-				List<MethodNode> methods = category.getMethods(text);
-
-				possibleMethods.addAll(methods);
-
-				// also check to see if the getter variant of any name is available
-				if (getterName != null) {
-					methods = category.getMethods(getterName);
-					for (MethodNode method : methods) {
-						if (method.isStatic() && AccessorSupport.findAccessorKind(method, true) == AccessorSupport.GETTER) {
-							possibleMethods.add(method);
-						}
-					}
-				}
-				if (setterName != null) {
-					methods = category.getMethods(setterName);
-					for (MethodNode method : methods) {
-						if (method.isStatic() && AccessorSupport.findAccessorKind(method, true) == AccessorSupport.SETTER) {
-							possibleMethods.add(method);
-						}
-					}
-				}
+			CategoryMethodIndex index = scope.getCategoryIndex();
+			if (!index.containsName(text)) {
+				return null;
 			}
-			for (MethodNode methodNode : possibleMethods) {
-				Parameter[] params = methodNode.getParameters();
-				if (params != null && params.length > 0
-						&& isAssignableFrom(VariableScope.maybeConvertFromPrimitive(currentType), params[0].getType())) {
-					ClassNode declaringClass = methodNode.getDeclaringClass();
-					return new TypeLookupResult(methodNode.getReturnType(), declaringClass, methodNode,
-							getConfidence(declaringClass), scope);
-				}
+			ClassNode currentType = objectExpressionType != null ? objectExpressionType : scope.getDelegateOrThis();
+			MethodNode methodNode = index.findMethod(text, currentType);
+			if (methodNode != null) {
+				ClassNode declaringClass = methodNode.getDeclaringClass();
+				return new TypeLookupResult(methodNode.getReturnType(), declaringClass, methodNode, getConfidence(declaringClass),
+						scope);
 			}
 		}
 		return null;
@@ -106,46 +88,6 @@ public class CategoryTypeLookup implements ITypeLookup {
 				: TypeConfidence.INFERRED;
 	}
 
-	/**
-	 * @param interf
-	 * @param allInterfaces
-	 */
-	private void findAllSupers(ClassNode clazz, Set<String> allSupers) {
-		if (!allSupers.contains(clazz.getName())) {
-			allSupers.add(clazz.getName());
-			if (clazz.getSuperClass() != null) {
-				findAllSupers(clazz.getSuperClass(), allSupers);
-			}
-			if (clazz.getInterfaces() != null) {
-				for (ClassNode superInterface : clazz.getInterfaces()) {
-					findAllSupers(superInterface, allSupers);
-				}
-			}
-		}
-	}
-
-	/**
-	 * can from be assigned to to?
-	 * 
-	 * @param from
-	 * @param to
-	 * @return
-	 */
-	private boolean isAssignableFrom(ClassNode from, ClassNode to) {
-		if (from == null || to == null) {
-			return false;
-		}
-		Set<String> allSupers = new HashSet<String>();
-		allSupers.add("java.lang.Object");
-		findAllSupers(from, allSupers);
-		for (String supr : allSupers) {
-			if (to.getName().equals(supr)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	public TypeLookupResult lookupType(FieldNode node, VariableScope scope) {
 		return null;
 	}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eclipse.jdt.groovy.search;
+
+/**
+ * A requestor that may be sent the stored results of an earlier visit of the same module node instead of the results of a new
+ * inferencing pass. Implementors must only depend on the node, type, declaring type, declaration, confidence and enclosing element
+ * of each result. Replayed results have no {@link VariableScope}.
+ *
+ * @created Jul 15, 2013
+ * @see InferenceResultStore
+ */
+public interface IReplayableRequestor extends ITypeRequestor {
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eclipse.jdt.groovy.search;
+
+import java.util.Set;
+
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+
+/**
+ * An extension to the {@link ITypeLookup} interface for lookups that can only ever answer some kinds of expressions, or only
+ * expressions with certain names. The inferencing visitor builds a dispatch table from this information when a compilation unit is
+ * visited and does not ask the lookup about any other expressions. Like {@link ITypeLookupExtension}, this is a separate interface
+ * so that existing third party implementors of {@link ITypeLookup} are not broken. Lookups that do not implement it are asked about
+ * every expression.
+ * 
+ * @created Jul 16, 2013
+ */
+public interface ISelectiveTypeLookup extends ITypeLookup {
+
+	/**
+	 * Called after {@link #initialize(org.codehaus.jdt.groovy.model.GroovyCompilationUnit, VariableScope)}, at most once per
+	 * expression class and visit.
+	 * 
+	 * @param expressionType the class of an expression that is about to be looked up
+	 * @return true iff this lookup may return a non-null result for expressions of this class
+	 */
+	boolean handlesExpressionType(Class<? extends Expression> expressionType);
+
+	/**
+	 * Called once after {@link #initialize(org.codehaus.jdt.groovy.model.GroovyCompilationUnit, VariableScope)}. The names are
+	 * compared against the text of {@link ConstantExpression}s and the name of {@link VariableExpression}s. Other kinds of
+	 * expressions are not filtered by name.
+	 * 
+	 * @return all names that this lookup may return a non-null result for, or null if the names cannot be known in advance
+	 */
+	Set<String> getNamesOfInterest();
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eclipse.jdt.groovy.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.jdt.groovy.model.ModuleNodeMapper.ModuleNodeInfo;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.groovy.search.ITypeRequestor.VisitStatus;
+
+/**
+ * Stores the results of a complete inferencing visit of a module node so that later {@link IReplayableRequestor}s for the same
+ * module node can be sent the stored results instead of inferring the module again.
+ * <p>
+ * There is one store per {@link ModuleNodeInfo}. A new info is created whenever the module node of a working copy is replaced,
+ * so stored results never outlive the module node that they were inferred from. The module node mapper discards the store of an
+ * info as soon as the info is replaced or removed, and only the results of the most recently used modules are kept.
+ *
+ * @created Jul 15, 2013
+ */
+public class InferenceResultStore {
+
+	private static final Map<ModuleNodeInfo, InferenceResultStore> moduleStores = new WeakHashMap<ModuleNodeInfo, InferenceResultStore>();
+
+	// the number of modules whose results are kept
+	private static final int MAX_MODULES_WITH_RESULTS = Integer.getInteger("greclipse.inferenceStore.maxModules", 8);
+
+	// the stores that hold results, least recently used first. Guarded by moduleStores
+	@SuppressWarnings("serial")
+	private static final Map<InferenceResultStore, Boolean> storesWithResults = new LinkedHashMap<InferenceResultStore, Boolean>(16,
+			0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<InferenceResultStore, Boolean> eldest) {
+			if (size() > MAX_MODULES_WITH_RESULTS) {
+				eldest.getKey().results = null;
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * @param info the module being inferred, or null if not available
+	 * @return the store for the module, or null if the module is not available
+	 */
+	public static InferenceResultStore getStore(ModuleNodeInfo info) {
+		if (info == null) {
+			return null;
+		}
+		synchronized (moduleStores) {
+			InferenceResultStore store = moduleStores.get(info);
+			if (store == null) {
+				store = new InferenceResultStore();
+				moduleStores.put(info, store);
+			}
+			return store;
+		}
+	}
+
+	/**
+	 * Discards all stored results. Must be called when the type lookups change, eg- after DSLD scripts have been refreshed
+	 */
+	public static void clearAll() {
+		synchronized (moduleStores) {
+			for (InferenceResultStore store : storesWithResults.keySet()) {
+				store.results = null;
+			}
+			storesWithResults.clear();
+		}
+	}
+
+	/**
+	 * Discards the store of a module, eg- when its working copy is discarded or it is replaced by a new module node
+	 */
+	public static void discard(ModuleNodeInfo info) {
+		synchronized (moduleStores) {
+			InferenceResultStore store = moduleStores.remove(info);
+			if (store != null) {
+				store.discarded = true;
+				store.results = null;
+				storesWithResults.remove(store);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of modules whose results are currently stored
+	 */
+	public static int getStoredModuleCount() {
+		synchronized (moduleStores) {
+			return storesWithResults.size();
+		}
+	}
+
+	/**
+	 * A single call to {@link ITypeRequestor#acceptASTNode(ASTNode, TypeLookupResult, IJavaElement)}
+	 */
+	private static class InferredNode {
+		final ASTNode node;
+		final TypeLookupResult result;
+		final IJavaElement enclosingElement;
+
+		InferredNode(ASTNode node, TypeLookupResult result, IJavaElement enclosingElement) {
+			this.node = node;
+			this.result = result;
+			this.enclosingElement = enclosingElement;
+		}
+	}
+
+	/**
+	 * Forwards all results to the wrapped requestor and records them. The recording is only complete if the wrapped requestor
+	 * never asked to cancel part of the visit.
+	 */
+	class Recorder implements ITypeRequestor {
+		private final ITypeRequestor delegate;
+		private final List<InferredNode> recorded = new ArrayList<InferredNode>();
+		private boolean complete = true;
+
+		Recorder(ITypeRequestor delegate) {
+			this.delegate = delegate;
+		}
+
+		public VisitStatus acceptASTNode(ASTNode node, TypeLookupResult result, IJavaElement enclosingElement) {
+			VisitStatus status = delegate.acceptASTNode(node, result, enclosingElement);
+			if (complete) {
+				if (status == VisitStatus.CONTINUE) {
+					recorded.add(new InferredNode(node, withoutScope(result), enclosingElement));
+				} else {
+					complete = false;
+					recorded.clear();
+				}
+			}
+			return status;
+		}
+
+		/**
+		 * Makes the recorded results available for replay. Only call after the visit has finished normally
+		 */
+		void commit() {
+			if (complete) {
+				synchronized (moduleStores) {
+					if (!discarded) {
+						results = recorded.toArray(new InferredNode[recorded.size()]);
+						storesWithResults.put(InferenceResultStore.this, Boolean.TRUE);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The scope of a result retains the scopes of all enclosing nodes, so it is not stored. Replayable requestors must not use it
+	 */
+	private static TypeLookupResult withoutScope(TypeLookupResult result) {
+		if (result.scope == null) {
+			return result;
+		}
+		TypeLookupResult stored = new TypeLookupResult(result.type, result.declaringType, result.declaration, result.confidence,
+				null, result.extraDoc);
+		stored.enclosingAssignment = result.enclosingAssignment;
+		return stored;
+	}
+
+	private volatile InferredNode[] results;
+
+	// set once the module of this store has been replaced or removed. Guarded by moduleStores
+	private boolean discarded;
+
+	private InferenceResultStore() {
+		// use getStore
+	}
+
+	/**
+	 * @return a requestor that records the results sent to the given requestor
+	 */
+	Recorder createRecorder(ITypeRequestor requestor) {
+		return new Recorder(requestor);
+	}
+
+	/**
+	 * @return true iff the results of a complete visit are available
+	 */
+	public boolean hasResults() {
+		return results != null;
+	}
+
+	/**
+	 * Sends the stored results to the requestor in the order that they were originally inferred, honoring the {@link VisitStatus}
+	 * returned for each result. Canceled branches are skipped by source location since the stored results are not a tree.
+	 *
+	 * @return false if there are no stored results and the module must be visited instead
+	 */
+	public boolean replay(ITypeRequestor requestor) {
+		InferredNode[] stored = results;
+		if (stored == null) {
+			return false;
+		}
+		synchronized (moduleStores) {
+			// mark as recently used
+			storesWithResults.get(this);
+		}
+		int i = 0;
+		while (i < stored.length) {
+			InferredNode inferred = stored[i++];
+			VisitStatus status = requestor.acceptASTNode(inferred.node, inferred.result, inferred.enclosingElement);
+			if (status != VisitStatus.STOP_VISIT && status != VisitStatus.CONTINUE && !(inferred.enclosingElement instanceof IMember)) {
+				// canceling inside of the imports skips the remaining imports
+				while (i < stored.length && stored[i].enclosingElement.equals(inferred.enclosingElement)) {
+					i++;
+				}
+				continue;
+			}
+			switch (status) {
+				case CANCEL_BRANCH:
+					while (i < stored.length && isWithin(stored[i].node, inferred.node)) {
+						i++;
+					}
+					break;
+				case CANCEL_MEMBER:
+					while (i < stored.length && isWithin(stored[i].enclosingElement, inferred.enclosingElement)) {
+						i++;
+					}
+					break;
+				case STOP_VISIT:
+					return true;
+				default:
+					break;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isWithin(ASTNode node, ASTNode branch) {
+		return branch.getEnd() > 0 && node.getEnd() > 0 && node.getStart() >= branch.getStart() && node.getEnd() <= branch.getEnd();
+	}
+
+	private static boolean isWithin(IJavaElement element, IJavaElement member) {
+		while (element != null) {
+			if (element.equals(member)) {
+				return true;
+			}
+			element = element.getParent();
+		}
+		return false;
+	}
+}
@@ -19,7 +19,6 @@ import groovyjarjarasm.asm.Opcodes;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotatedNode;
@@ -49,7 +48,7 @@ import org.codehaus.groovy.ast.expr.TupleExpression;
 import org.codehaus.groovy.ast.expr.VariableExpression;
 import org.codehaus.groovy.ast.stmt.BlockStatement;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
-import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.groovy.search.TypeHierarchyCache.TypeInfo;
 import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
 import org.eclipse.jdt.groovy.search.VariableScope.VariableInfo;
 
@@ -63,10 +62,26 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 
 	private GroovyCompilationUnit unit;
 
+	private TypeHierarchyCache hierarchyCache;
+
 	public void initialize(GroovyCompilationUnit unit, VariableScope topLevelScope) {
 		this.unit = unit;
 	}
 
+	/**
+	 * Sets the cache of type hierarchies and members shared by all inference sessions on the current module node
+	 */
+	public void setHierarchyCache(TypeHierarchyCache hierarchyCache) {
+		this.hierarchyCache = hierarchyCache;
+	}
+
+	private TypeHierarchyCache getHierarchyCache() {
+		if (hierarchyCache == null) {
+			hierarchyCache = new TypeHierarchyCache();
+		}
+		return hierarchyCache;
+	}
+
 	public TypeLookupResult lookupType(Expression node, VariableScope scope, ClassNode objectExpressionType) {
 		return lookupType(node, scope, objectExpressionType, false);
 	}
@@ -552,37 +567,35 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 			}
 		}
 
+		TypeInfo typeInfo = getHierarchyCache().getTypeInfo(declaringType);
 		AnnotatedNode maybe = null;
 		if (numOfArgs >= 0) {
 			// this expression is part of a method call expression and so, look for methods first
-			maybe = findMethodDeclaration(name, declaringType, numOfArgs, true);
+			maybe = findMethodDeclaration(name, declaringType, numOfArgs, typeInfo);
 			if (maybe != null) {
 				return maybe;
 			}
 		}
 
-		LinkedHashSet<ClassNode> allClasses = new LinkedHashSet<ClassNode>();
-		VariableScope.createTypeHierarchy(declaringType, allClasses, true);
-
-		maybe = findPropertyInClass(name, allClasses);
+		maybe = typeInfo.getProperty(name);
 		if (maybe != null) {
 			return maybe;
 		}
 
-		maybe = declaringType.getField(name);
+		maybe = typeInfo.getField(name);
 		if (maybe != null) {
 			return maybe;
 		}
 
 		// look for constants declared in super class
-		FieldNode constantFromSuper = findConstantInClass(name, allClasses);
+		FieldNode constantFromSuper = typeInfo.getConstant(name);
 		if (constantFromSuper != null) {
 			return constantFromSuper;
 		}
 
 		if (numOfArgs < 0) {
 			// this expression is not part of a method call expression and so, look for methods last
-			maybe = findMethodDeclaration(name, declaringType, numOfArgs, true);
+			maybe = findMethodDeclaration(name, declaringType, numOfArgs, typeInfo);
 			if (maybe != null) {
 				return maybe;
 			}
@@ -591,6 +604,18 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 		return null;
 	}
 
+	/**
+	 * Finds a method with the given name in the declaring type or its super interfaces, remembering the result in the type's
+	 * cached info
+	 */
+	private AnnotatedNode findMethodDeclaration(String name, ClassNode declaringType, int numOfArgs, TypeInfo typeInfo) {
+		Object cached = typeInfo.getMethod(name, numOfArgs);
+		if (cached != null) {
+			return TypeHierarchyCache.isNotFound(cached) ? null : (AnnotatedNode) cached;
+		}
+		return typeInfo.storeMethod(name, numOfArgs, findMethodDeclaration(name, declaringType, numOfArgs, true));
+	}
+
 	/**
 	 * Finds a method with the given name in the declaring type. Will prioritize methods with the same number of arguments, but if
 	 * multiple methods exist with same name, then will return an arbitrary one.
@@ -647,24 +672,4 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 		lengthField.setDeclaringClass(declaringType);
 		return lengthField;
 	}
-
-	private PropertyNode findPropertyInClass(String name, Set<ClassNode> allClasses) {
-		for (ClassNode clazz : allClasses) {
-			PropertyNode prop = clazz.getProperty(name);
-			if (prop != null) {
-				return prop;
-			}
-		}
-		return null;
-	}
-
-	private FieldNode findConstantInClass(String name, Set<ClassNode> allClasses) {
-		for (ClassNode clazz : allClasses) {
-			FieldNode field = clazz.getField(name);
-			if (field != null && Flags.isFinal(field.getModifiers()) && field.isStatic()) {
-				return field;
-			}
-		}
-		return null;
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eclipse.jdt.groovy.search;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.groovy.ast.AnnotatedNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.jdt.groovy.model.ModuleNodeMapper.ModuleNodeInfo;
+import org.eclipse.jdt.core.Flags;
+
+/**
+ * Caches the type hierarchies and member lookups that {@link SimpleTypeLookup} performs on each type. The hierarchy and members of
+ * a type only depend on its redirect, so types are keyed by their resolved {@link ClassNode}.
+ * <p>
+ * There is one cache per {@link ModuleNodeInfo}. When the module node of a working copy is replaced, a new info is created and
+ * so is a new cache. The old cache is garbage collected along with the old info.
+ *
+ * @created Jul 10, 2013
+ */
+public class TypeHierarchyCache {
+
+	private static final Map<ModuleNodeInfo, TypeHierarchyCache> moduleCaches = new WeakHashMap<ModuleNodeInfo, TypeHierarchyCache>();
+
+	/**
+	 * @param info the module being inferred, or null if not available
+	 * @return the cache shared by all inference sessions for the module
+	 */
+	public static TypeHierarchyCache getCache(ModuleNodeInfo info) {
+		if (info == null) {
+			return new TypeHierarchyCache();
+		}
+		synchronized (moduleCaches) {
+			TypeHierarchyCache cache = moduleCaches.get(info);
+			if (cache == null) {
+				cache = new TypeHierarchyCache();
+				moduleCaches.put(info, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Stands in for a failed lookup since {@link ConcurrentHashMap} does not allow null values
+	 */
+	private static final Object NOT_FOUND = new Object();
+
+	/**
+	 * The linearized hierarchy of a type and the members that have been looked up in it so far
+	 */
+	public static class TypeInfo {
+		private final ClassNode type;
+		private final Set<ClassNode> hierarchy;
+		private final Map<String, Object> properties = new ConcurrentHashMap<String, Object>();
+		private final Map<String, Object> fields = new ConcurrentHashMap<String, Object>();
+		private final Map<String, Object> constants = new ConcurrentHashMap<String, Object>();
+		private final Map<String, Map<Integer, Object>> methodsByArity = new ConcurrentHashMap<String, Map<Integer, Object>>();
+
+		TypeInfo(ClassNode type) {
+			this.type = type;
+			LinkedHashSet<ClassNode> allClasses = new LinkedHashSet<ClassNode>();
+			VariableScope.createTypeHierarchy(type, allClasses, true);
+			this.hierarchy = Collections.unmodifiableSet(allClasses);
+		}
+
+		/**
+		 * @return the type itself, its super classes and then all of its interfaces.
+		 * @see VariableScope#createTypeHierarchy(ClassNode, LinkedHashSet, boolean)
+		 */
+		public Set<ClassNode> getHierarchy() {
+			return hierarchy;
+		}
+
+		/**
+		 * @return the first property with the given name in the hierarchy
+		 */
+		public PropertyNode getProperty(String name) {
+			Object property = properties.get(name);
+			if (property == null) {
+				property = NOT_FOUND;
+				for (ClassNode clazz : hierarchy) {
+					PropertyNode prop = clazz.getProperty(name);
+					if (prop != null) {
+						property = prop;
+						break;
+					}
+				}
+				properties.put(name, property);
+			}
+			return property != NOT_FOUND ? (PropertyNode) property : null;
+		}
+
+		/**
+		 * @return the field with the given name declared in the type or one of its super classes
+		 */
+		public FieldNode getField(String name) {
+			Object field = fields.get(name);
+			if (field == null) {
+				field = type.getField(name);
+				if (field == null) {
+					field = NOT_FOUND;
+				}
+				fields.put(name, field);
+			}
+			return field != NOT_FOUND ? (FieldNode) field : null;
+		}
+
+		/**
+		 * @return the first static final field with the given name in the hierarchy, including interfaces
+		 */
+		public FieldNode getConstant(String name) {
+			Object constant = constants.get(name);
+			if (constant == null) {
+				constant = NOT_FOUND;
+				for (ClassNode clazz : hierarchy) {
+					FieldNode field = clazz.getField(name);
+					if (field != null && Flags.isFinal(field.getModifiers()) && field.isStatic()) {
+						constant = field;
+						break;
+					}
+				}
+				constants.put(name, constant);
+			}
+			return constant != NOT_FOUND ? (FieldNode) constant : null;
+		}
+
+		/**
+		 * @return the method previously stored for this name and number of arguments. {@link #NOT_FOUND} if the method has been
+		 *         looked up but does not exist, or null if it has not been looked up yet
+		 */
+		Object getMethod(String name, int numOfArgs) {
+			Map<Integer, Object> byArity = methodsByArity.get(name);
+			return byArity != null ? byArity.get(numOfArgs) : null;
+		}
+
+		AnnotatedNode storeMethod(String name, int numOfArgs, AnnotatedNode method) {
+			Map<Integer, Object> byArity = methodsByArity.get(name);
+			if (byArity == null) {
+				byArity = new ConcurrentHashMap<Integer, Object>(4);
+				methodsByArity.put(name, byArity);
+			}
+			byArity.put(numOfArgs, method != null ? method : NOT_FOUND);
+			return method;
+		}
+	}
+
+	static boolean isNotFound(Object cached) {
+		return cached == NOT_FOUND;
+	}
+
+	private final Map<ClassNode, TypeInfo> typeInfos = new IdentityHashMap<ClassNode, TypeInfo>();
+
+	/**
+	 * @param type any type, parameterized or not
+	 * @return the cached hierarchy and members of the type
+	 */
+	public TypeInfo getTypeInfo(ClassNode type) {
+		ClassNode resolved = type.redirect();
+		synchronized (typeInfos) {
+			TypeInfo info = typeInfos.get(resolved);
+			if (info == null) {
+				info = new TypeInfo(resolved);
+				typeInfos.put(resolved, info);
+			}
+			return info;
+		}
+	}
+}
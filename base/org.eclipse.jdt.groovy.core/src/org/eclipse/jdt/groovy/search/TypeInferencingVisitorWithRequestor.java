@@ -10,10 +10,12 @@
  *******************************************************************************/
 package org.eclipse.jdt.groovy.search;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,6 +27,7 @@ import org.codehaus.groovy.ast.AnnotationNode;
 import org.codehaus.groovy.ast.ClassCodeVisitorSupport;
 import org.codehaus.groovy.ast.ClassHelper;
 import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport;
 import org.codehaus.groovy.ast.ConstructorNode;
 import org.codehaus.groovy.ast.FieldNode;
 import org.codehaus.groovy.ast.GenericsType;
@@ -87,6 +90,8 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.ISourceReference;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
@@ -253,6 +258,17 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 	// Later on, should do some ordering of results
 	private final ITypeLookup[] lookups;
 
+	/**
+	 * The lookups that can answer each kind of expression, in the same order as {@link #lookups}. Built lazily for each visit
+	 * since {@link ISelectiveTypeLookup}s decide what they can answer after they are initialized.
+	 */
+	private final Map<Class<? extends Expression>, ITypeLookup[]> lookupsByExpressionType = new HashMap<Class<? extends Expression>, ITypeLookup[]>();
+
+	/**
+	 * The names that each {@link ISelectiveTypeLookup} can answer. Lookups that can answer any name are not in the map.
+	 */
+	private final Map<ITypeLookup, Set<String>> lookupNames = new IdentityHashMap<ITypeLookup, Set<String>>();
+
 	private ITypeRequestor requestor;
 	private IJavaElement enclosingElement;
 	private ASTNode enclosingDeclarationNode;
@@ -284,8 +300,31 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 
 	private final JDTResolver resolver;
 
+	/**
+	 * Type hierarchies and members shared by all visits of the current module node
+	 */
+	private final TypeHierarchyCache hierarchyCache;
+
+	/**
+	 * Results of earlier complete visits of the current module node, or null if the module node is not managed by the
+	 * module node mapper
+	 */
+	private final InferenceResultStore resultStore;
+
 	private final AssignmentStorer assignmentStorer = new AssignmentStorer();
 
+	/**
+	 * The source region that the current visit is interested in, or -1 if the entire compilation unit is being visited. Members
+	 * that do not contain the region are skipped and the visit stops at the first statement after the region.
+	 */
+	private int targetStart = -1;
+	private int targetEnd = -1;
+
+	/**
+	 * true once a node inside of the target region has been sent to the requestor
+	 */
+	private boolean targetReported;
+
 	/**
 	 * Use factory to instantiate
 	 */
@@ -295,6 +334,8 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		ModuleNodeInfo info = createModuleNode(unit);
 		this.enclosingDeclarationNode = info != null ? info.module : null;
 		this.resolver = info != null ? info.resolver : null;
+		this.hierarchyCache = TypeHierarchyCache.getCache(info);
+		this.resultStore = InferenceResultStore.getStore(info);
 		this.lookups = lookups;
 		scopes = new Stack<VariableScope>();
 		completeExpressionStack = new Stack<ASTNode>();
@@ -303,12 +344,49 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		dependentDeclarationStack = new Stack<Tuple>();
 	}
 
+	/**
+	 * Visits only those parts of the compilation unit that can affect the inferred types of the given source region. Type
+	 * declarations, imports and the members that enclose the region are visited as usual. All other fields and methods are skipped,
+	 * except for the assignments of those before the region, and the visit ends at the first statement following the region. Use
+	 * this when only the results inside of the region are of interest, eg- for code select and content assist during reconcile.
+	 *
+	 * @param requestor the requestor
+	 * @param start start offset of the region
+	 * @param length length of the region
+	 */
+	public void visitCompilationUnit(ITypeRequestor requestor, int start, int length) {
+		if (start < 0 || length < 0) {
+			visitCompilationUnit(requestor);
+			return;
+		}
+		targetStart = start;
+		targetEnd = start + length;
+		targetReported = false;
+		try {
+			visitCompilationUnit(requestor);
+		} finally {
+			targetStart = -1;
+			targetEnd = -1;
+			targetReported = false;
+		}
+	}
+
 	public void visitCompilationUnit(ITypeRequestor requestor) {
 		if (enclosingDeclarationNode == null) {
 			// no module node, can't do anything
 			return;
 		}
 
+		if (resultStore != null && requestor instanceof IReplayableRequestor && resultStore.replay(requestor)) {
+			return;
+		}
+		// only a visit of the entire module can be stored
+		InferenceResultStore.Recorder recorder = null;
+		if (resultStore != null && targetStart < 0 && !resultStore.hasResults()) {
+			recorder = resultStore.createRecorder(requestor);
+			requestor = recorder;
+		}
+
 		this.requestor = requestor;
 		enclosingElement = unit;
 		VariableScope topLevelScope = new VariableScope(null, enclosingDeclarationNode, false);
@@ -318,8 +396,12 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 			if (lookup instanceof ITypeResolver) {
 				((ITypeResolver) lookup).setResolverInformation((ModuleNode) enclosingDeclarationNode, resolver);
 			}
+			if (lookup instanceof SimpleTypeLookup) {
+				((SimpleTypeLookup) lookup).setHierarchyCache(hierarchyCache);
+			}
 			lookup.initialize(unit, topLevelScope);
 		}
+		initializeDispatchTable();
 
 		try {
 			visitPackage(((ModuleNode) enclosingDeclarationNode).getPackage());
@@ -334,6 +416,9 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 			}
 
 			scopes.pop();
+			if (recorder != null) {
+				recorder.commit();
+			}
 
 		} catch (VisitCompleted vc) {
 			// can ignore
@@ -491,6 +576,13 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 			// probably some sort of AST transformation is making this node invisible
 			return;
 		}
+		if (isOutsideTarget(field, fieldNode.getDeclaringClass())) {
+			if (isBeforeTarget(field) && fieldNode.getInitialExpression() != null) {
+				seedAssignments(fieldNode, fieldNode.getInitialExpression(), null, fieldNode.isStatic());
+			}
+			enclosingElement = oldEnclosing;
+			return;
+		}
 
 		enclosingDeclarationNode = fieldNode;
 		scopes.push(new VariableScope(scopes.peek(), fieldNode, fieldNode.isStatic()));
@@ -541,6 +633,13 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 			// probably some sort of AST transformation is making this node invisible
 			return;
 		}
+		if (isOutsideTarget(method, methodNode.getDeclaringClass())) {
+			if (isBeforeTarget(method) && methodNode.getCode() != null) {
+				seedAssignments(methodNode, methodNode.getCode(), methodNode.getParameters(), methodNode.isStatic());
+			}
+			enclosingElement = oldEnclosing;
+			return;
+		}
 
 		enclosingDeclarationNode = methodNode;
 		this.requestor = requestor;
@@ -569,6 +668,86 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		}
 	}
 
+	/**
+	 * Members that do not contain the target region do not need to be inferred, since only their assignments to variables of the
+	 * enclosing scopes, eg- to static imports, can change the types inside of the region. These assignments are applied by
+	 * {@link #seedAssignments(ASTNode, ASTNode, Parameter[], boolean)} instead. Members of scripts are always visited because
+	 * script statements can declare variables that are visible in later statements.
+	 *
+	 * @return true iff the visit is scoped to a region and the member is known not to contain it
+	 */
+	private boolean isOutsideTarget(ISourceReference member, ClassNode declaringClass) {
+		if (targetStart < 0 || (declaringClass != null && declaringClass.isScript())) {
+			return false;
+		}
+		try {
+			ISourceRange range = member.getSourceRange();
+			if (range == null || range.getOffset() < 0 || range.getLength() <= 0) {
+				return false;
+			}
+			return range.getOffset() > targetEnd || range.getOffset() + range.getLength() < targetStart;
+		} catch (JavaModelException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return true iff the member, which is known not to contain the target region, ends before it
+	 */
+	private boolean isBeforeTarget(ISourceReference member) {
+		try {
+			ISourceRange range = member.getSourceRange();
+			return range.getOffset() + range.getLength() < targetStart;
+		} catch (JavaModelException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Applies the assignments of a skipped member to the enclosing scopes, like a full visit of the member would. The member is not
+	 * inferred, so only right hand sides whose static type is the inferred type, eg- constants and constructor calls, are applied.
+	 * Other assignments leave the type of their variable undetermined. Local variables and parameters of the member are declared in
+	 * a scope of their own so that they hide the variables of the enclosing scopes with the same names.
+	 *
+	 * @param member the skipped field or method
+	 * @param code the initializer or body of the member
+	 * @param parameters the parameters of the member, or null for a field
+	 * @param isStatic true iff the member is static
+	 */
+	private void seedAssignments(ASTNode member, ASTNode code, Parameter[] parameters, boolean isStatic) {
+		final VariableScope scope = new VariableScope(scopes.peek(), member, isStatic);
+		if (parameters != null) {
+			for (Parameter parameter : parameters) {
+				assignmentStorer.storeParameterType(parameter, scope);
+			}
+		}
+		code.visit(new CodeVisitorSupport() {
+			@Override
+			public void visitBinaryExpression(BinaryExpression expression) {
+				super.visitBinaryExpression(expression);
+				if (expression instanceof DeclarationExpression) {
+					assignmentStorer.storeAssignment(expression, scope, null);
+				} else if (hasInferredStaticType(expression.getRightExpression())) {
+					assignmentStorer.storeAssignment(expression, scope, expression.getRightExpression().getType());
+				} else if (expression.getOperation().getType() == Types.EQUALS
+						&& expression.getLeftExpression() instanceof VariableExpression) {
+					// an earlier type of the variable would be a guess
+					scope.updateVariable(((VariableExpression) expression.getLeftExpression()).getName(),
+							VariableScope.OBJECT_CLASS_NODE, null);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return true iff the static type of the expression is the type that inferencing would find, eg- not for method calls and
+	 *         property expressions, whose static type is usually Object
+	 */
+	private static boolean hasInferredStaticType(Expression expression) {
+		return (expression instanceof ConstantExpression && ((ConstantExpression) expression).getValue() != null)
+				|| expression instanceof ConstructorCallExpression || expression instanceof CastExpression;
+	}
+
 	/**
 	 * visit the class itself
 	 * 
@@ -1323,6 +1502,15 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		return allInferred;
 	}
 
+	@Override
+	protected void visitStatement(Statement statement) {
+		// once the target region has been visited, nothing after it can affect the results
+		if (targetReported && statement.getEnd() > 0 && statement.getStart() > targetEnd) {
+			throw new VisitCompleted(VisitStatus.STOP_VISIT);
+		}
+		super.visitStatement(statement);
+	}
+
 	@Override
 	public void visitBlockStatement(BlockStatement block) {
 		scopes.push(new VariableScope(scopes.peek(), block, false));
@@ -1900,9 +2088,61 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		}
 	}
 
+	private void initializeDispatchTable() {
+		lookupsByExpressionType.clear();
+		lookupNames.clear();
+		for (ITypeLookup lookup : lookups) {
+			if (lookup instanceof ISelectiveTypeLookup) {
+				Set<String> names = ((ISelectiveTypeLookup) lookup).getNamesOfInterest();
+				if (names != null) {
+					lookupNames.put(lookup, names);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the lookups that may answer expressions of the given kind
+	 */
+	private ITypeLookup[] getLookupsFor(Class<? extends Expression> expressionType) {
+		ITypeLookup[] dispatched = lookupsByExpressionType.get(expressionType);
+		if (dispatched == null) {
+			List<ITypeLookup> relevant = new ArrayList<ITypeLookup>(lookups.length);
+			for (ITypeLookup lookup : lookups) {
+				if (!(lookup instanceof ISelectiveTypeLookup)
+						|| ((ISelectiveTypeLookup) lookup).handlesExpressionType(expressionType)) {
+					relevant.add(lookup);
+				}
+			}
+			dispatched = relevant.toArray(new ITypeLookup[relevant.size()]);
+			lookupsByExpressionType.put(expressionType, dispatched);
+		}
+		return dispatched;
+	}
+
+	/**
+	 * @return the name that {@link ISelectiveTypeLookup#getNamesOfInterest()} is compared with, or null if the expression is not
+	 *         filtered by name
+	 */
+	private static String getLookupName(Expression node) {
+		if (node instanceof VariableExpression) {
+			return ((VariableExpression) node).getName();
+		} else if (node instanceof ConstantExpression) {
+			return node.getText();
+		}
+		return null;
+	}
+
 	private TypeLookupResult lookupExpressionType(Expression node, ClassNode objectExprType, boolean isStatic, VariableScope scope) {
 		TypeLookupResult result = null;
-		for (ITypeLookup lookup : lookups) {
+		String name = lookupNames.isEmpty() ? null : getLookupName(node);
+		for (ITypeLookup lookup : getLookupsFor(node.getClass())) {
+			if (name != null) {
+				Set<String> names = lookupNames.get(lookup);
+				if (names != null && !names.contains(name)) {
+					continue;
+				}
+			}
 			TypeLookupResult candidate;
 			if (lookup instanceof ITypeLookupExtension) {
 				candidate = ((ITypeLookupExtension) lookup).lookupType(node, scope, objectExprType, isStatic);
@@ -2026,6 +2266,10 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 
 	private VisitStatus notifyRequestor(ASTNode node, ITypeRequestor requestor, TypeLookupResult result) {
 		// result is never null because SimpleTypeLookup always returns non-null
+		if (targetStart >= 0 && !targetReported && node.getEnd() > node.getStart() && node.getStart() >= targetStart
+				&& node.getEnd() <= targetEnd) {
+			targetReported = true;
+		}
 		return requestor.acceptASTNode(node, result, enclosingElement);
 	}
 
@@ -20,17 +20,31 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExecutableExtension;
 import org.eclipse.core.runtime.IExtension;
 import org.eclipse.core.runtime.IExtensionPoint;
+import org.eclipse.core.runtime.IRegistryChangeEvent;
+import org.eclipse.core.runtime.IRegistryChangeListener;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jdt.internal.core.util.Util;
 
 /**
  * Manages type lookups
+ * <p>
+ * Type lookups are stateful, so every visitor needs its own instances. Creating them through the extension registry is expensive,
+ * so the lookup classes that apply to each project are cached and new instances are created directly from the classes. The cache
+ * is cleared when the natures of a project change and when type lookup extensions are added or removed.
  * 
  * @author Andrew Eisenberg
  * @created Nov 17, 2009
@@ -42,7 +56,9 @@ public class TypeLookupRegistry {
 
 	private static final String LOOKUP = "lookup"; //$NON-NLS-1$
 
-	private static final String TYPE_LOOKUP_EXTENSION = "org.eclipse.jdt.groovy.core.typeLookup"; //$NON-NLS-1$
+	private static final String TYPE_LOOKUP_NAMESPACE = "org.eclipse.jdt.groovy.core"; //$NON-NLS-1$
+
+	private static final String TYPE_LOOKUP_EXTENSION = TYPE_LOOKUP_NAMESPACE + ".typeLookup"; //$NON-NLS-1$
 
 	private final static TypeLookupRegistry DEFAULT = new TypeLookupRegistry();
 
@@ -50,60 +66,147 @@ public class TypeLookupRegistry {
 		return DEFAULT;
 	}
 
-	// maps from project nature to lists of type lookup classes
-	private Map<String, List<IConfigurationElement>> natureLookupMap = new HashMap<String, List<IConfigurationElement>>();
+	/**
+	 * Creates new instances of a single type lookup extension
+	 */
+	private static class LookupFactory {
+		private final IConfigurationElement config;
+
+		// no lock, since threads that race to find the class only create one lookup too many
+		private volatile Class<? extends ITypeLookup> lookupClass;
+
+		LookupFactory(IConfigurationElement config) {
+			this.config = config;
+		}
+
+		ITypeLookup createLookup() throws CoreException {
+			Class<? extends ITypeLookup> clazz = lookupClass;
+			if (clazz != null) {
+				try {
+					return clazz.newInstance();
+				} catch (Exception e) {
+					// fall back to the extension registry
+					lookupClass = null;
+				}
+			}
+			ITypeLookup lookup = (ITypeLookup) config.createExecutableExtension(LOOKUP);
+			// lookups that are initialized from their extension must always be created by the registry
+			if (!(lookup instanceof IExecutableExtension)) {
+				lookupClass = lookup.getClass();
+			}
+			return lookup;
+		}
+	}
+
+	/**
+	 * The lookups of all natures and the projects that they have been applied to so far. Replaced as a whole when the extensions
+	 * change, so that projects are never cached with the lookups of an older registry.
+	 */
+	private static class Lookups {
+		// maps from project nature to lists of type lookup classes
+		final Map<String, List<LookupFactory>> natureLookupMap;
+
+		// maps from project to the type lookups that apply to it. Replaced as a whole when the natures of a project change, so that
+		// a lookup that read the old natures can only cache them in a map that is no longer used
+		volatile ConcurrentMap<IProject, List<LookupFactory>> projectLookupMap = new ConcurrentHashMap<IProject, List<LookupFactory>>();
+
+		Lookups(Map<String, List<LookupFactory>> natureLookupMap) {
+			this.natureLookupMap = natureLookupMap;
+		}
+	}
+
+	private volatile Lookups registeredLookups;
 
 	List<ITypeLookup> getLookupsFor(IProject project) throws CoreException {
 		if (!project.exists()) {
 			return new ArrayList<ITypeLookup>(3);
 		}
-		String[] natures = project.getDescription().getNatureIds();
-		List<ITypeLookup> lookups = new ArrayList<ITypeLookup>();
-		for (String nature : natures) {
-			List<IConfigurationElement> configs = natureLookupMap.get(nature);
-			if (configs != null) {
-				for (IConfigurationElement config : configs) {
-					try {
-						lookups.add((ITypeLookup) config.createExecutableExtension(LOOKUP));
-					} catch (CoreException e) {
-						Util.log(e, "Problem creating lookup for type " + config.getAttribute(LOOKUP)); //$NON-NLS-1$
-					}
+		Lookups current = registeredLookups;
+		// must be read before the natures
+		ConcurrentMap<IProject, List<LookupFactory>> projectLookupMap = current.projectLookupMap;
+		List<LookupFactory> factories = projectLookupMap.get(project);
+		if (factories == null) {
+			List<LookupFactory> projectFactories = new ArrayList<LookupFactory>();
+			for (String nature : project.getDescription().getNatureIds()) {
+				List<LookupFactory> natureFactories = current.natureLookupMap.get(nature);
+				if (natureFactories != null) {
+					projectFactories.addAll(natureFactories);
 				}
 			}
+			factories = projectLookupMap.putIfAbsent(project, projectFactories);
+			if (factories == null) {
+				factories = projectFactories;
+			}
+		}
+		// leave room for the default lookups
+		List<ITypeLookup> lookups = new ArrayList<ITypeLookup>(factories.size() + 2);
+		for (LookupFactory factory : factories) {
+			try {
+				lookups.add(factory.createLookup());
+			} catch (CoreException e) {
+				Util.log(e, "Problem creating lookup for type " + factory.config.getAttribute(LOOKUP)); //$NON-NLS-1$
+			}
 		}
 		return lookups;
 	}
 
 	private TypeLookupRegistry() {
 		initialize();
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(new IResourceChangeListener() {
+			public void resourceChanged(IResourceChangeEvent event) {
+				IResourceDelta delta = event.getDelta();
+				if (delta == null) {
+					return;
+				}
+				// natures are stored in the project description
+				int natureFlags = IResourceDelta.DESCRIPTION | IResourceDelta.OPEN;
+				for (IResourceDelta projectDelta : delta.getAffectedChildren()) {
+					if (projectDelta.getResource().getType() == IResource.PROJECT
+							&& (projectDelta.getKind() != IResourceDelta.CHANGED || (projectDelta.getFlags() & natureFlags) != 0)) {
+						registeredLookups.projectLookupMap = new ConcurrentHashMap<IProject, List<LookupFactory>>();
+						return;
+					}
+				}
+			}
+		}, IResourceChangeEvent.POST_CHANGE);
+		Platform.getExtensionRegistry().addRegistryChangeListener(new IRegistryChangeListener() {
+			public void registryChanged(IRegistryChangeEvent event) {
+				if (event.getExtensionDeltas(TYPE_LOOKUP_NAMESPACE, "typeLookup").length > 0) { //$NON-NLS-1$
+					initialize();
+				}
+			}
+		}, TYPE_LOOKUP_NAMESPACE);
 	}
 
 	private void initialize() {
+		Map<String, List<LookupFactory>> natureMap = new HashMap<String, List<LookupFactory>>();
 		IExtensionPoint extPoint = Platform.getExtensionRegistry().getExtensionPoint(TYPE_LOOKUP_EXTENSION);
 		IExtension[] exts = extPoint.getExtensions();
 		for (IExtension ext : exts) {
 			IConfigurationElement[] configs = ext.getConfigurationElements();
 			for (IConfigurationElement config : configs) {
-				createLookup(config);
+				createLookup(config, natureMap);
 			}
 		}
+		registeredLookups = new Lookups(natureMap);
 	}
 
-	private void createLookup(IConfigurationElement config) {
+	private void createLookup(IConfigurationElement config, Map<String, List<LookupFactory>> natureMap) {
 		try {
 			if (config.getName().equals(LOOKUP)) {
 				if (config.getAttribute(LOOKUP) != null) {
+					LookupFactory factory = new LookupFactory(config);
 					IConfigurationElement[] appliesTos = config.getChildren(APPLIES_TO);
 					for (IConfigurationElement appliesTo : appliesTos) {
 						String nature = appliesTo.getAttribute(NATURE);
-						List<IConfigurationElement> elts;
-						if (natureLookupMap.containsKey(nature)) {
-							elts = natureLookupMap.get(nature);
+						List<LookupFactory> elts;
+						if (natureMap.containsKey(nature)) {
+							elts = natureMap.get(nature);
 						} else {
-							elts = new ArrayList<IConfigurationElement>(3);
-							natureLookupMap.put(nature, elts);
+							elts = new ArrayList<LookupFactory>(3);
+							natureMap.put(nature, elts);
 						}
-						elts.add(config);
+						elts.add(factory);
 					}
 				} else {
 					Util.log(new RuntimeException(), "Type lookup registry extension found with no type lookup class."); //$NON-NLS-1$
@@ -300,6 +300,15 @@ public class VariableScope {
 	 */
 	private ClassNode categoryBeingDeclared;
 
+	/**
+	 * Cached result of {@link #getCategoryNames()}, only set when this scope adds a category to those of its parent. Valid as long
+	 * as the parent's categories and declared category are the ones it was created from
+	 */
+	private Set<ClassNode> categories;
+	private Set<ClassNode> categoriesFromParent;
+	private ClassNode categoriesFromParentDeclared;
+	private CategoryMethodIndex categoryIndex;
+
 	/**
 	 * number of parameters of current method call or -1 if not a method call
 	 */
@@ -376,24 +385,54 @@ public class VariableScope {
 	}
 
 	/**
-	 * The name of all categories in scope.
+	 * The name of all categories in scope. The returned set is shared with other scopes and must not be modified.
 	 * 
-	 * @return
+	 * @return an unmodifiable set of categories that starts with {@link #ALL_DEFAULT_CATEGORIES}
 	 */
 	public Set<ClassNode> getCategoryNames() {
 		if (parent != null) {
-			Set<ClassNode> categories = parent.getCategoryNames();
+			Set<ClassNode> parentCategories = parent.getCategoryNames();
 			// don't look at this scope's category, but the parent scope's
 			// category. This is because although current scope knows that it
 			// is a category scope, the category type is only available from parent
 			// scope
-			if (parent.isCategoryBeingDeclared()) {
-				categories.add(parent.categoryBeingDeclared);
+			if (!parent.isCategoryBeingDeclared() || parentCategories.contains(parent.categoryBeingDeclared)) {
+				return parentCategories;
+			}
+			// only create a new set if the parent's categories have changed since last time
+			if (categories == null || categoriesFromParent != parentCategories
+					|| categoriesFromParentDeclared != parent.categoryBeingDeclared) {
+				Set<ClassNode> newCategories = new LinkedHashSet<ClassNode>(parentCategories);
+				newCategories.add(parent.categoryBeingDeclared);
+				categories = Collections.unmodifiableSet(newCategories);
+				categoriesFromParent = parentCategories;
+				categoriesFromParentDeclared = parent.categoryBeingDeclared;
+				categoryIndex = null;
 			}
 			return categories;
 		} else {
-			return new LinkedHashSet<ClassNode>(ALL_DEFAULT_CATEGORIES);
+			return ALL_DEFAULT_CATEGORIES;
+		}
+	}
+
+	/**
+	 * @return an index of the methods of all categories in scope. Shared by all scopes with the same categories
+	 */
+	public CategoryMethodIndex getCategoryIndex() {
+		Set<ClassNode> current = getCategoryNames();
+		if (current == ALL_DEFAULT_CATEGORIES) {
+			return CategoryMethodIndex.getDefaultIndex();
+		}
+		// find the scope that created the category set
+		for (VariableScope scope = this; scope != null; scope = scope.parent) {
+			if (scope.categories == current) {
+				if (scope.categoryIndex == null) {
+					scope.categoryIndex = CategoryMethodIndex.create(current);
+				}
+				return scope.categoryIndex;
+			}
 		}
+		return CategoryMethodIndex.create(current);
 	}
 
 	private boolean isCategoryBeingDeclared() {
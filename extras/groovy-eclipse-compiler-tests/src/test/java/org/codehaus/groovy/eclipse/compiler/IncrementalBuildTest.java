@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.compiler;
+
+import groovy.lang.GroovyObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.compiler.CompilerConfiguration;
+import org.codehaus.plexus.compiler.CompilerResult;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+
+/**
+ * Builds a project twice with the in-process compiler, and checks that the second build only compiles what changed since the
+ * first one and the sources that depend on it. Class files that were not written by the second build keep the time stamp they
+ * were given after the first build.
+ *
+ * @created Oct 17, 2013
+ */
+public class IncrementalBuildTest extends TestCase {
+
+    private File projectDir;
+
+    private File sourceDir;
+
+    private File outputDir;
+
+    // the time stamp of the class files of the first build
+    private long firstBuild;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        projectDir = File.createTempFile("incremental", "");
+        projectDir.delete();
+        sourceDir = new File(projectDir, "src/main/java");
+        outputDir = new File(projectDir, "target/classes");
+        assertTrue(sourceDir.mkdirs());
+        assertTrue(outputDir.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(projectDir);
+        super.tearDown();
+    }
+
+    public void testChangedTypeRecompilesDependents() throws Exception {
+        write("p/A.groovy", "package p\nclass A {\n    int x() { 1 }\n}\n");
+        write("p/B.java", "package p;\npublic class B {\n    int y() { return new A().x(); }\n}\n");
+        write("p/C.groovy", "package p\nclass C extends B { }\n");
+        write("q/D.groovy", "package q\nclass D { }\n");
+        assertSuccess(compile(false));
+        backdateClassFiles();
+
+        write("p/A.groovy", "package p\nclass A {\n    int x() { 1 + 1 }\n}\n");
+        assertSuccess(compile(false));
+        assertCompiled("p/A");
+        assertCompiled("p/B");
+        assertCompiled("p/C");
+        assertNotCompiled("q/D");
+    }
+
+    public void testDeletedSourceRemovesClassFiles() throws Exception {
+        write("p/A.groovy", "package p\nclass A {\n    def twice = { it * 2 }\n    static class Inner { }\n}\n");
+        write("q/D.groovy", "package q\nclass D { }\n");
+        assertSuccess(compile(false));
+        assertEquals(3, listClassFiles(new File(outputDir, "p")).size());
+        backdateClassFiles();
+
+        assertTrue(new File(sourceDir, "p/A.groovy").delete());
+        assertSuccess(compile(false));
+        assertEquals("Class files of the deleted source should have been removed: " + listClassFiles(new File(outputDir, "p")),
+                0, listClassFiles(new File(outputDir, "p")).size());
+        assertNotCompiled("q/D");
+    }
+
+    public void testChangedArgumentsRebuildAll() throws Exception {
+        write("p/A.groovy", "package p\nclass A { }\n");
+        write("p/B.java", "package p;\npublic class B { }\n");
+        assertSuccess(compile(false));
+        backdateClassFiles();
+
+        assertSuccess(compile(false));
+        assertNotCompiled("p/A");
+        assertNotCompiled("p/B");
+
+        // -g changes the class files
+        assertSuccess(compile(true));
+        assertCompiled("p/A");
+        assertCompiled("p/B");
+    }
+
+    public void testDeletedUpstreamTypeRecompilesDependents() throws Exception {
+        File upstreamSourceDir = new File(projectDir, "upstream/src/main/java");
+        File upstreamOutputDir = new File(projectDir, "upstream/target/classes");
+        write(new File(upstreamSourceDir, "u/U.groovy"), "package u\nclass U { }\n");
+        write(new File(upstreamSourceDir, "u/V.groovy"), "package u\nclass V { }\n");
+        assertSuccess(compile(upstreamSourceDir, upstreamOutputDir, new ArrayList<String>(), false));
+
+        write("p/A.groovy", "package p\nclass A {\n    u.U u\n}\n");
+        write("p/B.groovy", "package p\nclass B {\n    u.V v\n}\n");
+        List<String> classpath = new ArrayList<String>();
+        classpath.add(upstreamOutputDir.getPath());
+        assertSuccess(compile(sourceDir, outputDir, classpath, false));
+        backdateClassFiles();
+        // otherwise the upstream class files are too close to the first build to tell whether they changed since
+        for (File classFile : listClassFiles(upstreamOutputDir)) {
+            assertTrue(classFile.setLastModified(firstBuild));
+        }
+
+        assertTrue(new File(upstreamOutputDir, "u/U.class").delete());
+        CompilerResult result = compile(sourceDir, outputDir, classpath, false);
+        assertFalse("Source that references the deleted type should have been compiled", result.isSuccess());
+        File classFile = new File(outputDir, "p/A.class");
+        assertTrue("p/A should have been compiled again", !classFile.exists() || classFile.lastModified() != firstBuild);
+        assertNotCompiled("p/B");
+    }
+
+    private CompilerResult compile(boolean debug) throws Exception {
+        return compile(sourceDir, outputDir, new ArrayList<String>(), debug);
+    }
+
+    private CompilerResult compile(File sources, File output, List<String> classpath, boolean debug) throws Exception {
+        List<String> classpathEntries = new ArrayList<String>(classpath);
+        classpathEntries.add(output.getPath());
+        classpathEntries.add(new File(GroovyObject.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.setWorkingDirectory(projectDir);
+        config.addSourceLocation(sources.getAbsolutePath());
+        config.setOutputLocation(output.getAbsolutePath());
+        config.setClasspathEntries(classpathEntries);
+        config.setSourceVersion("1.5");
+        config.setTargetVersion("1.5");
+        config.setDebug(debug);
+        config.setFork(false);
+
+        GroovyEclipseCompiler compiler = new GroovyEclipseCompiler();
+        compiler.enableLogging(new ConsoleLogger(Logger.LEVEL_WARN, "groovy-eclipse-compiler"));
+        return compiler.performCompile(config);
+    }
+
+    private void assertSuccess(CompilerResult result) {
+        assertTrue("Compile failed: " + result.getCompilerMessages(), result.isSuccess());
+    }
+
+    private void assertCompiled(String typeName) {
+        File classFile = new File(outputDir, typeName + ".class");
+        assertTrue(typeName + " should exist", classFile.isFile());
+        assertTrue(typeName + " should have been compiled again", classFile.lastModified() != firstBuild);
+    }
+
+    private void assertNotCompiled(String typeName) {
+        File classFile = new File(outputDir, typeName + ".class");
+        assertTrue(typeName + " should exist", classFile.isFile());
+        assertEquals(typeName + " should not have been compiled again", firstBuild, classFile.lastModified());
+    }
+
+    /**
+     * Moves the class files of the first build to the past, so that the class files of the second build can be told apart even
+     * when both builds run within the resolution of the file system time stamps
+     */
+    private void backdateClassFiles() {
+        firstBuild = (System.currentTimeMillis() - 60 * 1000) / 1000 * 1000;
+        for (File classFile : listClassFiles(outputDir)) {
+            assertTrue(classFile.setLastModified(firstBuild));
+        }
+    }
+
+    private List<File> listClassFiles(File folder) {
+        List<File> classFiles = new ArrayList<File>();
+        File[] children = folder.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    classFiles.addAll(listClassFiles(child));
+                } else if (child.getName().endsWith(".class")) {
+                    classFiles.add(child);
+                }
+            }
+        }
+        return classFiles;
+    }
+
+    private void write(String path, String contents) throws IOException {
+        write(new File(sourceDir, path), contents);
+    }
+
+    private void write(File file, String contents) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
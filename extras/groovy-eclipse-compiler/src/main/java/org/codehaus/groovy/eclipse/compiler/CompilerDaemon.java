@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.eclipse.jdt.internal.compiler.batch.Main;
+
+/**
+ * A long-lived compiler process for forked compiles. Instead of starting a new VM for every compile, the maven plugin connects to
+ * this daemon over a local socket and sends it the compiler arguments. The daemon runs the batch compiler in its own VM, so the
+ * classes of JDT and Groovy stay loaded and compiled by the JIT between modules and builds.
+ * <p>
+ * The daemon only accepts connections from the local machine, and every request must carry the token that the daemon wrote into
+ * its port file. Compiles are run one at a time. The daemon exits once it has been idle for the number of minutes that it was
+ * started with.
+ * <p>
+ * This class only depends on the JDK and the batch compiler, since those are the only things on the classpath of the daemon.
+ *
+ * @created Aug 6, 2013
+ */
+public class CompilerDaemon {
+
+    /**
+     * The result of a compile in the daemon
+     */
+    static class Result {
+        boolean success;
+        int errorCount;
+        int warningCount;
+        String output;
+    }
+
+    private static final String UTF8 = "UTF-8";
+
+    private CompilerDaemon() {
+        // static only
+    }
+
+    /**
+     * Starts the daemon.
+     *
+     * @param args the port file to create and the number of idle minutes after which to exit
+     */
+    public static void main(String[] args) throws IOException {
+        File portFile = new File(args[0]);
+        int idleMinutes = Integer.parseInt(args[1]);
+
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        server.setSoTimeout(idleMinutes * 60 * 1000);
+        String token = new BigInteger(130, new SecureRandom()).toString(32);
+        writePortFile(portFile, server.getLocalPort(), token);
+        try {
+            while (true) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                try {
+                    serve(socket, token);
+                } catch (IOException e) {
+                    // the client went away, so there is nobody to tell
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            portFile.delete();
+            server.close();
+        }
+    }
+
+    private static void serve(Socket socket, String token) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        // check the length first, so that a stray client cannot make the daemon allocate any amount of memory
+        byte[] tokenBytes = token.getBytes(UTF8);
+        if (in.readInt() != tokenBytes.length) {
+            return;
+        }
+        byte[] clientToken = new byte[tokenBytes.length];
+        in.readFully(clientToken);
+        if (!Arrays.equals(tokenBytes, clientToken)) {
+            return;
+        }
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readString(in);
+        }
+
+        StringWriter out = new StringWriter();
+        Main main = new Main(new PrintWriter(out), new PrintWriter(out), false/* systemExit */, null/* options */, null/* progress */);
+        Result result = new Result();
+        try {
+            result.success = main.compile(args);
+        } catch (Throwable e) {
+            // keep serving other compiles, and report the failure to the client instead of dropping the connection
+            e.printStackTrace(new PrintWriter(out));
+        }
+        result.errorCount = main.globalErrorsCount;
+        result.warningCount = main.globalWarningsCount;
+        result.output = out.toString();
+
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        dataOut.writeBoolean(result.success);
+        dataOut.writeInt(result.errorCount);
+        dataOut.writeInt(result.warningCount);
+        writeString(dataOut, result.output);
+        dataOut.flush();
+    }
+
+    /**
+     * Sends the compiler arguments to the daemon that owns the given port file, and waits for the compile to complete.
+     *
+     * @return the result of the compile, or null if there is no daemon listening on the port of the port file
+     */
+    static Result compile(File portFile, String[] args) throws IOException {
+        String[] portAndToken = readPortFile(portFile);
+        if (portAndToken == null) {
+            return null;
+        }
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getByName("127.0.0.1"), Integer.parseInt(portAndToken[0]));
+        } catch (IOException e) {
+            // the daemon has exited
+            return null;
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeString(out, portAndToken[1]);
+            out.writeInt(args.length);
+            for (String arg : args) {
+                writeString(out, arg);
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Result result = new Result();
+            result.success = in.readBoolean();
+            result.errorCount = in.readInt();
+            result.warningCount = in.readInt();
+            result.output = readString(in);
+            return result;
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return true if a daemon is listening on the port of the given port file
+     */
+    static boolean isRunning(File portFile) throws IOException {
+        String[] portAndToken = readPortFile(portFile);
+        if (portAndToken == null) {
+            return false;
+        }
+        try {
+            new Socket(InetAddress.getByName("127.0.0.1"), Integer.parseInt(portAndToken[0])).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void writePortFile(File portFile, int port, String token) throws IOException {
+        // the token is all that keeps other users of the machine from compiling with the rights of this one, so only the owner may
+        // read it or replace the port file
+        File folder = portFile.getAbsoluteFile().getParentFile();
+        folder.mkdirs();
+        restrictToOwner(folder);
+        // write to another file first, so that clients never see half a port file
+        File tempFile = new File(portFile.getPath() + ".tmp");
+        tempFile.delete();
+        if (!tempFile.createNewFile()) {
+            throw new IOException("Unable to create the daemon port file " + tempFile);
+        }
+        restrictToOwner(tempFile);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+        try {
+            out.writeInt(port);
+            writeString(out, token);
+        } finally {
+            out.close();
+        }
+        portFile.delete();
+        if (!tempFile.renameTo(portFile)) {
+            throw new IOException("Unable to create the daemon port file " + portFile);
+        }
+        portFile.deleteOnExit();
+    }
+
+    /**
+     * Takes away the rights of everybody but the owner. File systems that do not support this keep their own rights.
+     */
+    private static void restrictToOwner(File file) {
+        file.setReadable(false, false);
+        file.setReadable(true, true);
+        file.setWritable(false, false);
+        file.setWritable(true, true);
+        if (file.isDirectory()) {
+            file.setExecutable(false, false);
+            file.setExecutable(true, true);
+        }
+    }
+
+    private static String[] readPortFile(File portFile) throws IOException {
+        if (!portFile.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(portFile));
+        try {
+            return new String[] { String.valueOf(in.readInt()), readString(in) };
+        } finally {
+            in.close();
+        }
+    }
+
+    // DataOutput.writeUTF is limited to 64K, which a classpath may exceed
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -16,15 +16,19 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.channels.FileLock;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -38,6 +42,7 @@ import org.codehaus.plexus.compiler.CompilerResult;
 import org.codehaus.plexus.compiler.CompilerMessage.Kind;
 import org.codehaus.plexus.compiler.CompilerOutputStyle;
 import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
+import org.codehaus.plexus.compiler.util.scan.SimpleSourceInclusionScanner;
 import org.codehaus.plexus.compiler.util.scan.SourceInclusionScanner;
 import org.codehaus.plexus.compiler.util.scan.StaleSourceScanner;
 import org.codehaus.plexus.compiler.util.scan.mapping.SourceMapping;
@@ -49,6 +54,8 @@ import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.eclipse.jdt.core.compiler.CompilationProgress;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 import org.eclipse.jdt.internal.compiler.batch.Main;
 
 /**
@@ -71,8 +78,25 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
 
     private static final String JAVA_AGENT_CLASS_PARAM_NAME = "-javaAgentClass";
 
+    private static final String COMPILER_DAEMON_PARAM_NAME = "-compilerDaemon";
+
+    // minutes after which an idle compiler daemon exits
+    private static final int DAEMON_IDLE_MINUTES = Integer.getInteger("greclipse.compilerDaemon.idleMinutes", 60);
+
+    private static final long DAEMON_START_TIMEOUT = 30000;
+
+    // options whose value is a file or a list of files
+    private static final Set<String> PATH_OPTIONS = new HashSet<String>(Arrays.asList("-d", "-classpath", "-cp",
+            "-sourcepath", "-bootclasspath", "-extdirs", "-endorseddirs", "-processorpath", "-s", "-log", "-properties"));
+
     private String javaAgentClass = "";
 
+    /**
+     * If true, forked compiles are sent to a long-lived {@link CompilerDaemon}
+     * instead of starting a new VM for each of them
+     */
+    private boolean useCompilerDaemon;
+
     /**
      * Simple progress monitor to keep track of number of files compiled
      * 
@@ -108,6 +132,14 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
 
     boolean verbose;
 
+    /**
+     * The dependency graph of the sources being compiled, or null if the
+     * compile is forked and so cannot record it
+     */
+    private IncrementalBuildState buildState;
+
+    private File buildStateFile;
+
     public GroovyEclipseCompiler() {
         // here is a bit of a hack. maven only wants a single file extension
         // for sources, so we pass it "". Later, we must recalculate for real.
@@ -126,6 +158,7 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
         String[] args = createCommandLine(config);
         if (args.length == 0) {
             getLogger().info("Nothing to compile - all classes are up to date");
+            saveBuildState();
             return true;
         }
 
@@ -143,14 +176,35 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
             }
 
             String groovyEclipseLocation = getGroovyEclipseBatchLocation();
-            result = compileOutOfProcess(config, executable, groovyEclipseLocation, args, messages);
+            if (useCompilerDaemon) {
+                result = compileInDaemon(config, executable, groovyEclipseLocation, args, messages);
+            } else {
+                result = compileOutOfProcess(config, executable, groovyEclipseLocation, args, messages);
+            }
         } else {
             Progress progress = new Progress();
             StringWriter out = new StringWriter();
 
+            final IncrementalBuildState state = buildState;
+            final File outputDirectory = new File(config.getOutputLocation());
             Main main = new Main(new PrintWriter(out), new PrintWriter(out), false/* systemExit */,
-                    null/* options */, progress);
+                    null/* options */, progress) {
+                @Override
+                public ICompilerRequestor getBatchRequestor() {
+                    final ICompilerRequestor requestor = super.getBatchRequestor();
+                    if (state == null) {
+                        return requestor;
+                    }
+                    return new ICompilerRequestor() {
+                        public void acceptResult(CompilationResult compilationResult) {
+                            requestor.acceptResult(compilationResult);
+                            state.recordResult(compilationResult, outputDirectory);
+                        }
+                    };
+                }
+            };
             result = main.compile(args);
+            saveBuildState();
             try {
                 messages.addAll(parseMessages(result ? 0 : 1, out.getBuffer().toString(), config.isShowWarnings()));
             } catch (IOException e) {
@@ -164,42 +218,111 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
         return result;
     }
 
-    private File[] recalculateStaleFiles(CompilerConfiguration config) throws CompilerException {
+    private File[] recalculateStaleFiles(CompilerConfiguration config, List<String> args) throws CompilerException {
         config.setSourceFiles(null);
-        long staleMillis = 0; // can we do better than using 0?
         Set<String> includes = config.getIncludes();
         if (includes == null || includes.isEmpty()) {
             includes = Collections.singleton("**/*");
         }
-        StaleSourceScanner scanner = new StaleSourceScanner(staleMillis, includes, config.getExcludes());
-        Set<File> staleSources = computeStaleSources(config, scanner);
+        File outputDirectory = new File(config.getOutputLocation());
+        buildStateFile = IncrementalBuildState.getStateFile(outputDirectory);
+        Set<File> staleSources;
+        if (config.isFork()) {
+            // the results of a forked compile cannot be recorded, so only
+            // compare time stamps and forget any previous dependency graph
+            buildState = null;
+            buildStateFile.delete();
+            long staleMillis = 0; // can we do better than using 0?
+            StaleSourceScanner scanner = new StaleSourceScanner(staleMillis, includes, config.getExcludes());
+            staleSources = computeStaleSources(config, scanner);
+        } else {
+            Set<File> allSources = new LinkedHashSet<File>();
+            SimpleSourceInclusionScanner scanner = new SimpleSourceInclusionScanner(includes, config.getExcludes());
+            for (File source : computeStaleSources(config, scanner)) {
+                if (source.getName().endsWith(".groovy") || source.getName().endsWith(".java")) {
+                    allSources.add(source);
+                }
+            }
+            String options = createOptionsKey(args);
+            IncrementalBuildState previousState = null;
+            try {
+                previousState = IncrementalBuildState.read(buildStateFile, options);
+            } catch (IOException e) {
+                getLogger().warn("Unable to read the incremental build state from " + buildStateFile, e);
+            }
+            if (previousState == null) {
+                // no dependency graph that fits the current options, so
+                // compile everything to record a complete one
+                buildState = new IncrementalBuildState(options);
+                buildState.recordClasspath(config.getClasspathEntries(), outputDirectory);
+                staleSources = allSources;
+            } else {
+                buildState = previousState;
+                staleSources = previousState.computeSourcesToCompile(allSources, outputDirectory,
+                        config.getClasspathEntries());
+                if (verbose) {
+                    getLogger().info("Incremental compile of " + staleSources.size() + " out of " + allSources.size()
+                            + " sources");
+                }
+            }
+            buildState.startBuild(staleSources);
+        }
         config.setSourceFiles(staleSources);
 
         File[] sourceFiles = staleSources.toArray(new File[0]);
         return sourceFiles;
     }
 
+    /**
+     * @return the compiler arguments that affect the generated class files.
+     *         A dependency graph recorded with other arguments is discarded.
+     */
+    private String createOptionsKey(List<String> args) {
+        StringBuilder sb = new StringBuilder();
+        for (String arg : args) {
+            if (!"-verbose".equals(arg)) {
+                sb.append(arg).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private void saveBuildState() {
+        if (buildState != null) {
+            try {
+                buildState.write(buildStateFile);
+            } catch (IOException e) {
+                getLogger().warn("Unable to save the incremental build state to " + buildStateFile, e);
+                buildStateFile.delete();
+            }
+        }
+    }
+
     private boolean startsWithHyphen(Object key) {
         return null != key && String.class.isInstance(key) && ((String) key).startsWith("-");
     }
 
     private CompilerMessage formatResult(Main main, boolean result) {
+        return formatResult(result, main.globalErrorsCount, main.globalWarningsCount);
+    }
+
+    private CompilerMessage formatResult(boolean result, int errorCount, int warningCount) {
         if (result) {
             return new CompilerMessage("Success!", Kind.NOTE);
         } else {
             Kind kind;
-            if (main.globalErrorsCount > 0) {
+            if (errorCount > 0) {
                 kind = Kind.ERROR;
-            } else if (main.globalWarningsCount > 0) {
+            } else if (warningCount > 0) {
                 kind = Kind.WARNING;
             } else {
                 kind = Kind.NOTE;
             }
             
-            String error = main.globalErrorsCount == 1 ? "error" : "errors";
-            String warning = main.globalWarningsCount == 1 ? "warning" : "warnings";
-            return new CompilerMessage("Found " + main.globalErrorsCount + " " + error + " and "
-                    + main.globalWarningsCount + " " + warning + ".", kind);
+            String error = errorCount == 1 ? "error" : "errors";
+            String warning = warningCount == 1 ? "warning" : "warnings";
+            return new CompilerMessage("Found " + errorCount + " " + error + " and "
+                    + warningCount + " " + warning + ".", kind);
         }
     }
 
@@ -236,19 +359,6 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
                 config.addSourceLocation(srcTestGroovy.getAbsolutePath());
             }
         }
-        // recalculate stale files since they were not properly calculated in
-        // super
-        File[] sourceFiles = recalculateStaleFiles(config);
-
-        if (sourceFiles.length == 0) {
-            return new String[0];
-        }
-
-        getLogger().info("Using Groovy-Eclipse compiler to compile both Java and Groovy files");
-        getLogger().debug(
-                "Compiling " + sourceFiles.length + " " + "source file" + (sourceFiles.length == 1 ? "" : "s") + " to "
-                        + destinationDir.getAbsolutePath());
-
         List<String> args = new ArrayList<String>();
         String cp = super.getPathString(config.getClasspathEntries());
         verbose = config.isVerbose();
@@ -331,6 +441,7 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
             args.add(config.getSourceEncoding());
         }
 
+        useCompilerDaemon = false;
         for (Entry<String, String> entry : config.getCustomCompilerArgumentsAsMap().entrySet()) {
 
             String key = entry.getKey();
@@ -339,6 +450,10 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
                     setJavaAgentClass(entry.getValue());
                     // do not add the custom java agent arg because it is not
                     // expected by groovy-eclipse compiler
+                } else if (COMPILER_DAEMON_PARAM_NAME.equals(key)) {
+                    // only used when forking, and not expected by the
+                    // groovy-eclipse compiler either
+                    useCompilerDaemon = !"false".equals(entry.getValue());
                 } else {
                     // don't add a "-" if the arg
                     // already has one
@@ -360,6 +475,24 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
 
         }
 
+        // recalculate stale files since they were not properly calculated in
+        // super. This is done after the arguments are known, so that they
+        // can be compared to the ones of the previous build
+        File[] sourceFiles = recalculateStaleFiles(config, args);
+
+        if (sourceFiles.length == 0) {
+            return new String[0];
+        }
+
+        getLogger().info("Using Groovy-Eclipse compiler to compile both Java and Groovy files");
+        getLogger().debug(
+                "Compiling " + sourceFiles.length + " " + "source file" + (sourceFiles.length == 1 ? "" : "s") + " to "
+                        + destinationDir.getAbsolutePath());
+
+        if (buildState != null) {
+            // record the references of every unit for the next build
+            args.add("-referenceInfo");
+        }
         args.addAll(composeSourceFiles(sourceFiles));
 
         if (verbose) {
@@ -489,6 +622,158 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
         return returnCode != 0;
     }
 
+    /**
+     * Compile the sources in a long-lived compiler daemon, which is started
+     * if it is not running yet. Daemons are shared by all builds that use the
+     * same java executable, compiler jars and memory settings.
+     * 
+     * @return true iff the compile was successful
+     * @throws CompilerException
+     */
+    private boolean compileInDaemon(CompilerConfiguration config, String executable, String groovyEclipseLocation,
+            String[] args, List<CompilerMessage> messages) throws CompilerException {
+        List<String> command = new ArrayList<String>();
+        command.add(executable);
+        if (!StringUtils.isEmpty(javaAgentClass)) {
+            command.add("-javaagent:" + getAdditionnalJavaAgentLocation());
+        }
+        if (!StringUtils.isEmpty(config.getMaxmem())) {
+            command.add("-Xmx" + config.getMaxmem());
+        }
+        if (!StringUtils.isEmpty(config.getMeminitial())) {
+            command.add("-Xms" + config.getMeminitial());
+        }
+        command.add("-cp");
+        command.add(getClassLocation(CompilerDaemon.class.getName()) + File.pathSeparator + groovyEclipseLocation);
+        command.add(CompilerDaemon.class.getName());
+
+        // a daemon that was started from other jars or with other settings must not be used
+        StringBuilder key = new StringBuilder();
+        for (String part : command) {
+            key.append(part).append('\n');
+        }
+        key.append(new File(groovyEclipseLocation).lastModified());
+        File portFile = new File(new File(System.getProperty("user.home"), ".m2/groovy-eclipse-compiler"), "daemon-"
+                + Integer.toHexString(key.toString().hashCode()) + ".port");
+
+        // the daemon runs in its own working directory, so paths must not be relative to the one of the project
+        String[] daemonArgs = makePathsAbsolute(args, config.getWorkingDirectory());
+        try {
+            CompilerDaemon.Result result = CompilerDaemon.compile(portFile, daemonArgs);
+            if (result == null) {
+                startDaemonIfNeeded(command, portFile);
+                result = CompilerDaemon.compile(portFile, daemonArgs);
+            }
+            if (result == null) {
+                getLogger().warn("Unable to connect to the compiler daemon, compiling in a forked process instead");
+                return compileOutOfProcess(config, executable, groovyEclipseLocation, args, messages);
+            }
+
+            messages.addAll(parseMessages(result.success ? 0 : 1, result.output, config.isShowWarnings()));
+            if (!result.success) {
+                messages.add(formatResult(result.success, result.errorCount, result.warningCount));
+            }
+            return result.success;
+        } catch (IOException e) {
+            // the daemon may have died or timed out during the compile, which must not fail the build
+            getLogger().warn("Error while compiling in the compiler daemon, compiling in a forked process instead", e);
+            return compileOutOfProcess(config, executable, groovyEclipseLocation, args, messages);
+        }
+    }
+
+    /**
+     * Resolves the relative paths among the compiler arguments against the
+     * working directory of the project. Values of path options are always
+     * resolved, other arguments only if they name an existing file.
+     */
+    private String[] makePathsAbsolute(String[] args, File workingDirectory) {
+        if (workingDirectory == null) {
+            return args;
+        }
+        String[] result = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean isPathValue = i > 0 && PATH_OPTIONS.contains(args[i - 1]);
+            if ((arg.startsWith("-") && !isPathValue) || (isPathValue && "none".equals(arg))) {
+                // "-d none" does not name a folder
+                result[i] = arg;
+                continue;
+            }
+            StringBuilder absolute = new StringBuilder();
+            for (String path : arg.split(File.pathSeparator, -1)) {
+                if (absolute.length() > 0) {
+                    absolute.append(File.pathSeparator);
+                }
+                File file = new File(path);
+                if (path.length() > 0 && !file.isAbsolute()) {
+                    File resolved = new File(workingDirectory, path);
+                    if (isPathValue || resolved.exists()) {
+                        file = resolved;
+                    }
+                }
+                absolute.append(file.isAbsolute() ? file.getAbsolutePath() : path);
+            }
+            result[i] = absolute.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Starts a daemon for the given port file, unless another build has
+     * started one in the meantime. Concurrent builds are serialized on a lock
+     * file next to the port file, so that only one of them starts a daemon.
+     */
+    private void startDaemonIfNeeded(List<String> command, File portFile) throws IOException {
+        portFile.getParentFile().mkdirs();
+        RandomAccessFile lockFile = new RandomAccessFile(new File(portFile.getPath() + ".lock"), "rw");
+        try {
+            FileLock lock = lockFile.getChannel().lock();
+            try {
+                if (!CompilerDaemon.isRunning(portFile)) {
+                    startDaemon(command, portFile);
+                }
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    private void startDaemon(List<String> command, File portFile) throws IOException {
+        List<String> daemonCommand = new ArrayList<String>(command);
+        daemonCommand.add(portFile.getAbsolutePath());
+        daemonCommand.add(String.valueOf(DAEMON_IDLE_MINUTES));
+
+        portFile.delete();
+        getLogger().info("Starting a compiler daemon, which exits after " + DAEMON_IDLE_MINUTES + " idle minutes");
+        ProcessBuilder builder = new ProcessBuilder(daemonCommand);
+        // do not keep the project folder in use
+        builder.directory(portFile.getParentFile());
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        // the daemon outlives this build, so nobody is going to read its output
+        process.getOutputStream().close();
+        process.getInputStream().close();
+
+        long deadline = System.currentTimeMillis() + DAEMON_START_TIMEOUT;
+        while (!portFile.isFile() && System.currentTimeMillis() < deadline) {
+            try {
+                process.exitValue();
+                // the daemon could not start
+                return;
+            } catch (IllegalThreadStateException e) {
+                // still running
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     /**
      * Parse the output from the compiler into a list of CompilerError objects
      * 
@@ -0,0 +1,492 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+
+/**
+ * The dependency graph of the sources of a single output folder, as recorded by the last in-process compile. For each source it
+ * keeps the time stamp it was compiled at, the class files it produced and the names it referenced. Both the Java and the Groovy
+ * parts of the compiler record their references in the JDT compilation results, so the graph covers both languages.
+ * <p>
+ * The graph is used to compile exactly the sources that changed since the last build, plus all the sources that transitively
+ * reference one of the types they define. Types of upstream modules or jars on the classpath that changed since the last build
+ * are handled the same way. The class files of each folder on the classpath are recorded as well, so that types deleted from an
+ * upstream module are handled like the types of deleted sources.
+ * <p>
+ * Like the JDT builder, dependencies are tracked by type name only. Sources are matched by the simple names they reference and
+ * then by the packages of their qualified references.
+ *
+ * @created Aug 2, 2013
+ */
+class IncrementalBuildState {
+
+    private static final int VERSION = 2;
+
+    private static final String STATE_FOLDER = "groovy-eclipse-compiler";
+
+    // file systems may only keep time stamps to the second or two, so look a little further back for changed class files
+    private static final long TIMESTAMP_TOLERANCE = 2000;
+
+    private static class SourceEntry {
+        long lastModified;
+        long length;
+        // true if the source must be compiled again, because it had errors or its compile did not complete
+        boolean dirty;
+        // class file names, like 'p/Foo$Inner'
+        String[] classFiles;
+        // qualified references, like 'p.Foo'
+        String[] qualifiedReferences;
+        String[] simpleNameReferences;
+    }
+
+    private final String options;
+
+    // time at which the last build that was saved started
+    private long buildTime;
+
+    private long currentBuildTime;
+
+    private final Map<String, SourceEntry> sources = new HashMap<String, SourceEntry>();
+
+    // class file names of each folder on the classpath, by absolute path
+    private final Map<String, String[]> classpathFolders = new HashMap<String, String[]>();
+
+    // the sources being compiled by the current build
+    private final Set<String> compiling = new HashSet<String>();
+
+    IncrementalBuildState(String options) {
+        this.options = options;
+    }
+
+    /**
+     * @return the file that keeps the build state of the given output folder, for example
+     *         <code>target/groovy-eclipse-compiler/classes.state</code>
+     */
+    static File getStateFile(File outputDirectory) {
+        File parent = outputDirectory.getAbsoluteFile().getParentFile();
+        if (parent == null) {
+            parent = outputDirectory.getAbsoluteFile();
+        }
+        return new File(new File(parent, STATE_FOLDER), outputDirectory.getName() + ".state");
+    }
+
+    /**
+     * @return the state that was saved in the given file, or null if there is none or it was written with different compiler
+     *         options
+     */
+    static IncrementalBuildState read(File stateFile, String options) throws IOException {
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)));
+        try {
+            if (in.readInt() != VERSION || !options.equals(in.readUTF())) {
+                return null;
+            }
+            IncrementalBuildState state = new IncrementalBuildState(options);
+            state.buildTime = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                String path = in.readUTF();
+                SourceEntry entry = new SourceEntry();
+                entry.lastModified = in.readLong();
+                entry.length = in.readLong();
+                entry.dirty = in.readBoolean();
+                entry.classFiles = readStrings(in);
+                entry.qualifiedReferences = readStrings(in);
+                entry.simpleNameReferences = readStrings(in);
+                state.sources.put(path, entry);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String path = in.readUTF();
+                state.classpathFolders.put(path, readStrings(in));
+            }
+            return state;
+        } finally {
+            in.close();
+        }
+    }
+
+    void write(File stateFile) throws IOException {
+        stateFile.getParentFile().mkdirs();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(stateFile)));
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(options);
+            out.writeLong(currentBuildTime);
+            out.writeInt(sources.size());
+            for (Map.Entry<String, SourceEntry> mapEntry : sources.entrySet()) {
+                SourceEntry entry = mapEntry.getValue();
+                out.writeUTF(mapEntry.getKey());
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.length);
+                out.writeBoolean(entry.dirty);
+                writeStrings(out, entry.classFiles);
+                writeStrings(out, entry.qualifiedReferences);
+                writeStrings(out, entry.simpleNameReferences);
+            }
+            out.writeInt(classpathFolders.size());
+            for (Map.Entry<String, String[]> mapEntry : classpathFolders.entrySet()) {
+                out.writeUTF(mapEntry.getKey());
+                writeStrings(out, mapEntry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Computes the sources to compile, which are the sources that are new, changed or were not compiled successfully, plus all the
+     * sources that depend on them or on a changed type of the classpath. The class files of sources that no longer exist are
+     * deleted.
+     *
+     * @param allSources all sources of the output folder
+     * @param classpath the classpath of the compile, which may include upstream output folders
+     * @return the sources to compile
+     */
+    Set<File> computeSourcesToCompile(Set<File> allSources, File outputDirectory, List<String> classpath) {
+        Set<String> toCompile = new LinkedHashSet<String>();
+        // class file names of the types that changed or were deleted
+        Set<String> changedTypes = new HashSet<String>();
+        // simple names of the main types of new sources
+        Set<String> addedTypes = new HashSet<String>();
+
+        Map<String, File> currentSources = new HashMap<String, File>();
+        for (File source : allSources) {
+            String path = source.getAbsolutePath();
+            currentSources.put(path, source);
+            SourceEntry entry = sources.get(path);
+            if (entry == null) {
+                toCompile.add(path);
+                addedTypes.add(getTypeName(source));
+            } else if (entry.dirty || entry.lastModified != source.lastModified() || entry.length != source.length()
+                    || !classFilesExist(entry, outputDirectory)) {
+                toCompile.add(path);
+                changedTypes.addAll(getTypeNames(entry));
+            }
+        }
+        for (String path : new ArrayList<String>(sources.keySet())) {
+            if (!currentSources.containsKey(path)) {
+                SourceEntry entry = sources.remove(path);
+                changedTypes.addAll(getTypeNames(entry));
+                deleteClassFiles(entry.classFiles, outputDirectory);
+            }
+        }
+        changedTypes.addAll(findChangedClasspathTypes(classpath, outputDirectory, buildTime - TIMESTAMP_TOLERANCE));
+
+        // index the sources by the simple names they reference
+        Map<String, List<String>> referencingSources = new HashMap<String, List<String>>();
+        for (Map.Entry<String, SourceEntry> mapEntry : sources.entrySet()) {
+            for (String simpleName : mapEntry.getValue().simpleNameReferences) {
+                List<String> paths = referencingSources.get(simpleName);
+                if (paths == null) {
+                    paths = new ArrayList<String>(2);
+                    referencingSources.put(simpleName, paths);
+                }
+                paths.add(mapEntry.getKey());
+            }
+        }
+
+        // now add the dependents, and the dependents of those
+        LinkedList<String> worklist = new LinkedList<String>(changedTypes);
+        Set<String> seenTypes = new HashSet<String>(changedTypes);
+        for (String addedType : addedTypes) {
+            addDependents(addedType, true, referencingSources, toCompile, worklist, seenTypes);
+        }
+        while (!worklist.isEmpty()) {
+            addDependents(worklist.removeFirst(), false, referencingSources, toCompile, worklist, seenTypes);
+        }
+
+        Set<File> result = new LinkedHashSet<File>(toCompile.size());
+        for (String path : toCompile) {
+            File source = currentSources.get(path);
+            if (source != null) {
+                result.add(source);
+            }
+        }
+        return result;
+    }
+
+    private void addDependents(String typeName, boolean isAdded, Map<String, List<String>> referencingSources,
+            Set<String> toCompile, LinkedList<String> worklist, Set<String> seenTypes) {
+        String packageName = getPackageName(typeName);
+        String simpleName = typeName.substring(typeName.lastIndexOf('/') + 1);
+
+        Set<String> candidates = new HashSet<String>();
+        addAll(candidates, referencingSources.get(simpleName));
+        // groovy records references to member types by their binary names, and java by their source names
+        if (simpleName.indexOf('$') != -1) {
+            for (String segment : simpleName.split("\\$")) {
+                addAll(candidates, referencingSources.get(segment));
+            }
+        }
+        for (String path : candidates) {
+            if (toCompile.contains(path)) {
+                continue;
+            }
+            SourceEntry entry = sources.get(path);
+            // a new type may be referenced by a source that could not resolve it yet, so only the simple name is checked
+            if (isAdded || packageName.length() == 0 || referencesPackage(entry, packageName)) {
+                toCompile.add(path);
+                for (String dependentType : getTypeNames(entry)) {
+                    if (seenTypes.add(dependentType)) {
+                        worklist.add(dependentType);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the class files of the folders on the classpath, for a build that compiles all sources and so does not look for
+     * changed classpath types
+     */
+    void recordClasspath(List<String> classpath, File outputDirectory) {
+        findChangedClasspathTypes(classpath, outputDirectory, Long.MAX_VALUE);
+    }
+
+    /**
+     * Marks the sources that are about to be compiled, so that they are compiled again if the compile does not complete
+     */
+    void startBuild(Collection<File> sourcesToCompile) {
+        currentBuildTime = System.currentTimeMillis();
+        compiling.clear();
+        for (File source : sourcesToCompile) {
+            String path = source.getAbsolutePath();
+            compiling.add(path);
+            SourceEntry entry = sources.get(path);
+            if (entry != null) {
+                entry.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Records the result of compiling a single source. Class files that the source produced in the previous build, but not in this
+     * one, are deleted. Results of units that were not passed to the compiler, like sources generated by annotation processors,
+     * are ignored.
+     */
+    void recordResult(CompilationResult result, File outputDirectory) {
+        File source = new File(new String(result.getFileName()));
+        String path = source.getAbsolutePath();
+        if (!compiling.contains(path)) {
+            return;
+        }
+        List<String> classFiles = new ArrayList<String>(result.compiledTypes.size());
+        for (Object className : result.compiledTypes.keySet()) {
+            classFiles.add(new String((char[]) className));
+        }
+        SourceEntry oldEntry = sources.get(path);
+        SourceEntry entry = new SourceEntry();
+        entry.lastModified = source.lastModified();
+        entry.length = source.length();
+        entry.dirty = result.hasErrors();
+        entry.classFiles = classFiles.toArray(new String[classFiles.size()]);
+        entry.qualifiedReferences = toStrings(result.qualifiedReferences);
+        entry.simpleNameReferences = toStrings(result.simpleNameReferences);
+        sources.put(path, entry);
+
+        if (oldEntry != null) {
+            Set<String> obsolete = new HashSet<String>();
+            addAll(obsolete, oldEntry.classFiles);
+            obsolete.removeAll(classFiles);
+            deleteClassFiles(obsolete.toArray(new String[obsolete.size()]), outputDirectory);
+        }
+    }
+
+    private Set<String> findChangedClasspathTypes(List<String> classpath, File outputDirectory, long since) {
+        Set<String> changedTypes = new HashSet<String>();
+        Map<String, String[]> previousFolders = new HashMap<String, String[]>(classpathFolders);
+        classpathFolders.clear();
+        File output = outputDirectory.getAbsoluteFile();
+        for (String classpathEntry : classpath) {
+            File file = new File(classpathEntry).getAbsoluteFile();
+            if (file.equals(output)) {
+                continue;
+            }
+            if (file.isDirectory()) {
+                List<String> classFiles = new ArrayList<String>();
+                findChangedClassFiles(file, "", since, classFiles, changedTypes);
+                // class files that are gone were deleted from the upstream module, so their types changed as well
+                String[] previousClassFiles = previousFolders.remove(file.getPath());
+                if (previousClassFiles != null) {
+                    Set<String> deleted = new HashSet<String>();
+                    addAll(deleted, previousClassFiles);
+                    deleted.removeAll(classFiles);
+                    changedTypes.addAll(deleted);
+                }
+                classpathFolders.put(file.getPath(), classFiles.toArray(new String[classFiles.size()]));
+            } else if (file.isFile() && file.lastModified() > since) {
+                // no way to tell which types of a changed jar changed, so assume all of them did
+                try {
+                    ZipFile zip = new ZipFile(file);
+                    try {
+                        for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+                            String name = entries.nextElement().getName();
+                            if (name.endsWith(".class")) {
+                                changedTypes.add(name.substring(0, name.length() - ".class".length()));
+                            }
+                        }
+                    } finally {
+                        zip.close();
+                    }
+                } catch (IOException e) {
+                    // not a jar, so nothing can be referenced from it
+                }
+            }
+        }
+        // all the types of folders that no longer exist are gone
+        for (String[] classFiles : previousFolders.values()) {
+            addAll(changedTypes, classFiles);
+        }
+        return changedTypes;
+    }
+
+    private static void findChangedClassFiles(File folder, String prefix, long since, List<String> classFiles,
+            Set<String> changedTypes) {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            if (child.isDirectory()) {
+                findChangedClassFiles(child, prefix + name + "/", since, classFiles, changedTypes);
+            } else if (name.endsWith(".class")) {
+                String typeName = prefix + name.substring(0, name.length() - ".class".length());
+                classFiles.add(typeName);
+                if (child.lastModified() > since) {
+                    changedTypes.add(typeName);
+                }
+            }
+        }
+    }
+
+    private static boolean referencesPackage(SourceEntry entry, String packageName) {
+        String packagePrefix = packageName + ".";
+        for (String qualifiedReference : entry.qualifiedReferences) {
+            if (qualifiedReference.equals(packageName) || qualifiedReference.startsWith(packagePrefix)) {
+                return true;
+            }
+        }
+        // references to types of the same package may be simple
+        return entry.classFiles.length > 0 && getPackageName(entry.classFiles[0]).equals(packageName);
+    }
+
+    private static String getPackageName(String typeName) {
+        int lastSlash = typeName.lastIndexOf('/');
+        return lastSlash == -1 ? "" : typeName.substring(0, lastSlash).replace('/', '.');
+    }
+
+    private static Collection<String> getTypeNames(SourceEntry entry) {
+        List<String> typeNames = new ArrayList<String>(entry.classFiles.length);
+        addAll(typeNames, entry.classFiles);
+        return typeNames;
+    }
+
+    /**
+     * @return the simple name of the main type of a source that has not been compiled yet
+     */
+    private static String getTypeName(File source) {
+        String name = source.getName();
+        int dot = name.lastIndexOf('.');
+        return dot == -1 ? name : name.substring(0, dot);
+    }
+
+    private static boolean classFilesExist(SourceEntry entry, File outputDirectory) {
+        for (String classFile : entry.classFiles) {
+            if (!new File(outputDirectory, classFile + ".class").isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void deleteClassFiles(String[] classFiles, File outputDirectory) {
+        for (String classFile : classFiles) {
+            new File(outputDirectory, classFile + ".class").delete();
+        }
+    }
+
+    private static void addAll(Collection<String> collection, Collection<String> toAdd) {
+        if (toAdd != null) {
+            collection.addAll(toAdd);
+        }
+    }
+
+    private static void addAll(Collection<String> collection, String[] toAdd) {
+        for (String string : toAdd) {
+            collection.add(string);
+        }
+    }
+
+    private static String[] toStrings(char[][][] names) {
+        if (names == null) {
+            return new String[0];
+        }
+        String[] strings = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < names[i].length; j++) {
+                if (j > 0) {
+                    sb.append('.');
+                }
+                sb.append(names[i][j]);
+            }
+            strings[i] = sb.toString();
+        }
+        return strings;
+    }
+
+    private static String[] toStrings(char[][] names) {
+        if (names == null) {
+            return new String[0];
+        }
+        String[] strings = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            strings[i] = new String(names[i]);
+        }
+        return strings;
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+}
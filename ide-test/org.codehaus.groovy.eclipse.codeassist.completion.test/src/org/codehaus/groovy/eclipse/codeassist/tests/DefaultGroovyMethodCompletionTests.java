@@ -219,6 +219,68 @@ public class DefaultGroovyMethodCompletionTests extends CompletionTestCase {
         proposalExists(proposals, "findAll", 2);
     }
     
+    // the default category proposals are looked up in a shared table that is rebuilt when the filter changes
+    public void testDGMFilterAfterRebuild() throws Exception {
+        try {
+            setDGMFilter("inspect");
+            String contents = "this.insp\nnew Object().eac";
+            ICompilationUnit unit = createGroovyWithContents("Script", contents);
+            ICompletionProposal[] proposals = performContentAssist(unit, getIndexOf(contents, "insp"), GroovyCompletionProposalComputer.class);
+            proposalExists(proposals, "inspect", 0);
+            proposals = performContentAssist(unit, getIndexOf(contents, "eac"), GroovyCompletionProposalComputer.class);
+            proposalExists(proposals, "each", 1);
+
+            setDGMFilter("inspect", "each");
+            proposals = performContentAssist(unit, getIndexOf(contents, "insp"), GroovyCompletionProposalComputer.class);
+            proposalExists(proposals, "inspect", 0);
+            proposals = performContentAssist(unit, getIndexOf(contents, "eac"), GroovyCompletionProposalComputer.class);
+            proposalExists(proposals, "each", 0);
+
+            setDGMFilter();
+            proposals = performContentAssist(unit, getIndexOf(contents, "insp"), GroovyCompletionProposalComputer.class);
+            proposalExists(proposals, "inspect", 1);
+            proposals = performContentAssist(unit, getIndexOf(contents, "eac"), GroovyCompletionProposalComputer.class);
+            proposalExists(proposals, "each", 1);
+        } finally {
+            setDGMFilter();
+        }
+    }
+
+    public void testDGMCamelCase() throws Exception {
+        String contents = "new Object().eWI";
+        ICompilationUnit unit = createGroovyWithContents("Script", contents);
+        ICompletionProposal[] proposals = performContentAssist(unit, getIndexOf(contents, "eWI"), GroovyCompletionProposalComputer.class);
+        proposalExists(proposals, "eachWithIndex", 1);
+    }
+
+    public void testPropertyVariantOfDGMWithPrefix() throws Exception {
+        String contents = "new Object().propert\nnew Object().getPropert";
+        ICompilationUnit unit = createGroovyWithContents("Script", contents);
+        ICompletionProposal[] proposals = performContentAssist(unit, getIndexOf(contents, "().propert"), GroovyCompletionProposalComputer.class);
+        proposalExists(proposals, "properties", 1);
+        proposalExists(proposals, "getProperties", 0);
+        // when the method name matches, only the method is proposed
+        proposals = performContentAssist(unit, getIndexOf(contents, "getPropert"), GroovyCompletionProposalComputer.class);
+        proposalExists(proposals, "getProperties", 1);
+        proposalExists(proposals, "properties", 0);
+    }
+
+    // a category in a use block is searched after the default categories
+    public void testUseCategoryWithDGM() throws Exception {
+        String contents =
+                "class Cat {\n" +
+                "    static String inspect(Object self) { '' }\n" +
+                "    static String inspectTwice(Object self) { '' }\n" +
+                "}\n" +
+                "use (Cat) {\n" +
+                "    new Object().insp\n" +
+                "}";
+        ICompilationUnit unit = createGroovyWithContents("Script", contents);
+        ICompletionProposal[] proposals = performContentAssist(unit, getIndexOf(contents, "().insp"), GroovyCompletionProposalComputer.class);
+        proposalExists(proposals, "inspect", 1);
+        proposalExists(proposals, "inspectTwice", 1);
+    }
+
     private void setDGMFilter(String... filter) {
         GroovyContentAssistActivator.getDefault().setFilteredDGMs(new HashSet<String>(Arrays.asList(filter)));
     }
@@ -29,9 +29,12 @@ public class AllDSLTests {
         suite.addTest(DSLInferencingTests.suite());
         suite.addTest(BuiltInDSLInferencingTests.suite());
         suite.addTest(DSLStoreTests.suite());
+        suite.addTest(RefreshDSLDJobTests.suite());
+        suite.addTest(SharedDSLDScriptsTests.suite());
         suite.addTestSuite(StringObjectVectorTests.class);
         suite.addTestSuite(DSLContentAssistTests.class);
         suite.addTestSuite(DSLNamedArgContentAssistTests.class);
+        suite.addTestSuite(DSLDClassCacheTests.class);
         return suite;
     }
 
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.tests;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import junit.framework.TestCase;
+
+import org.codehaus.groovy.eclipse.dsl.script.DSLDClassCache;
+import org.codehaus.groovy.eclipse.dsl.script.DSLDClassCache.ScriptClassLoader;
+
+/**
+ * Tests that compiled DSLD scripts are reused from the on-disk cache, and compiled again when they or the versions change
+ *
+ * @created Oct 17, 2013
+ */
+public class DSLDClassCacheTests extends TestCase {
+
+    private static final String SCRIPT = "currentType().accept { }";
+
+    private File cacheDir;
+
+    private GroovyClassLoader gcl;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cacheDir = File.createTempFile("dsldClasses", "");
+        cacheDir.delete();
+        assertTrue(cacheDir.mkdirs());
+        gcl = new GroovyClassLoader(DSLDClassCacheTests.class.getClassLoader());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : cacheDir.listFiles()) {
+            file.delete();
+        }
+        cacheDir.delete();
+        super.tearDown();
+    }
+
+    public void testCacheHit() throws Exception {
+        DSLDClassCache cache = new DSLDClassCache(cacheDir, "1");
+        Class<?> compiled = cache.getScriptClass("hit.dsld", SCRIPT, gcl);
+        assertEquals(1, cache.getCompileCount());
+        assertEquals(1, countEntries());
+
+        Class<?> cached = new DSLDClassCache(cacheDir, "1").getScriptClass("hit.dsld", SCRIPT, gcl);
+        Class<?> cachedAgain = cache.getScriptClass("hit.dsld", SCRIPT, gcl);
+        assertEquals("Should have used the entry instead of compiling again", 1, cache.getCompileCount());
+        assertEquals(1, countEntries());
+        assertEquals(compiled.getName(), cached.getName());
+        assertNotSame("Each script should get its own class", cachedAgain, cached);
+    }
+
+    public void testChangedContentsMiss() throws Exception {
+        DSLDClassCache cache = new DSLDClassCache(cacheDir, "1");
+        cache.getScriptClass("miss.dsld", SCRIPT, gcl);
+        cache.getScriptClass("miss.dsld", SCRIPT + "\nfields().accept { }", gcl);
+        assertEquals("Changed contents should have been compiled", 2, cache.getCompileCount());
+        assertEquals(2, countEntries());
+    }
+
+    public void testChangedVersionMiss() throws Exception {
+        new DSLDClassCache(cacheDir, "1").getScriptClass("miss.dsld", SCRIPT, gcl);
+        DSLDClassCache newVersion = new DSLDClassCache(cacheDir, "2");
+        newVersion.getScriptClass("miss.dsld", SCRIPT, gcl);
+        assertEquals("Classes of other versions should not be used", 1, newVersion.getCompileCount());
+        assertEquals(2, countEntries());
+    }
+
+    public void testCorruptEntryRecompiled() throws Exception {
+        DSLDClassCache cache = new DSLDClassCache(cacheDir, "1");
+        cache.getScriptClass("corrupt.dsld", SCRIPT, gcl);
+        File entry = cacheDir.listFiles()[0];
+
+        // a truncated entry
+        RandomAccessFile file = new RandomAccessFile(entry, "rw");
+        try {
+            file.setLength(file.length() / 2);
+        } finally {
+            file.close();
+        }
+        assertNotNull(cache.getScriptClass("corrupt.dsld", SCRIPT, gcl));
+        assertEquals("Truncated entry should have been compiled again", 2, cache.getCompileCount());
+
+        // an entry that is not from the cache at all
+        write(entry, "not a class file");
+        assertNotNull(cache.getScriptClass("corrupt.dsld", SCRIPT, gcl));
+        assertEquals("Unknown entry should have been compiled again", 3, cache.getCompileCount());
+
+        // the entry has been replaced by the recompiled classes
+        assertEquals(1, countEntries());
+        cache.getScriptClass("corrupt.dsld", SCRIPT, gcl);
+        assertEquals(3, cache.getCompileCount());
+    }
+
+    public void testClosuresAndInnerClassesLoaded() throws Exception {
+        String contents = "class Helper {\n" +
+                "    def twice = { it * 2 }\n" +
+                "}\n" +
+                "def add = { a, b -> a + b }\n" +
+                "add(new Helper().twice(3), 1)";
+        DSLDClassCache cache = new DSLDClassCache(cacheDir, "1");
+        assertScriptRuns(cache.getScriptClass("inner.dsld", contents, gcl));
+        assertScriptRuns(cache.getScriptClass("inner.dsld", contents, gcl));
+        assertEquals("Second class should have come from the cache", 1, cache.getCompileCount());
+    }
+
+    private void assertScriptRuns(Class<?> scriptClass) throws Exception {
+        ClassLoader loader = scriptClass.getClassLoader();
+        assertTrue("Script should be loaded by its own loader, but was " + loader, loader instanceof ScriptClassLoader);
+        assertSame("Inner class should be loaded by the loader of the script", loader, loader.loadClass("Helper").getClassLoader());
+        assertEquals(7, ((Script) scriptClass.newInstance()).run());
+    }
+
+    private int countEntries() {
+        int count = 0;
+        for (File file : cacheDir.listFiles()) {
+            if (file.getName().endsWith(".classes")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void write(File file, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -823,7 +823,53 @@ public class DSLInferencingTests extends AbstractDSLInferencingTest {
         int end = start + "BAZ3".length();
         assertUnknownConfidence(contents, start, end, "Search", true);
     }
-    
+    // pointcuts after a setDelegateType are matched against the new delegate
+    public void testSetDelegateType10() throws Exception {
+        createDsls(
+                SET_DELEGATE_TYPE_DSLD + "\n" +
+                "contribute(currentType('Obj')) { property name: 'objProp', type: Long }");
+        String contents =
+                SET_DELEGATE_TYPE_SCRIPT +
+                "\"\".l { objProp }\n";
+        int start = contents.lastIndexOf("objProp");
+        int end = start + "objProp".length();
+        assertType(contents, start, end, "java.lang.Long", true);
+    }
+
+    public void testSubTypeOfCurrentType() throws Exception {
+        createDsls("contribute(currentType(subType('java.lang.CharSequence'))) { property name: 'seqProp', type: Long }");
+        String contents = "''.seqProp";
+        int start = contents.lastIndexOf("seqProp");
+        int end = start + "seqProp".length();
+        assertType(contents, start, end, "java.lang.Long", true);
+    }
+
+    public void testCurrentIdentifierAndCurrentType() throws Exception {
+        createDsls("contribute(currentIdentifier('idProp') & currentType(String)) { property name: 'idProp', type: Long }");
+        String contents = "''.idProp\n" +
+                "1.idProp";
+        int start = contents.indexOf("idProp");
+        int end = start + "idProp".length();
+        assertType(contents, start, end, "java.lang.Long", true);
+        start = contents.lastIndexOf("idProp");
+        end = start + "idProp".length();
+        assertUnknownConfidence(contents, start, end, "java.lang.Integer", true);
+    }
+
+    // contributions that depend on the current identifier must not be reused for other identifiers
+    public void testCurrentIdentifierSameReceiver() throws Exception {
+        createDsls("contribute(currentType(String) & currentIdentifier('aaa')) { property name: 'aaa', type: Long }\n" +
+                "contribute(currentType(String) & currentIdentifier('bbb')) { property name: 'bbb', type: Double }");
+        String contents = "''.aaa\n" +
+                "''.bbb";
+        int start = contents.indexOf("aaa");
+        int end = start + "aaa".length();
+        assertType(contents, start, end, "java.lang.Long", true);
+        start = contents.indexOf("bbb");
+        end = start + "bbb".length();
+        assertType(contents, start, end, "java.lang.Double", true);
+    }
+
     // GRECLIPSE-1458
     public void testMultiProject() throws Exception {
         IPath otherPath = env.addProject("Other", "1.5");
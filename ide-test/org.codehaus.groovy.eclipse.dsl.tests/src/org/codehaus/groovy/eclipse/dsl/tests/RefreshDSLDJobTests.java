@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.tests;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.codehaus.groovy.eclipse.dsl.DSLDStore;
+import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
+import org.codehaus.groovy.eclipse.dsl.RefreshDSLDJob;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.FindFieldPointcut;
+import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+
+/**
+ * Tests that DSLD refreshes only scan and execute what has changed since the last refresh, and that canceled refreshes leave
+ * the store as it was
+ *
+ * @created Oct 17, 2013
+ */
+public class RefreshDSLDJobTests extends AbstractDSLInferencingTest {
+
+    public static Test suite() {
+        return new TestSuite(RefreshDSLDJobTests.class);
+    }
+
+    public RefreshDSLDJobTests(String name) {
+        super(name);
+    }
+
+    /**
+     * Cancels the refresh once the scripts of the projects have been found, before any of them are executed
+     */
+    private static class CancelAfterScanMonitor extends NullProgressMonitor {
+        @Override
+        public void worked(int work) {
+            setCanceled(true);
+        }
+    }
+
+    public void testUnchangedJarNotRescanned() throws Exception {
+        addJarToProject("simple_dsld.jar");
+        env.fullBuild();
+        IPackageFragmentRoot root = JavaCore.create(project).getPackageFragmentRoot(findExternalFilePath("simple_dsld.jar"));
+        IStorage storage = (IStorage) root.getPackageFragment("dsld").getNonJavaResources()[0];
+
+        int scans = RefreshDSLDJob.getArchiveScanCount();
+        refresh(new NullProgressMonitor());
+        assertTrue("New jar should have been scanned", RefreshDSLDJob.getArchiveScanCount() > scans);
+        Set<IPointcut> pointcuts = getPointcuts(storage);
+        assertEquals(1, pointcuts.size());
+
+        scans = RefreshDSLDJob.getArchiveScanCount();
+        refresh(new NullProgressMonitor());
+        assertEquals("Unchanged jars should not have been scanned again", scans, RefreshDSLDJob.getArchiveScanCount());
+        assertEquals(1, getStore().getAllContextKeys().length);
+        assertSameElements("Script of the unchanged jar should not have been executed again", pointcuts, getPointcuts(storage));
+    }
+
+    public void testChangedScriptReplacesOnlyItsContributions() throws Exception {
+        createDsls("currentType().accept { }", "currentType().accept { }");
+        refresh(new NullProgressMonitor());
+        Set<IPointcut> unchanged = getPointcuts("dsl1.dsld");
+        Set<IPointcut> changed = getPointcuts("dsl0.dsld");
+
+        createDsls("fields().accept { }");
+        refresh(new NullProgressMonitor());
+        assertSameElements("Unchanged script should not have been executed again", unchanged, getPointcuts("dsl1.dsld"));
+        Set<IPointcut> replaced = getPointcuts("dsl0.dsld");
+        assertEquals(1, replaced.size());
+        assertTrue("Changed script should have replaced its contributions: " + replaced,
+                replaced.iterator().next() instanceof FindFieldPointcut);
+        assertFalse(replaced.containsAll(changed));
+        assertEquals(2, getStore().getAllContextKeys().length);
+    }
+
+    public void testRemovedScriptPurgedOnCommit() throws Exception {
+        createDsls("currentType().accept { }", "fields().accept { }");
+        refresh(new NullProgressMonitor());
+        Set<IPointcut> kept = getPointcuts("dsl0.dsld");
+
+        deleteDslFile(1);
+        assertEquals(IStatus.CANCEL, refresh(new CancelAfterScanMonitor()).getSeverity());
+        assertEquals("Removed script should only be purged when the refresh completes", 2, getStore().getAllContextKeys().length);
+        assertNotNull(getPointcuts("dsl1.dsld"));
+
+        refresh(new NullProgressMonitor());
+        assertEquals(1, getStore().getAllContextKeys().length);
+        assertNull("Removed script should have been purged", getPointcuts("dsl1.dsld"));
+        assertSameElements("Remaining script should not have been executed again", kept, getPointcuts("dsl0.dsld"));
+    }
+
+    public void testCanceledRefreshKeepsContributions() throws Exception {
+        createDsls("currentType().accept { }", "currentType().accept { }");
+        refresh(new NullProgressMonitor());
+        Set<IPointcut> before0 = getPointcuts("dsl0.dsld");
+        Set<IPointcut> before1 = getPointcuts("dsl1.dsld");
+
+        createDsls("fields().accept { }");
+        assertEquals(IStatus.CANCEL, refresh(new CancelAfterScanMonitor()).getSeverity());
+        assertSameElements("Canceled refresh should have kept the contributions", before0, getPointcuts("dsl0.dsld"));
+        assertSameElements("Canceled refresh should have kept the contributions", before1, getPointcuts("dsl1.dsld"));
+
+        // the change is still picked up by the next refresh
+        refresh(new NullProgressMonitor());
+        Set<IPointcut> after0 = getPointcuts("dsl0.dsld");
+        assertEquals(1, after0.size());
+        assertTrue("Changed script should have been executed: " + after0, after0.iterator().next() instanceof FindFieldPointcut);
+        assertSameElements("Unchanged script should not have been executed again", before1, getPointcuts("dsl1.dsld"));
+    }
+
+    private IStatus refresh(IProgressMonitor monitor) {
+        return new RefreshDSLDJob(project).run(monitor);
+    }
+
+    private DSLDStore getStore() {
+        return GroovyDSLCoreActivator.getDefault().getContextStoreManager().getDSLDStore(project);
+    }
+
+    private Set<IPointcut> getPointcuts(String fileName) {
+        return getPointcuts(project.getFile(fileName));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<IPointcut> getPointcuts(IStorage storage) {
+        Set<IPointcut> pointcuts = ((Map<IStorage, Set<IPointcut>>) ReflectionUtils.getPrivateField(DSLDStore.class,
+                "keyContextMap", getStore())).get(storage);
+        return pointcuts == null ? null : new HashSet<IPointcut>(pointcuts);
+    }
+
+    private void assertSameElements(String message, Set<IPointcut> expected, Set<IPointcut> actual) {
+        assertNotNull(message, actual);
+        assertFalse(message, expected.isEmpty());
+        assertEquals(message, expected.size(), actual.size());
+        // pointcuts do not override equals, so these are the same instances
+        assertTrue(message + "\nExpected: " + expected + "\nActual: " + actual, actual.containsAll(expected));
+    }
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.codehaus.groovy.eclipse.dsl.DSLDStore;
+import org.codehaus.groovy.eclipse.dsl.DSLPreferences;
+import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
+import org.codehaus.groovy.eclipse.dsl.RefreshDSLDJob;
+import org.codehaus.groovy.eclipse.dsl.contributions.IContributionGroup;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
+import org.codehaus.groovy.eclipse.dsl.script.DSLDScriptExecutor;
+import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
+
+/**
+ * Tests that a DSLD script from a library is executed once for all the projects that have it on their classpath,
+ * while each project keeps its own contribution groups and disabled scripts
+ *
+ * @created Oct 17, 2013
+ */
+public class SharedDSLDScriptsTests extends AbstractDSLInferencingTest {
+
+    private static final String CONTENTS = "class Foo { }\nnew Foo().fooProperty";
+
+    public static Test suite() {
+        return new TestSuite(SharedDSLDScriptsTests.class);
+    }
+
+    public SharedDSLDScriptsTests(String name) {
+        super(name);
+    }
+
+    private IProject other;
+
+    private File jar;
+
+    private String scriptContents;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        IPath otherPath = env.addProject("Other");
+        env.addGroovyNature("Other");
+        env.addExternalJars(otherPath, Util.getJavaClassLibs());
+        env.addGroovyJars(otherPath);
+        env.removePackageFragmentRoot(otherPath, "");
+        env.addPackageFragmentRoot(otherPath, "src");
+        env.setOutputFolder(otherPath, "bin");
+        other = env.getProject("Other");
+        GroovyDSLCoreActivator.getDefault().getContainerListener().ignoreProject(other);
+
+        // scripts with the same name and contents are shared, so make sure that no other test has executed this one
+        scriptContents = "// " + getName() + " " + System.nanoTime() + "\n" +
+                "currentType('Foo').accept {\n" +
+                "    property name : 'fooProperty'\n" +
+                "}\n";
+        jar = File.createTempFile("shared_dsld", ".jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("dsld/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("dsld/shared.dsld"));
+            out.write(scriptContents.getBytes("UTF-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        env.addExternalJar(project.getFullPath(), jar.getAbsolutePath());
+        env.addExternalJar(other.getFullPath(), jar.getAbsolutePath());
+        env.fullBuild();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DSLPreferences.setDisabledScripts(new String[0]);
+        env.removeProject(other.getFullPath());
+        super.tearDown();
+        jar.delete();
+    }
+
+    public void testSecondProjectReusesPointcuts() throws Exception {
+        refresh(project);
+        assertTrue("Script from the jar should be shared", RefreshDSLDJob.isShared("shared.dsld", getScriptContents()));
+        refresh(other);
+
+        Map<IPointcut, List<IContributionGroup>> contributions = getContributions(project);
+        Map<IPointcut, List<IContributionGroup>> otherContributions = getContributions(other);
+        assertEquals(1, contributions.size());
+        // pointcuts do not override equals, so these are the same instances
+        assertEquals("Second project should have reused the pointcuts", contributions.keySet(), otherContributions.keySet());
+        for (Map.Entry<IPointcut, List<IContributionGroup>> entry : contributions.entrySet()) {
+            List<IContributionGroup> groups = entry.getValue();
+            List<IContributionGroup> otherGroups = otherContributions.get(entry.getKey());
+            assertEquals(1, groups.size());
+            assertEquals(groups.size(), otherGroups.size());
+            for (int i = 0; i < groups.size(); i++) {
+                assertNotSame("Second project should have its own contribution groups", groups.get(i), otherGroups.get(i));
+                assertEquals(groups.get(i).getClass(), otherGroups.get(i).getClass());
+            }
+        }
+
+        // and the copied groups contribute the same as the ones of the script
+        assertContributed(project, true);
+        assertContributed(other, true);
+    }
+
+    public void testDisabledInOneProjectOnly() throws Exception {
+        refresh(project);
+        refresh(other);
+        assertContributed(project, true);
+        assertContributed(other, true);
+
+        DSLPreferences.setDisabledScripts(new String[] { DSLDStore.toUniqueString(getScript(other)) });
+        assertContributed(project, true);
+        assertContributed(other, false);
+
+        DSLPreferences.setDisabledScripts(new String[] { DSLDStore.toUniqueString(getScript(project)) });
+        assertContributed(project, false);
+        assertContributed(other, true);
+    }
+
+    public void testUnusedScriptsReleased() throws Exception {
+        refresh(project);
+        refresh(other);
+        String contents = getScriptContents();
+        assertTrue(RefreshDSLDJob.isShared("shared.dsld", contents));
+
+        env.removeExternalJar(project.getFullPath(), new Path(jar.getAbsolutePath()));
+        env.fullBuild();
+        refresh(project);
+        assertEquals(0, getContributions(project).size());
+        assertTrue("Script is still used by the other project", RefreshDSLDJob.isShared("shared.dsld", contents));
+
+        env.removeExternalJar(other.getFullPath(), new Path(jar.getAbsolutePath()));
+        env.fullBuild();
+        refresh(other);
+        assertEquals(0, getContributions(other).size());
+        assertFalse("Script is no longer used by any project", RefreshDSLDJob.isShared("shared.dsld", contents));
+    }
+
+    private void refresh(IProject theProject) {
+        new RefreshDSLDJob(theProject).run(new NullProgressMonitor());
+    }
+
+    private IStorage getScript(IProject theProject) throws Exception {
+        IPackageFragmentRoot root = JavaCore.create(theProject).getPackageFragmentRoot(jar.getAbsolutePath());
+        return (IStorage) root.getPackageFragment("dsld").getNonJavaResources()[0];
+    }
+
+    private String getScriptContents() throws Exception {
+        // read the same way as the refresh does
+        return new DSLDScriptExecutor(JavaCore.create(project)).getContents(getScript(project));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<IPointcut, List<IContributionGroup>> getContributions(IProject theProject) throws Exception {
+        DSLDStore store = GroovyDSLCoreActivator.getDefault().getContextStoreManager().getDSLDStore(theProject);
+        Set<IPointcut> pointcuts = ((Map<IStorage, Set<IPointcut>>) ReflectionUtils.getPrivateField(DSLDStore.class,
+                "keyContextMap", store)).get(getScript(theProject));
+        Map<IPointcut, List<IContributionGroup>> groups = (Map<IPointcut, List<IContributionGroup>>) ReflectionUtils
+                .getPrivateField(DSLDStore.class, "pointcutContributionMap", store);
+        Map<IPointcut, List<IContributionGroup>> contributions = new LinkedHashMap<IPointcut, List<IContributionGroup>>();
+        if (pointcuts != null) {
+            for (IPointcut pointcut : pointcuts) {
+                contributions.put(pointcut, groups.get(pointcut));
+            }
+        }
+        return contributions;
+    }
+
+    private void assertContributed(IProject theProject, boolean expected) {
+        IPath path = env.addGroovyClass(theProject.getFolder("src").getFullPath(), "Search", CONTENTS);
+        fullBuild(theProject.getFullPath());
+        GroovyCompilationUnit unit = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(env.getWorkspace().getRoot().getFile(path));
+        int start = CONTENTS.lastIndexOf("fooProperty");
+        SearchRequestor requestor = doVisit(start, start + "fooProperty".length(), unit, false);
+        assertNotNull("Did not find expected ASTNode", requestor.node);
+        if (expected) {
+            assertEquals("Script should contribute to " + theProject.getName(), "Foo", requestor.getDeclaringTypeName());
+            assertFalse("Script should contribute to " + theProject.getName(), requestor.result.confidence == TypeConfidence.UNKNOWN);
+        } else {
+            assertEquals("Script should not contribute to " + theProject.getName(), TypeConfidence.UNKNOWN, requestor.result.confidence);
+        }
+    }
+}
@@ -119,6 +119,97 @@ public class GroovyDocumentScannerTests extends TestCase {
         scanner.dispose();
     }
 
+    public void testIncrementalEdits() throws Exception {
+        String text =
+            "class Foo {\n" +
+            "    def a = 1\n" +
+            "    def b = \"x${a}y\"\n" +
+            "    def c = [1,\n" +
+            "        2]\n" +
+            "    def d = a / 2 / 3\n" +
+            "}\n";
+        makeEditor(text);
+
+        IDocument doc = getDocument();
+        GroovyDocumentScanner scanner = new GroovyDocumentScanner(doc);
+        assertSameTokens(scanner);
+
+        // change a token
+        doc.replace(doc.get().indexOf("1\n"), 1, "42");
+        assertSameTokens(scanner);
+
+        // add a line
+        doc.replace(doc.get().indexOf("    def b"), 0, "    def z = a\n");
+        assertSameTokens(scanner);
+
+        // newlines are not significant inside parentheses
+        doc.replace(doc.get().indexOf("[1"), 1, "foo(");
+        doc.replace(doc.get().indexOf("2]"), 2, "2)");
+        assertSameTokens(scanner);
+
+        // the division becomes a regular expression and back
+        doc.replace(doc.get().indexOf("a / 2"), 1, "=");
+        assertSameTokens(scanner);
+        doc.replace(doc.get().indexOf("= / 2"), 1, "a");
+        assertSameTokens(scanner);
+
+        // change a string
+        doc.replace(doc.get().indexOf("y\""), 1, "${b}z");
+        assertSameTokens(scanner);
+
+        // remove lines
+        doc.replace(doc.get().indexOf("    def z"), doc.get().indexOf("    def d") - doc.get().indexOf("    def z"), "");
+        assertSameTokens(scanner);
+
+        // edit the start and the end of the document
+        doc.replace(0, 0, "package p\n");
+        assertSameTokens(scanner);
+        doc.replace(doc.getLength() - 1, 1, "\nclass Bar {}");
+        assertSameTokens(scanner);
+        scanner.dispose();
+    }
+
+    public void testEditsBeforeAndAfterScannedTokens() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("def a").append(i).append(" = foo(").append(i).append(")\n");
+        }
+        makeEditor(text.toString());
+
+        IDocument doc = getDocument();
+        GroovyDocumentScanner scanner = new GroovyDocumentScanner(doc);
+        List<Token> tokens = scanner.getLineTokens(1);
+        assertTokens(new String[] { "def", "a1", "=", "foo", "(", "1", ")", "<newline>" }, tokens);
+
+        // after the scanned tokens
+        doc.replace(doc.getLineOffset(100), 0, "def b = 0\n");
+        tokens = scanner.getLineTokens(100);
+        assertTokens(new String[] { "def", "b", "=", "0", "<newline>" }, tokens);
+
+        // before the scanned tokens
+        doc.replace(doc.getLineOffset(50), 0, "\n");
+        doc.replace(doc.getLineOffset(2), 0, "def c = 0;");
+        assertSameTokens(scanner);
+        scanner.dispose();
+    }
+
+    private void assertSameTokens(GroovyDocumentScanner scanner) throws BadLocationException {
+        GroovyDocumentScanner fresh = new GroovyDocumentScanner(new Document(getDocument().get()));
+        List<Token> expected = fresh.getTokens(0, getDocument().getLength() + 1);
+        List<Token> actual = scanner.getTokens(0, getDocument().getLength() + 1);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Token e = expected.get(i);
+            Token a = actual.get(i);
+            String message = "token " + i + ": " + e;
+            assertEquals(message, e.getType(), a.getType());
+            assertEquals(message, e.getText(), a.getText());
+            assertEquals(message, fresh.getOffset(e), scanner.getOffset(a));
+            assertEquals(message, fresh.getEnd(e), scanner.getEnd(a));
+        }
+        fresh.dispose();
+    }
+
     private IDocument getDocument() {
         return editDoc;
     }
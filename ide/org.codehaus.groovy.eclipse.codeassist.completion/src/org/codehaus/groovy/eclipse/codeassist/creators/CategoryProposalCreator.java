@@ -19,7 +19,6 @@ package org.codehaus.groovy.eclipse.codeassist.creators;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -54,12 +53,30 @@ public class CategoryProposalCreator extends AbstractProposalCreator {
     private List<IGroovyProposal> findAllProposals(Set<String> set, Set<ClassNode> categories, String prefix,
             ClassNode declaringClass) {
         DGMProposalFilter filter = new DGMProposalFilter();
-        List<IGroovyProposal> groovyProposals = new LinkedList<IGroovyProposal>();
+        List<IGroovyProposal> groovyProposals = new ArrayList<IGroovyProposal>();
         Set<String> existingFieldProposals = new HashSet<String>();
         Map<String, List<MethodNode>> existingMethodProposals = new HashMap<String, List<MethodNode>>();
+
+        // the default categories come first and are looked up in a prebuilt table
+        boolean useDefaultTable = categories.containsAll(VariableScope.ALL_DEFAULT_CATEGORIES);
+        if (useDefaultTable) {
+            DefaultCategoryProposalTable table = DefaultCategoryProposalTable.getTable(filter.getFilteredDGMs());
+            for (DefaultCategoryProposalTable.Entry entry : table.findCandidates(set, prefix)) {
+                if (entry.isProperty) {
+                    addFieldProposal(entry.method, declaringClass, groovyProposals, existingFieldProposals);
+                } else {
+                    addMethodProposal(entry.method, groovyProposals, existingMethodProposals);
+                }
+            }
+        }
+
         for (ClassNode category : categories) {
-            List<MethodNode> allMethods = category.getAllDeclaredMethods();
             boolean isDGMCategory = isDGMCategory(category);
+            if (isDGMCategory && useDefaultTable) {
+                // already handled above
+                continue;
+            }
+            List<MethodNode> allMethods = category.getAllDeclaredMethods();
             for (MethodNode method : allMethods) {
                 // Check for DGMs filtered from preferences
                 if (isDGMCategory && filter.isFiltered(method)) {
@@ -71,26 +88,12 @@ public class CategoryProposalCreator extends AbstractProposalCreator {
                 if (method.isStatic() && method.isPublic()) {
                     Parameter[] params = method.getParameters();
                     if (ProposalUtils.looselyMatches(prefix, methodName)) {
-                        if (params != null && params.length > 0 && set.contains(params[0].getType().getName())
-                                && !dupMethod(method, existingMethodProposals)) {
-                            GroovyCategoryMethodProposal methodProposal = new GroovyCategoryMethodProposal(method);
-                            methodProposal.setRelevanceMultiplier(isInterestingType(method.getReturnType()) ? 101 : 1);
-                            groovyProposals.add(methodProposal);
-                            List<MethodNode> methodList = existingMethodProposals.get(methodName);
-                            if (methodList == null) {
-                                methodList = new ArrayList<MethodNode>(2);
-                                existingMethodProposals.put(methodName, methodList);
-                            }
-                            methodList.add(method);
+                        if (params != null && params.length > 0 && set.contains(params[0].getType().getName())) {
+                            addMethodProposal(method, groovyProposals, existingMethodProposals);
                         }
                     } else if (params.length == 1
-                            && findLooselyMatchedAccessorKind(prefix, methodName, true).isAccessorKind(method, true)
-                            && !existingFieldProposals.contains(methodName) && hasNoField(declaringClass, methodName)) {
-                        // add property variant of accessor name
-                        GroovyFieldProposal fieldProposal = new GroovyFieldProposal(createMockField(method));
-                        fieldProposal.setRelevanceMultiplier(1);
-                        groovyProposals.add(fieldProposal);
-                        existingFieldProposals.add(methodName);
+                            && findLooselyMatchedAccessorKind(prefix, methodName, true).isAccessorKind(method, true)) {
+                        addFieldProposal(method, declaringClass, groovyProposals, existingFieldProposals);
                     }
 
                 }
@@ -99,6 +102,33 @@ public class CategoryProposalCreator extends AbstractProposalCreator {
         return groovyProposals;
     }
 
+    private void addMethodProposal(MethodNode method, List<IGroovyProposal> groovyProposals,
+            Map<String, List<MethodNode>> existingMethodProposals) {
+        if (!dupMethod(method, existingMethodProposals)) {
+            GroovyCategoryMethodProposal methodProposal = new GroovyCategoryMethodProposal(method);
+            methodProposal.setRelevanceMultiplier(isInterestingType(method.getReturnType()) ? 101 : 1);
+            groovyProposals.add(methodProposal);
+            List<MethodNode> methodList = existingMethodProposals.get(method.getName());
+            if (methodList == null) {
+                methodList = new ArrayList<MethodNode>(2);
+                existingMethodProposals.put(method.getName(), methodList);
+            }
+            methodList.add(method);
+        }
+    }
+
+    private void addFieldProposal(MethodNode method, ClassNode declaringClass, List<IGroovyProposal> groovyProposals,
+            Set<String> existingFieldProposals) {
+        String methodName = method.getName();
+        if (!existingFieldProposals.contains(methodName) && hasNoField(declaringClass, methodName)) {
+            // add property variant of accessor name
+            GroovyFieldProposal fieldProposal = new GroovyFieldProposal(createMockField(method));
+            fieldProposal.setRelevanceMultiplier(1);
+            groovyProposals.add(fieldProposal);
+            existingFieldProposals.add(methodName);
+        }
+    }
+
     /**
      * Check thatthe new method hasn't already been added
      * We SHOULD be checking if this new method is more specific than the old
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codehaus.groovy.eclipse.codeassist.creators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.eclipse.codeassist.ProposalUtils;
+import org.eclipse.jdt.groovy.search.AccessorSupport;
+import org.eclipse.jdt.groovy.search.VariableScope;
+
+/**
+ * The completion candidates of the default categories (DGM and friends),
+ * built once and shared by all completion requests. Methods are indexed by
+ * the type name of their first parameter and sorted by name, so a request
+ * only looks at the methods of the receiver's super types that start with
+ * the first character of the prefix. Every prefix that
+ * {@link ProposalUtils#looselyMatches(String, String)} accepts starts with
+ * the first character of the name.
+ * <p>
+ * Accessors are also kept sorted by their property name. Like before, they
+ * are proposed as properties for any receiver type.
+ * <p>
+ * The table is rebuilt when the filtered DGMs are changed in the preferences
+ * or the default categories are replaced.
+ *
+ * @created Aug 8, 2013
+ */
+class DefaultCategoryProposalTable {
+
+    /**
+     * A method of a default category. The ordinal is the position of the
+     * method in the category methods, so that candidates can be processed in
+     * the same order as the categories would be searched.
+     */
+    static class Entry {
+        final MethodNode method;
+
+        // the method name, or the property name for accessors
+        final String name;
+
+        final boolean isProperty;
+
+        final int ordinal;
+
+        Entry(MethodNode method, String name, boolean isProperty, int ordinal) {
+            this.method = method;
+            this.name = name;
+            this.isProperty = isProperty;
+            this.ordinal = ordinal;
+        }
+    }
+
+    private static final Comparator<Entry> BY_NAME = new Comparator<Entry>() {
+        public int compare(Entry e1, Entry e2) {
+            return e1.name.compareTo(e2.name);
+        }
+    };
+
+    private static final Comparator<Entry> BY_ORDINAL = new Comparator<Entry>() {
+        public int compare(Entry e1, Entry e2) {
+            return e1.ordinal - e2.ordinal;
+        }
+    };
+
+    private static DefaultCategoryProposalTable table;
+
+    /**
+     * @param filteredDGMs the names of DGMs that must not be proposed
+     * @return the shared table for the current default categories
+     */
+    static synchronized DefaultCategoryProposalTable getTable(Set<String> filteredDGMs) {
+        if (table == null || table.categories != VariableScope.ALL_DEFAULT_CATEGORIES
+                || !table.filteredDGMs.equals(filteredDGMs)) {
+            table = new DefaultCategoryProposalTable(VariableScope.ALL_DEFAULT_CATEGORIES, filteredDGMs);
+        }
+        return table;
+    }
+
+    private final Set<ClassNode> categories;
+
+    private final Set<String> filteredDGMs;
+
+    // first parameter type name -> methods sorted by name
+    private final Map<String, Entry[]> methodsBySelfType;
+
+    // all accessors sorted by property name
+    private final Entry[] properties;
+
+    private DefaultCategoryProposalTable(Set<ClassNode> categories, Set<String> filteredDGMs) {
+        this.categories = categories;
+        this.filteredDGMs = filteredDGMs;
+
+        Map<String, List<Entry>> methods = new HashMap<String, List<Entry>>();
+        List<Entry> accessors = new ArrayList<Entry>();
+        int ordinal = 0;
+        for (ClassNode category : categories) {
+            for (MethodNode method : category.getAllDeclaredMethods()) {
+                ordinal++;
+                if (!method.isStatic() || !method.isPublic() || filteredDGMs.contains(method.getName())) {
+                    continue;
+                }
+                Parameter[] params = method.getParameters();
+                if (params == null || params.length == 0) {
+                    continue;
+                }
+                String selfTypeName = params[0].getType().getName();
+                List<Entry> selfTypeMethods = methods.get(selfTypeName);
+                if (selfTypeMethods == null) {
+                    selfTypeMethods = new ArrayList<Entry>();
+                    methods.put(selfTypeName, selfTypeMethods);
+                }
+                selfTypeMethods.add(new Entry(method, method.getName(), false, ordinal));
+
+                if (params.length == 1) {
+                    AccessorSupport accessor = AccessorSupport.create(method.getName(), true);
+                    if (accessor.isAccessor() && accessor.isAccessorKind(method, true)) {
+                        accessors.add(new Entry(method, ProposalUtils.createMockFieldName(method.getName()), true,
+                                ordinal));
+                    }
+                }
+            }
+        }
+
+        methodsBySelfType = new HashMap<String, Entry[]>(methods.size() * 2);
+        for (Map.Entry<String, List<Entry>> mapEntry : methods.entrySet()) {
+            methodsBySelfType.put(mapEntry.getKey(), sortByName(mapEntry.getValue()));
+        }
+        properties = sortByName(accessors);
+    }
+
+    /**
+     * Finds the candidates for a completion, in the order the categories
+     * would be searched in. These are the methods that apply to one of the
+     * given types and loosely match the prefix, and the accessors whose
+     * property name, but not method name, loosely matches the prefix.
+     *
+     * @param selfTypeNames the names of the receiver type and all its supers
+     */
+    List<Entry> findCandidates(Set<String> selfTypeNames, String prefix) {
+        List<Entry> candidates = new ArrayList<Entry>();
+        for (String selfTypeName : selfTypeNames) {
+            Entry[] methods = methodsBySelfType.get(selfTypeName);
+            if (methods != null) {
+                addMatching(methods, prefix, candidates);
+            }
+        }
+        addMatching(properties, prefix, candidates);
+        Collections.sort(candidates, BY_ORDINAL);
+        return candidates;
+    }
+
+    private static void addMatching(Entry[] entries, String prefix, List<Entry> candidates) {
+        int start = 0;
+        int end = entries.length;
+        if (prefix.length() > 0) {
+            char first = prefix.charAt(0);
+            start = firstIndexOf(entries, String.valueOf(first));
+            end = first == Character.MAX_VALUE ? entries.length : firstIndexOf(entries, String.valueOf((char) (first + 1)));
+        }
+        for (int i = start; i < end; i++) {
+            Entry entry = entries[i];
+            if (ProposalUtils.looselyMatches(prefix, entry.name)
+                    && (!entry.isProperty || !ProposalUtils.looselyMatches(prefix, entry.method.getName()))) {
+                candidates.add(entry);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first entry whose name is not less than the
+     *         given name
+     */
+    private static int firstIndexOf(Entry[] entries, String name) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid].name.compareTo(name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Entry[] sortByName(List<Entry> entries) {
+        Entry[] array = entries.toArray(new Entry[entries.size()]);
+        Arrays.sort(array, BY_NAME);
+        return array;
+    }
+}
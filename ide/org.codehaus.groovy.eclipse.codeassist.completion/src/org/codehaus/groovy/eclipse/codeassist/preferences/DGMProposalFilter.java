@@ -40,6 +40,10 @@ public class DGMProposalFilter {
         return filteredDGMs.contains(proposal.getName());
     }
 
+    public Set<String> getFilteredDGMs() {
+        return filteredDGMs;
+    }
+
     public void refreshFilter() {
         filteredDGMs = GroovyContentAssistActivator.getDefault().getFilteredDGMs();
     }
@@ -342,7 +342,12 @@ public class StatementAndExpressionCompletionProcessor extends
 
         // if completion node is null, then it is likely because of a syntax error
         if (completionNode != null) {
-            visitor.visitCompilationUnit(requestor);
+            if (completionNode.getEnd() > 0) {
+                // only the members enclosing the completion node are interesting
+                visitor.visitCompilationUnit(requestor, completionNode.getStart(), completionNode.getLength());
+            } else {
+                visitor.visitCompilationUnit(requestor);
+            }
         }
         ClassNode completionType;
         boolean isStatic;
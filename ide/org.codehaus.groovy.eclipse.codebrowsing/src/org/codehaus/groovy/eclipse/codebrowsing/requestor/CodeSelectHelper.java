@@ -62,7 +62,7 @@ public class CodeSelectHelper implements ICodeSelectHelper {
                     
                     CodeSelectRequestor requestor = createRequestor(unit, nodeToLookFor);
                     TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
-                    visitor.visitCompilationUnit(requestor);
+                    visitor.visitCompilationUnit(requestor, start, length);
                     return requestor.getRequestedElement() != null ? new IJavaElement[] { requestor.getRequestedElement() } : new IJavaElement[0];
                 }
             } finally {
@@ -104,7 +104,7 @@ public class CodeSelectHelper implements ICodeSelectHelper {
                     
                     CodeSelectRequestor requestor = createRequestor(unit, nodeToLookFor);
                     TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
-                    visitor.visitCompilationUnit(requestor);
+                    visitor.visitCompilationUnit(requestor, start, length);
                     return requestor.getRequestedNode();
                 }
             } finally {
@@ -47,7 +47,7 @@ import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
 import org.eclipse.jdt.groovy.search.AccessorSupport;
 import org.eclipse.jdt.groovy.search.GenericsMapper;
-import org.eclipse.jdt.groovy.search.ITypeRequestor;
+import org.eclipse.jdt.groovy.search.IReplayableRequestor;
 import org.eclipse.jdt.groovy.search.TypeLookupResult;
 import org.eclipse.jdt.groovy.search.VariableScope;
 import org.eclipse.jdt.internal.core.JavaElement;
@@ -60,7 +60,7 @@ import org.eclipse.jdt.internal.core.util.Util;
  * @created Nov 4, 2009
  *
  */
-public class CodeSelectRequestor implements ITypeRequestor {
+public class CodeSelectRequestor implements IReplayableRequestor {
     
     private final ASTNode nodeToLookFor;
     
@@ -17,6 +17,8 @@
  */
 package org.codehaus.groovy.eclipse.core.inference;
 
+import java.util.Set;
+
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotationNode;
 import org.codehaus.groovy.ast.ClassNode;
@@ -32,7 +34,7 @@ import org.codehaus.groovy.ast.expr.VariableExpression;
 import org.codehaus.groovy.eclipse.core.compiler.CompilerUtils;
 import org.codehaus.groovy.transform.stc.StaticTypesMarker;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
-import org.eclipse.jdt.groovy.search.ITypeLookup;
+import org.eclipse.jdt.groovy.search.ISelectiveTypeLookup;
 import org.eclipse.jdt.groovy.search.TypeLookupResult;
 import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
 import org.eclipse.jdt.groovy.search.VariableScope;
@@ -42,7 +44,7 @@ import org.eclipse.jdt.groovy.search.VariableScope;
  * @author Andrew Eisenberg
  * @created 2013-02-25
  */
-public class STCTypeLookup implements ITypeLookup {
+public class STCTypeLookup implements ISelectiveTypeLookup {
 
     // only enabled for Groovy 2.1 or greater
     private static final boolean isEnabled = CompilerUtils.getActiveGroovyBundle().getVersion().getMajor() >= 2
@@ -50,6 +52,14 @@ public class STCTypeLookup implements ITypeLookup {
 
     public void initialize(GroovyCompilationUnit unit, VariableScope topLevelScope) {}
 
+    public boolean handlesExpressionType(Class<? extends Expression> expressionType) {
+        return isEnabled;
+    }
+
+    public Set<String> getNamesOfInterest() {
+        return null;
+    }
+
     public TypeLookupResult lookupType(Expression node, VariableScope scope, ClassNode objectExpressionType) {
         if (!isEnabled) {
             return null;
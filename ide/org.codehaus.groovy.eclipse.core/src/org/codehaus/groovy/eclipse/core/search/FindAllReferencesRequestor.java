@@ -33,7 +33,7 @@ import org.codehaus.jdt.groovy.internal.compiler.ast.JDTClassNode;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTMethodNode;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.groovy.search.EqualityVisitor;
-import org.eclipse.jdt.groovy.search.ITypeRequestor;
+import org.eclipse.jdt.groovy.search.IReplayableRequestor;
 import org.eclipse.jdt.groovy.search.TypeLookupResult;
 
 /**
@@ -42,7 +42,7 @@ import org.eclipse.jdt.groovy.search.TypeLookupResult;
  * @author andrew
  * @created Dec 31, 2010
  */
-public class FindAllReferencesRequestor implements ITypeRequestor {
+public class FindAllReferencesRequestor implements IReplayableRequestor {
 
     private final AnnotatedNode declaration;
 
@@ -11,7 +11,6 @@
 package org.codehaus.groovy.eclipse.dsl;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -31,7 +30,8 @@ import org.eclipse.core.resources.IStorage;
 import org.eclipse.jdt.internal.core.NonJavaResource;
 
 /**
- * Stores the pointcuts for a single project
+ * Stores the pointcuts for a single project.
+ * Scripts may be executed concurrently, so all changes are synchronized.
  * @author andrew
  * @created Nov 17, 2010
  */
@@ -39,13 +39,15 @@ public class DSLDStore {
 
     private final Map<IPointcut, List<IContributionGroup>> pointcutContributionMap;  // maps pointcuts to their contributors
     private final Map<IStorage, Set<IPointcut>> keyContextMap;  // maps unique keys (such as script names) to all the pointcuts that they produce
+    private volatile PointcutIndex index;  // built lazily and discarded whenever the pointcuts change
     public DSLDStore() {
         // use linked hash map because order matters
         pointcutContributionMap = new LinkedHashMap<IPointcut, List<IContributionGroup>>();
         keyContextMap = new HashMap<IStorage, Set<IPointcut>>();
     }
     
-    public void addContributionGroup(IPointcut pointcut, IContributionGroup contribution) {
+    public synchronized void addContributionGroup(IPointcut pointcut, IContributionGroup contribution) {
+        index = null;
         List<IContributionGroup> contributions = pointcutContributionMap.get(pointcut);
         if (contributions == null) {
             contributions = new ArrayList<IContributionGroup>();
@@ -63,10 +65,11 @@ public class DSLDStore {
     }
     
     
-    public void purgeIdentifier(IStorage identifier) {
+    public synchronized void purgeIdentifier(IStorage identifier) {
         if (GroovyLogManager.manager.hasLoggers()) {
             GroovyLogManager.manager.log(TraceCategory.DSL, "Purging pointcut for DSL file " + identifier);
         }
+        index = null;
         Set<IPointcut> pointcuts = keyContextMap.remove(identifier);
         if (pointcuts != null) {
             for (IPointcut pointcut : pointcuts) {
@@ -75,7 +78,8 @@ public class DSLDStore {
         }
     }
     
-    public void purgeAll() {
+    public synchronized void purgeAll() {
+        index = null;
         keyContextMap.clear();
         pointcutContributionMap.clear();
     }
@@ -89,7 +93,7 @@ public class DSLDStore {
      * @param patern the pattern to match against
      * @return a new {@link DSLDStore} containing only matches against the pattern
      */
-    public DSLDStore createSubStore(GroovyDSLDContext pattern) {
+    public synchronized DSLDStore createSubStore(GroovyDSLDContext pattern) {
         DSLDStore subStore = new DSLDStore();
         for (Entry<IPointcut, List<IContributionGroup>> entry : pointcutContributionMap.entrySet()) {
             if (entry.getKey().fastMatch(pattern)) {
@@ -99,7 +103,8 @@ public class DSLDStore {
         return subStore;
     }
 
-    public void addAllContributions(IPointcut pointcut, List<IContributionGroup> contributions) {
+    public synchronized void addAllContributions(IPointcut pointcut, List<IContributionGroup> contributions) {
+        index = null;
         List<IContributionGroup> existing = pointcutContributionMap.get(pointcut);
         if (existing == null) {
             pointcutContributionMap.put(pointcut, contributions);
@@ -107,7 +112,46 @@ public class DSLDStore {
             existing.addAll(contributions);
         }
     }
-    public void addAllContexts(List<IPointcut> pointcuts, IContributionGroup contribution) {
+
+    /**
+     * @return the pointcuts produced by the given script and their contribution groups, in the order that they were added
+     */
+    synchronized Map<IPointcut, List<IContributionGroup>> getContributions(IStorage identifier) {
+        Map<IPointcut, List<IContributionGroup>> contributions = new LinkedHashMap<IPointcut, List<IContributionGroup>>();
+        Set<IPointcut> pointcuts = keyContextMap.get(identifier);
+        if (pointcuts != null) {
+            for (Entry<IPointcut, List<IContributionGroup>> entry : pointcutContributionMap.entrySet()) {
+                if (pointcuts.contains(entry.getKey())) {
+                    contributions.put(entry.getKey(), new ArrayList<IContributionGroup>(entry.getValue()));
+                }
+            }
+        }
+        return contributions;
+    }
+
+    /**
+     * Adds pointcuts that were produced by executing the given script for another store.
+     * The pointcuts and groups are shared, but are purged from this store through its own identifier.
+     */
+    synchronized void addContributions(IStorage identifier, Map<IPointcut, List<IContributionGroup>> contributions) {
+        index = null;
+        Set<IPointcut> pointcuts = keyContextMap.get(identifier);
+        if (pointcuts == null) {
+            pointcuts = new HashSet<IPointcut>();
+            keyContextMap.put(identifier, pointcuts);
+        }
+        for (Entry<IPointcut, List<IContributionGroup>> entry : contributions.entrySet()) {
+            List<IContributionGroup> existing = pointcutContributionMap.get(entry.getKey());
+            if (existing == null) {
+                pointcutContributionMap.put(entry.getKey(), new ArrayList<IContributionGroup>(entry.getValue()));
+            } else {
+                existing.addAll(entry.getValue());
+            }
+            pointcuts.add(entry.getKey());
+        }
+    }
+
+    public synchronized void addAllContexts(List<IPointcut> pointcuts, IContributionGroup contribution) {
         for (IPointcut pointcut : pointcuts) {
             addContributionGroup(pointcut, contribution);
         }
@@ -115,29 +159,27 @@ public class DSLDStore {
     
    
     /**
-     * Find all contributions for this pattern and this declaring type
+     * Find all contributions for this pattern and this declaring type.
+     * Only the pointcuts that may match the current type and context are evaluated.
      * @param pattern The pattern to match against
      * @param disabledScripts The set of scripts that are disabled and should be ignored
      * @return The set of contributions applicable for the pattern
      */
     public List<IContributionElement> findContributions(GroovyDSLDContext pattern, Set<String> disabledScripts) {
-        List<IContributionElement> elts = new ArrayList<IContributionElement>();
-        for (Entry<IPointcut, List<IContributionGroup>> entry : pointcutContributionMap.entrySet()) {
-            IPointcut pointcut = entry.getKey();
-            if (! disabledScripts.contains(DSLDStore.toUniqueString(pointcut.getContainerIdentifier()))) {
-                pattern.resetBinding();
-                Collection<?> results = pointcut.matches(pattern, pattern.getCurrentType());
-                if (results != null) {
-                    for (IContributionGroup group : entry.getValue()) {
-                        elts.addAll(group.getContributions(pattern, pattern.getCurrentBinding()));
-                    }
+        PointcutIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    current = new PointcutIndex(pointcutContributionMap, keyContextMap);
+                    index = current;
                 }
             }
         }
-        return elts;
+        return current.findContributions(pattern, disabledScripts);
     }
     
-    public IStorage[] getAllContextKeys() {
+    public synchronized IStorage[] getAllContextKeys() {
         return keyContextMap.keySet().toArray(new IStorage[0]);
     }
     
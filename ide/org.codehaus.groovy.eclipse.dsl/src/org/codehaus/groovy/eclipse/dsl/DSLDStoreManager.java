@@ -13,11 +13,11 @@ package org.codehaus.groovy.eclipse.dsl;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.jdt.groovy.model.GroovyNature;
 import org.eclipse.core.resources.IProject;
@@ -32,12 +32,12 @@ import org.eclipse.jdt.core.IJavaProject;
  */
 public class DSLDStoreManager {
     
-    private final Map<String, DSLDStore> projectDSLDMap;
+    private final ConcurrentMap<String, DSLDStore> projectDSLDMap;
     
     private final Set<String> inProgress = new HashSet<String>();
     
     public DSLDStoreManager() {
-        projectDSLDMap = new HashMap<String, DSLDStore>();
+        projectDSLDMap = new ConcurrentHashMap<String, DSLDStore>();
     }
     
     public DSLDStore getDSLDStore(IJavaProject project) {
@@ -50,8 +50,12 @@ public class DSLDStoreManager {
     public DSLDStore getDSLDStore(String projectName) {
         DSLDStore contextStore = projectDSLDMap.get(projectName);
         if (contextStore == null) {
-            contextStore = new DSLDStore();
-            projectDSLDMap.put(projectName, contextStore);
+            // stores may be requested concurrently while DSLDs are refreshed
+            DSLDStore newStore = new DSLDStore();
+            contextStore = projectDSLDMap.putIfAbsent(projectName, newStore);
+            if (contextStore == null) {
+                contextStore = newStore;
+            }
         }
         return contextStore;
     }
@@ -66,6 +70,7 @@ public class DSLDStoreManager {
     
     public void reset() {
         projectDSLDMap.clear();
+        SharedDSLDScripts.clear();
     }
 
     public boolean hasDSLDStoreFor(IProject project) {
@@ -93,14 +98,35 @@ public class DSLDStoreManager {
     }
     
     public void initialize(List<IProject> projects, boolean synchronous) {
+        initialize(projects, synchronous, false);
+    }
+    
+    /**
+     * Like {@link #initializeAll(boolean)}, but executes all scripts again, not only the ones that changed since the last refresh
+     */
+    public void recompileAll(boolean synchronous) {
+        if (GroovyDSLCoreActivator.getDefault().isDSLDDisabled()) {
+            return;
+        }
+        IProject[] allProjects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
+        recompile(allProjects, synchronous);
+    }
+    
+    /**
+     * Like {@link #initialize(IProject[], boolean)}, but executes all scripts again, not only the ones that changed since the last refresh
+     */
+    public void recompile(IProject[] projects, boolean synchronous) {
+        initialize(Arrays.asList(projects), synchronous, true);
+    }
+    
+    private void initialize(List<IProject> projects, boolean synchronous, boolean full) {
         List<IProject> groovyProjects = new ArrayList<IProject>(projects.size());
         for (IProject project : projects) {
             if (GroovyNature.hasGroovyNature(project)) {
                 groovyProjects.add(project);
             }
         }
-        @SuppressWarnings("deprecation")
-        Job refreshJob = new RefreshDSLDJob(groovyProjects);
+        Job refreshJob = new RefreshDSLDJob(groovyProjects, full);
         refreshJob.setPriority(synchronous ? Job.INTERACTIVE : Job.LONG);
         refreshJob.schedule();
         if (synchronous) {
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.eclipse.dsl.contributions.IContributionElement;
+import org.codehaus.groovy.eclipse.dsl.contributions.IContributionGroup;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.GroovyDSLDContext;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.AndPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.BindPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.CurrentIdentifierPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.CurrentTypePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingCallNamePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.SubTypePointcut;
+import org.eclipse.core.resources.IStorage;
+import org.eclipse.jdt.groovy.search.VariableScope.CallAndType;
+
+/**
+ * An index of the pointcuts in a {@link DSLDStore}. Each pointcut is keyed by a cheap condition that must hold for it to match,
+ * such as the name of the current type or the current identifier. A lookup only evaluates the pointcuts whose condition holds,
+ * plus those that have no such condition.
+ * <p>
+ * Pointcuts are always evaluated in the order that they were registered. An index is immutable and is discarded whenever its store
+ * changes.
+ *
+ * @created Jul 22, 2013
+ */
+class PointcutIndex {
+
+    private static enum Kind {
+        // in order of preference
+        CURRENT_TYPE, CURRENT_IDENTIFIER, ENCLOSING_CALL, SUPER_TYPE
+    }
+
+    /**
+     * A condition that must hold for a pointcut to match
+     */
+    private static class Discriminator {
+        final Kind kind;
+        final String key;
+
+        Discriminator(Kind kind, String key) {
+            this.kind = kind;
+            this.key = key;
+        }
+    }
+
+    private final IPointcut[] pointcuts;
+    private final List<List<IContributionGroup>> groups;
+    private final String[] scriptNames;
+
+    private final BitSet unindexed = new BitSet();
+    private final Map<Kind, Map<String, BitSet>> indexes = new HashMap<Kind, Map<String, BitSet>>();
+
+    /**
+     * @param keyContextMap the scripts of the store and their pointcuts. Pointcuts of shared scripts belong to several stores, so the
+     *        script of a pointcut in this store is looked up here rather than taken from the pointcut.
+     */
+    PointcutIndex(Map<IPointcut, List<IContributionGroup>> pointcutContributionMap, Map<IStorage, Set<IPointcut>> keyContextMap) {
+        Map<IPointcut, IStorage> identifiers = new HashMap<IPointcut, IStorage>();
+        for (Entry<IStorage, Set<IPointcut>> entry : keyContextMap.entrySet()) {
+            for (IPointcut pointcut : entry.getValue()) {
+                identifiers.put(pointcut, entry.getKey());
+            }
+        }
+        int size = pointcutContributionMap.size();
+        pointcuts = new IPointcut[size];
+        groups = new ArrayList<List<IContributionGroup>>(size);
+        scriptNames = new String[size];
+        for (Kind kind : Kind.values()) {
+            indexes.put(kind, new HashMap<String, BitSet>());
+        }
+
+        int i = 0;
+        for (Entry<IPointcut, List<IContributionGroup>> entry : pointcutContributionMap.entrySet()) {
+            IPointcut pointcut = entry.getKey();
+            pointcuts[i] = pointcut;
+            groups.add(entry.getValue());
+            IStorage identifier = identifiers.get(pointcut);
+            scriptNames[i] = DSLDStore.toUniqueString(identifier != null ? identifier : pointcut.getContainerIdentifier());
+
+            Discriminator discriminator = findDiscriminator(pointcut, true);
+            if (discriminator != null) {
+                Map<String, BitSet> index = indexes.get(discriminator.kind);
+                BitSet positions = index.get(discriminator.key);
+                if (positions == null) {
+                    positions = new BitSet();
+                    index.put(discriminator.key, positions);
+                }
+                positions.set(i);
+            } else {
+                unindexed.set(i);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Finds a condition that is necessary for the pointcut to match. Only pointcuts that must match for their enclosing pointcut to
+     * match are examined.
+     *
+     * @param toMatchIsCurrentType true iff the pointcut is matched against the current type
+     * @return the most selective condition found, or null if there is none
+     */
+    private static Discriminator findDiscriminator(IPointcut pointcut, boolean toMatchIsCurrentType) {
+        Object arg = pointcut.getFirstArgument();
+        if (pointcut instanceof CurrentTypePointcut) {
+            if (arg instanceof String) {
+                return new Discriminator(Kind.CURRENT_TYPE, (String) arg);
+            } else if (arg instanceof Class<?>) {
+                return new Discriminator(Kind.CURRENT_TYPE, ((Class<?>) arg).getName());
+            } else if (arg instanceof IPointcut) {
+                return findDiscriminator((IPointcut) arg, true);
+            }
+        } else if (pointcut instanceof SubTypePointcut) {
+            if (toMatchIsCurrentType) {
+                if (arg instanceof String) {
+                    return new Discriminator(Kind.SUPER_TYPE, (String) arg);
+                } else if (arg instanceof Class<?>) {
+                    return new Discriminator(Kind.SUPER_TYPE, ((Class<?>) arg).getName());
+                }
+            }
+        } else if (pointcut instanceof CurrentIdentifierPointcut) {
+            if (arg instanceof String) {
+                return new Discriminator(Kind.CURRENT_IDENTIFIER, (String) arg);
+            }
+        } else if (pointcut instanceof EnclosingCallNamePointcut) {
+            if (arg instanceof String) {
+                return new Discriminator(Kind.ENCLOSING_CALL, (String) arg);
+            }
+        } else if (pointcut instanceof AndPointcut) {
+            Discriminator best = null;
+            for (Object elt : pointcut.getArgumentValues()) {
+                if (elt instanceof IPointcut) {
+                    Discriminator candidate = findDiscriminator((IPointcut) elt, toMatchIsCurrentType);
+                    if (candidate != null && (best == null || candidate.kind.compareTo(best.kind) < 0)) {
+                        best = candidate;
+                    }
+                }
+            }
+            return best;
+        } else if (pointcut instanceof BindPointcut) {
+            if (arg instanceof IPointcut) {
+                return findDiscriminator((IPointcut) arg, toMatchIsCurrentType);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the positions of all pointcuts that may match in the given context
+     */
+    private BitSet findCandidates(GroovyDSLDContext pattern, ClassNode currentType) {
+        BitSet candidates = (BitSet) unindexed.clone();
+        if (currentType != null) {
+            addCandidates(Kind.CURRENT_TYPE, currentType.getName(), candidates);
+            for (Entry<String, BitSet> entry : indexes.get(Kind.SUPER_TYPE).entrySet()) {
+                if (pattern.matchesType(entry.getKey())) {
+                    candidates.or(entry.getValue());
+                }
+            }
+        }
+        if (pattern.getCurrentScope() != null) {
+            if (!indexes.get(Kind.CURRENT_IDENTIFIER).isEmpty()) {
+                ASTNode currentNode = pattern.getCurrentNode();
+                if (currentNode instanceof VariableExpression || currentNode instanceof ConstantExpression) {
+                    addCandidates(Kind.CURRENT_IDENTIFIER, currentNode.getText(), candidates);
+                }
+            }
+            if (!indexes.get(Kind.ENCLOSING_CALL).isEmpty()) {
+                List<CallAndType> enclosing = pattern.getCurrentScope().getAllEnclosingMethodCallExpressions();
+                if (enclosing != null) {
+                    for (CallAndType callAndType : enclosing) {
+                        addCandidates(Kind.ENCLOSING_CALL, callAndType.call.getMethodAsString(), candidates);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private void addCandidates(Kind kind, String key, BitSet candidates) {
+        if (key != null) {
+            BitSet positions = indexes.get(kind).get(key);
+            if (positions != null) {
+                candidates.or(positions);
+            }
+        }
+    }
+
+    /**
+     * @see DSLDStore#findContributions(GroovyDSLDContext, Set)
+     */
+    List<IContributionElement> findContributions(GroovyDSLDContext pattern, Set<String> disabledScripts) {
+        List<IContributionElement> elts = new ArrayList<IContributionElement>();
+        ClassNode currentType = pattern.getCurrentType();
+        BitSet candidates = findCandidates(pattern, currentType);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (!disabledScripts.contains(scriptNames[i])) {
+                pattern.resetBinding();
+                if (pointcuts[i].matches(pattern, currentType) != null) {
+                    for (IContributionGroup group : groups.get(i)) {
+                        elts.addAll(group.getContributions(pattern, pattern.getCurrentBinding()));
+                    }
+                    if (pattern.getCurrentType() != currentType) {
+                        // the delegate type was changed, so the remaining pointcuts must be matched against the new type
+                        currentType = pattern.getCurrentType();
+                        candidates = findCandidates(pattern, currentType);
+                    }
+                }
+            }
+        }
+        return elts;
+    }
+}
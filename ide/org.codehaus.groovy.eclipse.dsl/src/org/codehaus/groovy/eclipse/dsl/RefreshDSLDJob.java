@@ -10,16 +10,30 @@
  *******************************************************************************/
 package org.codehaus.groovy.eclipse.dsl;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codehaus.groovy.eclipse.GroovyLogManager;
 import org.codehaus.groovy.eclipse.TraceCategory;
+import org.codehaus.groovy.eclipse.dsl.SharedDSLDScripts.SharedScript;
+import org.codehaus.groovy.eclipse.dsl.contributions.IContributionGroup;
 import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.SuggestionsLoader;
 import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsFileProperties;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
 import org.codehaus.groovy.eclipse.dsl.script.DSLDScriptExecutor;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -33,13 +47,13 @@ import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.IJavaModelStatusConstants;
@@ -48,6 +62,7 @@ import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.groovy.search.InferenceResultStore;
 import org.eclipse.jdt.internal.core.ExternalPackageFragmentRoot;
 
 public class RefreshDSLDJob extends Job {
@@ -60,11 +75,21 @@ public class RefreshDSLDJob extends Job {
         private final Set<IStorage> dsldFiles;
         private final Set<String> alreadyAdded; 
         
+        // the stamp of each file found, used to decide which scripts must be executed again
+        private final Map<IStorage, Long> fileStamps = new HashMap<IStorage, Long>();
+        // the archives scanned by the previous refresh, may be null
+        private final Map<IPath, RootScan> previousRoots;
+        private final Map<IPath, RootScan> currentRoots = new HashMap<IPath, RootScan>();
         
         public DSLDResourceVisitor(IProject project) {
+            this(project, null);
+        }
+
+        DSLDResourceVisitor(IProject project, Map<IPath, RootScan> previousRoots) {
             this.project = project;
             this.dsldFiles = new HashSet<IStorage>();
             alreadyAdded = new HashSet<String>();
+            this.previousRoots = previousRoots;
         }
     
         public boolean visit(IResource resource) throws CoreException {
@@ -77,6 +102,7 @@ public class RefreshDSLDJob extends Job {
                 if (!alreadyAdded.contains(file) && (isDSLD(file) || isSuggestionFile(file))) {
                     alreadyAdded.add(file.getName());
                     dsldFiles.add(file);
+                    fileStamps.put(file, file.getModificationStamp());
                     
                 } else {
                     if (alreadyAdded.contains(file.getName())) {
@@ -117,6 +143,24 @@ public class RefreshDSLDJob extends Job {
                 if (root.getKind() == IPackageFragmentRoot.K_BINARY ||
                         // GRECLIPSE-1458 must check source folders, but avoid source folders from same project
                         isSourceFolderFromOtherProject(root)) {
+                    
+                    // archives that have not changed since the last refresh do not need to be opened again
+                    long rootStamp = root.isArchive() ? getArchiveStamp(root) : UNKNOWN_STAMP;
+                    if (rootStamp != UNKNOWN_STAMP) {
+                        RootScan previous = previousRoots != null ? previousRoots.get(root.getPath()) : null;
+                        if (previous != null && previous.stamp == rootStamp) {
+                            currentRoots.put(root.getPath(), previous);
+                            for (IStorage file : previous.files) {
+                                addLibraryFile(file, rootStamp);
+                            }
+                            continue;
+                        }
+                    }
+                    List<IStorage> rootFiles = new ArrayList<IStorage>();
+                    if (root.isArchive()) {
+                        archiveScans.incrementAndGet();
+                    }
+                    
                     IPackageFragment frag = root.getPackageFragment("dsld");
                     if (frag.exists() || root.getElementName().equals(GLOBAL_DSLD_SUPPORT) || root.getElementName().equals(PLUGIN_DSLD_SUPPORT)) {
                         
@@ -151,13 +195,8 @@ public class RefreshDSLDJob extends Job {
                             IFolder dsldFolder = ((IFolder) rootResource).getFolder("dsld");
                             try {
                                 for (IResource resource : dsldFolder.members()) {
-                                    if (resource.getType() == IResource.FILE && !alreadyAdded.contains(resource.getName()) && isDSLD((IFile) resource)) {
-                                        alreadyAdded.add(resource.getName());
-                                        dsldFiles.add((IStorage) resource);
-                                    } else {
-                                        if (alreadyAdded.contains(resource.getName())) {
-                                            GroovyLogManager.manager.log(TraceCategory.DSL, "DSLD File " + resource.getFullPath() + " already added, so skipping.");
-                                        }
+                                    if (resource.getType() == IResource.FILE && isDSLD((IFile) resource)) {
+                                        rootFiles.add((IStorage) resource);
                                     }
                                 }
                             } catch (CoreException e) {
@@ -167,20 +206,9 @@ public class RefreshDSLDJob extends Job {
                             
                             try {
                                 Object[] resources = frag.getNonJavaResources();
-                                // make sure we don't add files with the same names.
-                                // this ensures that a dsld file that is coming from 2 different places is 
-                                // not added twice.
                                 for (Object resource : resources) {
-                                    if (resource instanceof IStorage) {
-                                        IStorage file = (IStorage) resource;
-                                        if (!alreadyAdded.contains(file.getName()) && isDSLD(file)) {
-                                            alreadyAdded.add(file.getName());
-                                            dsldFiles.add(file);
-                                        } else {
-                                            if (alreadyAdded.contains(file.getName())) {
-                                                GroovyLogManager.manager.log(TraceCategory.DSL, "DSLD File " + file.getFullPath() + " already added, so skipping.");
-                                            }
-                                        }
+                                    if (resource instanceof IStorage && isDSLD((IStorage) resource)) {
+                                        rootFiles.add((IStorage) resource);
                                     }
                                 }
                             } catch (JavaModelException e) {
@@ -192,8 +220,45 @@ public class RefreshDSLDJob extends Job {
                             }
                         }
                     }
+                    
+                    if (rootStamp != UNKNOWN_STAMP) {
+                        currentRoots.put(root.getPath(), new RootScan(rootStamp, rootFiles));
+                    }
+                    for (IStorage file : rootFiles) {
+                        addLibraryFile(file, rootStamp);
+                    }
+                }
+            }
+        }
+
+        /**
+         * make sure we don't add files with the same names.
+         * this ensures that a dsld file that is coming from 2 different places is 
+         * not added twice.
+         */
+        private void addLibraryFile(IStorage file, long rootStamp) {
+            if (!alreadyAdded.contains(file.getName())) {
+                alreadyAdded.add(file.getName());
+                dsldFiles.add(file);
+                fileStamps.put(file, file instanceof IFile ? ((IFile) file).getModificationStamp() : rootStamp);
+            } else {
+                GroovyLogManager.manager.log(TraceCategory.DSL, "DSLD File " + file.getFullPath() + " already added, so skipping.");
+            }
+        }
+
+        /**
+         * @return a stamp that changes whenever the archive changes, or {@link #UNKNOWN_STAMP}
+         */
+        private long getArchiveStamp(IPackageFragmentRoot root) {
+            IResource resource = root.getResource();
+            IPath location = resource != null ? resource.getLocation() : root.getPath();
+            if (location != null) {
+                File file = location.toFile();
+                if (file.isFile()) {
+                    return file.lastModified() * 31 + file.length();
                 }
             }
+            return UNKNOWN_STAMP;
         }
 
         private boolean isSourceFolderFromOtherProject(IPackageFragmentRoot root) {
@@ -254,7 +319,45 @@ public class RefreshDSLDJob extends Job {
         }
     }
 
+    /** the stamp of a script or archive whose changes can't be detected */
+    private static final long UNKNOWN_STAMP = -1;
+
+    /** projects are scanned and scripts executed on at most this many threads */
+    private static final int MAX_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "DSLD refresh");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    // the number of archives that have been searched for scripts
+    private static final AtomicInteger archiveScans = new AtomicInteger();
+
+    /**
+     * For testing only.
+     *
+     * @return the number of archives that have been searched for scripts so far
+     */
+    public static int getArchiveScanCount() {
+        return archiveScans.get();
+    }
+
+    /**
+     * For testing only.
+     *
+     * @return true iff the contributions of a script outside of the workspace with this name and contents are kept
+     * for other projects
+     */
+    public static boolean isShared(String scriptName, String scriptContents) {
+        return SharedDSLDScripts.contains(scriptName, scriptContents);
+    }
+
     private final List<IProject> projects;
+    // if true, all scripts are executed again, even if they have not changed since the last refresh
+    private final boolean full;
     private DSLDStoreManager contextStoreManager = GroovyDSLCoreActivator.getDefault().getContextStoreManager();
 
     /**
@@ -274,8 +377,13 @@ public class RefreshDSLDJob extends Job {
      */
     @Deprecated
     public RefreshDSLDJob(List<IProject> projects) {
+        this(projects, false);
+    }
+
+    RefreshDSLDJob(List<IProject> projects, boolean full) {
         super("Refresh DSLD scripts");
         this.projects = contextStoreManager.addInProgress(projects);
+        this.full = full;
     }
     
     protected boolean isDSLD(IStorage file) {
@@ -298,6 +406,7 @@ public class RefreshDSLDJob extends Job {
 
     @Override
     public IStatus run(IProgressMonitor monitor) {
+        ExecutorService pool = null;
         try {
             if (GroovyDSLCoreActivator.getDefault().isDSLDDisabled()) {
                 if (GroovyLogManager.manager.hasLoggers()) {
@@ -311,19 +420,83 @@ public class RefreshDSLDJob extends Job {
                 monitor = new NullProgressMonitor();
             }
             monitor.beginTask("Refresh DSLD scripts", projects.size() * 9);
-            for (IProject project : projects) {
-                IStatus res = Status.OK_STATUS;
+            if (full) {
+                // shared scripts must be executed again as well
+                SharedDSLDScripts.clear();
+            }
+            pool = Executors.newFixedThreadPool(Math.max(1, Math.min(projects.size(), MAX_THREADS)), THREAD_FACTORY);
+            
+            // find the scripts of all projects in parallel
+            final IProgressMonitor cancelMonitor = monitor;
+            List<Future<ProjectRefresh>> scans = new ArrayList<Future<ProjectRefresh>>(projects.size());
+            for (final IProject project : projects) {
+                scans.add(pool.submit(new Callable<ProjectRefresh>() {
+                    public ProjectRefresh call() {
+                        return findScripts(project, cancelMonitor);
+                    }
+                }));
+            }
+            List<ProjectRefresh> refreshes = new ArrayList<ProjectRefresh>(projects.size());
+            for (int i = 0; i < scans.size(); i++) {
                 try {
-                    res = refreshProject(project, new SubProgressMonitor(monitor, 9));
-                } finally {
-                    contextStoreManager.removeInProgress(project);
+                    refreshes.add(scans.get(i).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof OperationCanceledException) {
+                        return Status.CANCEL_STATUS;
+                    }
+                    errorStatuses.add(new Status(IStatus.ERROR, GroovyDSLCoreActivator.PLUGIN_ID,
+                            "Error refreshing DSLDs for " + projects.get(i).getName(), e.getCause()));
                 }
-                if (!res.isOK()) {
-                    errorStatuses.add(res);
-                } else if (res == Status.CANCEL_STATUS) {
-                    return res;
+                monitor.worked(3);
+            }
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+
+            // execute the new and changed scripts. The contributions of the scripts that are not executed, because they have not
+            // changed or because the job is canceled, stay in the store
+            boolean changed = false;
+            List<Future<?>> executions = new ArrayList<Future<?>>();
+            for (final ProjectRefresh refresh : refreshes) {
+                changed |= !refresh.removed.isEmpty() | !refresh.toExecute.isEmpty();
+                for (final IStorage file : refresh.toExecute) {
+                    if (isDSLD(file)) {
+                        executions.add(pool.submit(new Runnable() {
+                            public void run() {
+                                if (!cancelMonitor.isCanceled()) {
+                                    refresh.execute(file);
+                                }
+                            }
+                        }));
+                    } else if (isSuggestionFile(file)) {
+                        refresh.execute(file);
+                    }
                 }
             }
+            for (Future<?> execution : executions) {
+                try {
+                    execution.get();
+                } catch (ExecutionException e) {
+                    errorStatuses.add(new Status(IStatus.ERROR, GroovyDSLCoreActivator.PLUGIN_ID, "Error executing DSLD script", e.getCause()));
+                }
+            }
+            if (monitor.isCanceled()) {
+                if (changed) {
+                    InferenceResultStore.clearAll();
+                }
+                return Status.CANCEL_STATUS;
+            }
+            // only purge the scripts that disappeared once the refresh is complete
+            for (ProjectRefresh refresh : refreshes) {
+                refresh.commit();
+                contextStoreManager.removeInProgress(refresh.project);
+            }
+            monitor.worked(projects.size() * 6);
+            releaseUnusedSharedScripts();
+            if (changed) {
+                // inference results stored for open editors may depend on the purged contributions
+                InferenceResultStore.clearAll();
+            }
             monitor.done();
             
             if (errorStatuses.isEmpty()) {
@@ -335,7 +508,12 @@ public class RefreshDSLDJob extends Job {
                 }
                 return multi;
             }
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
         } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
             // in case the job was exited early, ensure all projects 
             // have their initialization stage removed
             for (IProject project : projects) {
@@ -344,70 +522,202 @@ public class RefreshDSLDJob extends Job {
         }
     }
     
-    private IStatus refreshProject(IProject project, IProgressMonitor monitor) {
-        String event = null;
+    private ProjectRefresh findScripts(IProject project, IProgressMonitor monitor) {
         if (GroovyLogManager.manager.hasLoggers()) {
-            GroovyLogManager.manager.log(TraceCategory.DSL, "Refreshing inferencing scripts for " + project.getName());
-            event = "Refreshing inferencing scripts: " + project.getName();
-            GroovyLogManager.manager.logStart(event);
+            GroovyLogManager.manager.log(TraceCategory.DSL, "Finding inferencing DSL scripts for " + project.getName());
         }
-        
-        monitor.beginTask("Refreshing DSLD files for project " + project.getName(), 9);
-        
         if (monitor.isCanceled()) {
-            return Status.CANCEL_STATUS;
-        }
-        monitor.worked(1);
-
-        
-        // purge existing
-        if (GroovyLogManager.manager.hasLoggers()) {
-            GroovyLogManager.manager.log(TraceCategory.DSL, "Purging old state");
+            throw new OperationCanceledException();
         }
         DSLDStore store = GroovyDSLCoreActivator.getDefault().getContextStoreManager().getDSLDStore(project);
-        store.purgeAll();
-        
+        ProjectState state = getState(store);
+        DSLDResourceVisitor visitor = new DSLDResourceVisitor(project, state.roots);
+        Set<IStorage> files = visitor.findFiles(monitor);
         if (monitor.isCanceled()) {
-            return Status.CANCEL_STATUS;
+            throw new OperationCanceledException();
         }
-        monitor.worked(1);
+        return new ProjectRefresh(project, store, state, files, visitor.fileStamps, visitor.currentRoots, full);
+    }
 
-        // find dslds
-        if (GroovyLogManager.manager.hasLoggers()) {
-            GroovyLogManager.manager.log(TraceCategory.DSL, "Finding inferencing DSL scripts");
+    /**
+     * What the last refresh of a project found and executed
+     */
+    private static class ProjectState {
+        // the archives that were scanned, by path
+        Map<IPath, RootScan> roots = new HashMap<IPath, RootScan>();
+        // the scripts that have been executed into the store, by unique name
+        Map<String, ExecutedScript> executed = new HashMap<String, ExecutedScript>();
+    }
+
+    private static class RootScan {
+        final long stamp;
+        final List<IStorage> files;
+
+        RootScan(long stamp, List<IStorage> files) {
+            this.stamp = stamp;
+            this.files = files;
         }
-        Set<IStorage> findDSLDFiles = new DSLDResourceVisitor(project).findFiles(monitor);
-        
-        if (monitor.isCanceled()) {
-            return Status.CANCEL_STATUS;
+    }
+
+    private static class ExecutedScript {
+        final IStorage file;
+        final long stamp;
+        // the key of the shared contributions of a script outside the workspace, or null
+        String sharedKey;
+
+        ExecutedScript(IStorage file, long stamp) {
+            this.file = file;
+            this.stamp = stamp;
         }
-        monitor.worked(1);
-        
-        // now add the rest
-        for (IStorage file : findDSLDFiles) {
+    }
+
+    /** 
+     * States are kept for as long as their store is.  A new store is created
+     * when the old one is cleared, and that starts a full refresh.
+     */
+    private static final Map<DSLDStore, ProjectState> projectStates = new WeakHashMap<DSLDStore, ProjectState>();
+
+    private static ProjectState getState(DSLDStore store) {
+        synchronized (projectStates) {
+            ProjectState state = projectStates.get(store);
+            if (state == null) {
+                state = new ProjectState();
+                projectStates.put(store, state);
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Forgets the shared scripts that are not in any store any more
+     */
+    private static void releaseUnusedSharedScripts() {
+        Set<String> used = new HashSet<String>();
+        synchronized (projectStates) {
+            for (ProjectState state : projectStates.values()) {
+                synchronized (state) {
+                    for (ExecutedScript script : state.executed.values()) {
+                        if (script.sharedKey != null) {
+                            used.add(script.sharedKey);
+                        }
+                    }
+                }
+            }
+        }
+        SharedDSLDScripts.retainAll(used);
+    }
+
+    /**
+     * The changes to make to the store of a project
+     */
+    private class ProjectRefresh {
+        final IProject project;
+        final DSLDStore store;
+        final ProjectState state;
+        final Map<String, ExecutedScript> found = new HashMap<String, ExecutedScript>();
+        final Map<IPath, RootScan> roots;
+        final List<IStorage> toExecute = new ArrayList<IStorage>();
+        // the scripts that have been executed before, but are no longer on the classpath
+        final List<IStorage> removed = new ArrayList<IStorage>();
+
+        ProjectRefresh(IProject project, DSLDStore store, ProjectState state, Set<IStorage> files, Map<IStorage, Long> stamps,
+                Map<IPath, RootScan> roots, boolean full) {
+            this.project = project;
+            this.store = store;
+            this.state = state;
+            this.roots = roots;
+            for (IStorage file : files) {
+                Long stamp = stamps.get(file);
+                ExecutedScript script = new ExecutedScript(file, stamp != null ? stamp : UNKNOWN_STAMP);
+                found.put(DSLDStore.toUniqueString(file), script);
+                ExecutedScript previous;
+                synchronized (state) {
+                    previous = state.executed.get(DSLDStore.toUniqueString(file));
+                }
+                if (full || previous == null || previous.stamp != script.stamp || script.stamp == UNKNOWN_STAMP) {
+                    toExecute.add(file);
+                } else {
+                    script.sharedKey = previous.sharedKey;
+                }
+            }
+            synchronized (state) {
+                for (ExecutedScript previous : state.executed.values()) {
+                    if (!found.containsKey(DSLDStore.toUniqueString(previous.file))) {
+                        removed.add(previous.file);
+                    }
+                }
+            }
+        }
+
+        void execute(IStorage file) {
             if (GroovyLogManager.manager.hasLoggers()) {
                 GroovyLogManager.manager.log(TraceCategory.DSL, "Processing " + file.getName() + " in project " + project.getName());
             }
-            monitor.subTask("Processing " + file.getName() + " in project " + project.getName());
-            
+            // replace the contributions of the previous version of the script
+            store.purgeIdentifier(file);
             if (isDSLD(file)) {
                 DSLDScriptExecutor executor = new DSLDScriptExecutor(JavaCore.create(project));
-                executor.executeScript(file);
+                if (file instanceof IFile) {
+                    executor.executeScript(file);
+                } else {
+                    executeShared(file, executor);
+                }
             } else if (isSuggestionFile(file)) {
-                new SuggestionsLoader((IFile)file).loadExistingSuggestions();
+                new SuggestionsLoader((IFile) file).loadExistingSuggestions();
             }
-             
-            if (monitor.isCanceled()) {
-                return Status.CANCEL_STATUS;
+        }
+
+        /**
+         * Scripts outside of the workspace usually come from libraries that many projects share,
+         * so they are only executed for the first project and their contributions reused for the others
+         */
+        private void executeShared(IStorage file, DSLDScriptExecutor executor) {
+            String contents;
+            try {
+                contents = executor.getContents(file);
+            } catch (Exception e) {
+                executor.executeScript(file);
+                return;
+            }
+            SharedScript shared = SharedDSLDScripts.getScript(file.getName(), contents);
+            synchronized (shared) {
+                if (shared.getContributions() == null) {
+                    executor.executeScript(file);
+                    Map<IPointcut, List<IContributionGroup>> contributions = store.getContributions(file);
+                    // a script that failed to compile or run contributes nothing, so leave it to be executed again
+                    if (!contributions.isEmpty()) {
+                        shared.setContributions(contributions);
+                    }
+                } else {
+                    if (GroovyLogManager.manager.hasLoggers()) {
+                        GroovyLogManager.manager.log(TraceCategory.DSL, "Reusing contributions of " + file.getName());
+                    }
+                    store.addContributions(file, shared.copyContributions());
+                }
+            }
+            ExecutedScript script = found.get(DSLDStore.toUniqueString(file));
+            if (script != null) {
+                script.sharedKey = shared.key;
             }
         }
-        monitor.worked(6);
-        
-        monitor.done();
-        if (event != null) {
-            GroovyLogManager.manager.logEnd(event, TraceCategory.DSL);
+
+        /**
+         * Removes the contributions of the scripts that are no longer on the classpath, and records what has been executed so
+         * that the next refresh can be incremental
+         */
+        void commit() {
+            synchronized (state) {
+                for (IStorage file : removed) {
+                    if (GroovyLogManager.manager.hasLoggers()) {
+                        GroovyLogManager.manager.log(TraceCategory.DSL, "Purging old state for " + file.getName());
+                    }
+                    store.purgeIdentifier(file);
+                }
+                state.executed.clear();
+                state.executed.putAll(found);
+                state.roots = roots;
+            }
         }
-        return Status.OK_STATUS;
     }
     
     @Override
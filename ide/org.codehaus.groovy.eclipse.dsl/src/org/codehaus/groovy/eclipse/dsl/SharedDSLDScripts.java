@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codehaus.groovy.eclipse.dsl.contributions.DSLContributionGroup;
+import org.codehaus.groovy.eclipse.dsl.contributions.IContributionGroup;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
+
+/**
+ * The pointcuts and contribution groups of DSLD scripts that come from jars and other
+ * folders outside of the workspace, keyed by the name and contents of the script.
+ * Many projects usually share the same libraries, so such a script is executed once and
+ * its pointcuts and groups are then added to the store of every project that has it on
+ * its classpath. Scripts in the workspace are still executed separately for each project.
+ * <p>
+ * A script registers its pointcuts into the store of the project that it is executed for,
+ * so the contributions are taken from that store afterwards.  The pointcuts are shared,
+ * but every other project gets its own copies of the contribution groups, since a group
+ * can only compute the contributions for one lookup at a time.
+ *
+ * @created Jul 26, 2013
+ */
+class SharedDSLDScripts {
+
+    /**
+     * The contributions of a single script
+     */
+    static class SharedScript {
+        final String key;
+        // null until the script has been executed
+        private Map<IPointcut, List<IContributionGroup>> contributions;
+
+        SharedScript(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return the contributions of the script, or null if it has not been executed yet.
+         * Callers must synchronize on this script.
+         */
+        Map<IPointcut, List<IContributionGroup>> getContributions() {
+            return contributions;
+        }
+
+        void setContributions(Map<IPointcut, List<IContributionGroup>> contributions) {
+            this.contributions = contributions;
+        }
+
+        /**
+         * @return the shared pointcuts of the script, with new contribution groups for another project.
+         * Callers must synchronize on this script.
+         */
+        Map<IPointcut, List<IContributionGroup>> copyContributions() {
+            Map<IPointcut, List<IContributionGroup>> copy = new LinkedHashMap<IPointcut, List<IContributionGroup>>();
+            for (Entry<IPointcut, List<IContributionGroup>> entry : contributions.entrySet()) {
+                List<IContributionGroup> groups = new ArrayList<IContributionGroup>(entry.getValue().size());
+                for (IContributionGroup group : entry.getValue()) {
+                    groups.add(group instanceof DSLContributionGroup ? ((DSLContributionGroup) group).copy() : group);
+                }
+                copy.put(entry.getKey(), groups);
+            }
+            return copy;
+        }
+    }
+
+    private static final ConcurrentMap<String, SharedScript> scripts = new ConcurrentHashMap<String, SharedScript>();
+
+    private SharedDSLDScripts() {
+        // static only
+    }
+
+    /**
+     * @return the shared entry for the script, which may not have been executed yet
+     */
+    static SharedScript getScript(String scriptName, String scriptContents) {
+        String key = createKey(scriptName, scriptContents);
+        SharedScript script = scripts.get(key);
+        if (script == null) {
+            SharedScript newScript = new SharedScript(key);
+            script = scripts.putIfAbsent(key, newScript);
+            if (script == null) {
+                script = newScript;
+            }
+        }
+        return script;
+    }
+
+    /**
+     * Forgets all scripts except for the given ones, which are still used by some store
+     */
+    static void retainAll(Collection<String> keys) {
+        scripts.keySet().retainAll(keys);
+    }
+
+    static boolean contains(String scriptName, String scriptContents) {
+        return scripts.containsKey(createKey(scriptName, scriptContents));
+    }
+
+    static void clear() {
+        scripts.clear();
+    }
+
+    private static String createKey(String scriptName, String scriptContents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(scriptName.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(scriptContents.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
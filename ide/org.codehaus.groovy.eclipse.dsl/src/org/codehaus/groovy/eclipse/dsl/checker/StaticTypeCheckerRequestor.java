@@ -24,7 +24,7 @@ import org.codehaus.groovy.ast.GenericsType;
 import org.codehaus.groovy.ast.stmt.BlockStatement;
 import org.codehaus.groovy.eclipse.editor.highlighting.SemanticReferenceRequestor;
 import org.eclipse.jdt.core.IJavaElement;
-import org.eclipse.jdt.groovy.search.ITypeRequestor;
+import org.eclipse.jdt.groovy.search.IReplayableRequestor;
 import org.eclipse.jdt.groovy.search.TypeLookupResult;
 import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
 
@@ -46,7 +46,7 @@ import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
  * @author andrew
  * @created Aug 28, 2011
  */
-public class StaticTypeCheckerRequestor extends SemanticReferenceRequestor implements ITypeRequestor {
+public class StaticTypeCheckerRequestor extends SemanticReferenceRequestor implements IReplayableRequestor {
 
     private final IStaticCheckerHandler handler;
     
@@ -80,6 +80,8 @@ public class DSLContributionGroup extends ContributionGroup {
     
     private boolean isPrimaryExpression;
 
+    private GroovyDSLDContext context;
+
     public DSLContributionGroup(@SuppressWarnings("rawtypes") Closure contributionClosure) {
         this.contributionClosure = contributionClosure;
         
@@ -89,6 +91,17 @@ public class DSLContributionGroup extends ContributionGroup {
         }
     }
 
+    /**
+     * @return a new group for a copy of the same closure.  The copy has its own state,
+     * so that it can be used by another project without waiting for this group.
+     */
+    @SuppressWarnings("rawtypes")
+    public DSLContributionGroup copy() {
+        DSLContributionGroup copy = new DSLContributionGroup(contributionClosure != null ? (Closure) contributionClosure.clone() : null);
+        copy.provider = provider;
+        return copy;
+    }
+
     /**
      * This is the main entry point into the contribution
      */
@@ -105,6 +118,7 @@ public class DSLContributionGroup extends ContributionGroup {
                 this.wormhole = scope.getWormhole();
                 this.staticScope = pattern.isStatic();
                 this.isPrimaryExpression = pattern.isPrimaryNode();
+                this.context = pattern;
                 contributionClosure.call();
             } catch (Exception e) {
                 GroovyLogManager.manager.logException(TraceCategory.DSL, e);
@@ -118,6 +132,7 @@ public class DSLContributionGroup extends ContributionGroup {
                 this.bindings = null;
                 this.currentType = null;
                 this.wormhole = null;
+                this.context = null;
             }
         return result;
         }
@@ -127,10 +142,16 @@ public class DSLContributionGroup extends ContributionGroup {
     @Override
     public Object getProperty(String property) {
         if ("wormhole".equals(property)) {
+            // the wormhole can be changed by the contribution
+            if (context != null) {
+                context.markSideEffects();
+            }
             return wormhole;
         } else if ("currentNode".equals(property)) {
-            return scope.getCurrentNode();
+            return context.getCurrentNode();
         } else if ("enclosingNode".equals(property)) {
+            // the enclosing node changes along with the current node
+            context.getCurrentNode();
             return scope.getEnclosingNode();
         } else if ("currentType".equals(property)) {
             return currentType;
@@ -143,6 +164,7 @@ public class DSLContributionGroup extends ContributionGroup {
     void setDelegateType(Object arg) {
         ClassNode delegate = asClassNode(arg);
         if (delegate != null) {
+            context.markSideEffects();
             // also need to set targetType, but only if primary expression
             scope.addVariable("delegate", delegate, VariableScope.CLOSURE_CLASS);
             scope.addVariable("getDelegate", delegate, VariableScope.CLOSURE_CLASS);
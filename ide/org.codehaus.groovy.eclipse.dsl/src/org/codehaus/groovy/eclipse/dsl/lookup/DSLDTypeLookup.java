@@ -11,9 +11,12 @@
 package org.codehaus.groovy.eclipse.dsl.lookup;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.ast.stmt.BlockStatement;
@@ -23,6 +26,8 @@ import org.codehaus.groovy.eclipse.dsl.DSLPreferences;
 import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
 import org.codehaus.groovy.eclipse.dsl.RefreshDSLDJob;
 import org.codehaus.groovy.eclipse.dsl.contributions.IContributionElement;
+import org.codehaus.groovy.eclipse.dsl.contributions.MethodContributionElement;
+import org.codehaus.groovy.eclipse.dsl.contributions.PropertyContributionElement;
 import org.codehaus.groovy.eclipse.dsl.pointcuts.GroovyDSLDContext;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTResolver;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
@@ -41,6 +46,7 @@ import org.eclipse.jdt.groovy.search.ITypeLookup;
 import org.eclipse.jdt.groovy.search.ITypeResolver;
 import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
 import org.eclipse.jdt.groovy.search.VariableScope;
+import org.eclipse.jdt.groovy.search.VariableScope.CallAndType;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.ui.internal.Workbench;
 
@@ -59,6 +65,88 @@ public class DSLDTypeLookup extends AbstractSimplifiedTypeLookup implements ITyp
     private Set<String> disabledScriptsAsSet;
     private ModuleNode module;
     private JDTResolver resolver;
+
+    /**
+     * Contributions found during this inference session.  Entries whose evaluation
+     * looked at the current node are also keyed by the node.  Evaluations that
+     * changed the scope are never cached.
+     */
+    private final Map<ContributionKey, CachedContributions> contributionCache = new HashMap<ContributionKey, CachedContributions>();
+
+    /**
+     * Everything that pointcuts and contribution groups may look at, other than the
+     * current node. Scopes and types are compared by identity.
+     */
+    private static class ContributionKey {
+        private final VariableScope scope;
+        private final ClassNode targetType;
+        private final boolean isStatic;
+        private final boolean isPrimaryNode;
+        private final CallAndType enclosingCall;
+        private final ASTNode currentNode;
+
+        ContributionKey(GroovyDSLDContext pattern, ASTNode currentNode) {
+            this.scope = pattern.getCurrentScope();
+            this.targetType = pattern.getCurrentType();
+            this.isStatic = pattern.isStatic();
+            this.isPrimaryNode = pattern.isPrimaryNode();
+            // the calls below the innermost one do not change while it is on the stack
+            this.enclosingCall = scope.getEnclosingMethodCallExpression();
+            this.currentNode = currentNode;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(scope);
+            result = 31 * result + System.identityHashCode(targetType);
+            result = 31 * result + System.identityHashCode(enclosingCall);
+            result = 31 * result + System.identityHashCode(currentNode);
+            return 4 * result + (isStatic ? 2 : 0) + (isPrimaryNode ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ContributionKey)) {
+                return false;
+            }
+            ContributionKey other = (ContributionKey) obj;
+            return scope == other.scope && targetType == other.targetType && isStatic == other.isStatic
+                    && isPrimaryNode == other.isPrimaryNode && enclosingCall == other.enclosingCall
+                    && currentNode == other.currentNode;
+        }
+    }
+
+    /**
+     * The contributions for a key, and the contributed methods and properties by name
+     */
+    private static class CachedContributions {
+        private final List<IContributionElement> elts;
+        private final ClassNode currentType;
+        private Map<String, IContributionElement> eltsByName;
+
+        CachedContributions(List<IContributionElement> elts, ClassNode currentType) {
+            this.elts = elts;
+            this.currentType = currentType;
+        }
+
+        /**
+         * @return the first contribution with the given name, or null if there is none
+         */
+        IContributionElement findElement(String name) {
+            if (eltsByName == null) {
+                eltsByName = new HashMap<String, IContributionElement>();
+                for (IContributionElement elt : elts) {
+                    if (elt instanceof PropertyContributionElement || elt instanceof MethodContributionElement) {
+                        String contributionName = elt.contributionName();
+                        if (!eltsByName.containsKey(contributionName)) {
+                            eltsByName.put(contributionName, elt);
+                        }
+                    }
+                }
+            }
+            return eltsByName.get(name);
+        }
+    }
     
     public void setResolverInformation(ModuleNode module, JDTResolver resolver) {
         this.module = module;
@@ -80,6 +168,30 @@ public class DSLDTypeLookup extends AbstractSimplifiedTypeLookup implements ITyp
         }
         store = contextStoreManager.getDSLDStore(unit.getJavaProject());
         store = store.createSubStore(pattern);
+        contributionCache.clear();
+    }
+
+    /**
+     * Finds the contributions for the current state of the pattern, reusing the
+     * results of an earlier evaluation in the same context if possible
+     */
+    private CachedContributions findContributions() {
+        ContributionKey key = new ContributionKey(pattern, null);
+        CachedContributions cached = contributionCache.get(key);
+        if (cached == null) {
+            ContributionKey nodeKey = new ContributionKey(pattern, pattern.getCurrentScope().getCurrentNode());
+            cached = contributionCache.get(nodeKey);
+            if (cached == null) {
+                pattern.resetDependencies();
+                List<IContributionElement> elts = store.findContributions(pattern, disabledScriptsAsSet);
+                cached = new CachedContributions(elts, pattern.getCurrentType());
+                if (!pattern.hasSideEffects()) {
+                    contributionCache.put(pattern.dependsOnCurrentNode() ? nodeKey : key, cached);
+                }
+            }
+        }
+        pattern.setTargetType(cached.currentType);
+        return cached;
     }
 
     // FIXADE Should shortcut if we find a solution earlier.
@@ -88,15 +200,10 @@ public class DSLDTypeLookup extends AbstractSimplifiedTypeLookup implements ITyp
         pattern.setCurrentScope(scope);
         pattern.setTargetType(declaringType);
         pattern.setStatic(isStatic());
-        List<IContributionElement> elts = store.findContributions(pattern, disabledScriptsAsSet);
+        CachedContributions contributions = findContributions();
         declaringType = pattern.getCurrentType(); // may have changed via a setDelegateType
-        for (IContributionElement elt : elts) {
-            TypeAndDeclaration td = elt.lookupType(name, declaringType, pattern.getResolverCache());
-            if (td != null) {
-                return td;
-            }
-        }
-        return null;
+        IContributionElement elt = contributions.findElement(name);
+        return elt != null ? elt.lookupType(name, declaringType, pattern.getResolverCache()) : null;
     }
     
     /**
@@ -109,7 +216,7 @@ public class DSLDTypeLookup extends AbstractSimplifiedTypeLookup implements ITyp
         if (delegateOrThis != null) {
             pattern.setTargetType(delegateOrThis);
             pattern.setStatic(isStatic());
-            store.findContributions(pattern, disabledScriptsAsSet);
+            findContributions();
         }
         // no need to return anything.  setDelegateType is called and evaluated implicitly
     }
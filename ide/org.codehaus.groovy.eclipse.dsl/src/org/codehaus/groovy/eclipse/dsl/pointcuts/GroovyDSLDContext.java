@@ -14,6 +14,7 @@ import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.eclipse.dsl.lookup.ResolverCache;
@@ -134,6 +135,12 @@ public class GroovyDSLDContext {
     private boolean isStatic;
 
     private boolean isPrimaryNode;
+
+    /** true iff the current evaluation has looked at the current node */
+    private boolean dependsOnCurrentNode;
+
+    /** true iff the current evaluation has changed the scope, so its results must not be reused */
+    private boolean hasSideEffects;
     
     /**
      * called by the type lookup, not by the pointcuts
@@ -231,6 +238,45 @@ public class GroovyDSLDContext {
     public ClassNode getCurrentType() {
         return targetType;
     }
+
+    /**
+     * Pointcuts and contribution groups should use this method rather than 
+     * going through the current scope so that the dependency is recorded
+     * @return the node currently being analyzed
+     */
+    public ASTNode getCurrentNode() {
+        dependsOnCurrentNode = true;
+        return currentScope.getCurrentNode();
+    }
+
+    /**
+     * Called by the type lookup before pointcuts are evaluated
+     */
+    public void resetDependencies() {
+        dependsOnCurrentNode = false;
+        hasSideEffects = false;
+    }
+
+    /**
+     * @return true iff the current node has been looked at since {@link #resetDependencies()}
+     */
+    public boolean dependsOnCurrentNode() {
+        return dependsOnCurrentNode;
+    }
+
+    /**
+     * Called by contribution groups that change the current scope
+     */
+    public void markSideEffects() {
+        hasSideEffects = true;
+    }
+
+    /**
+     * @return true iff the scope has been changed since {@link #resetDependencies()}
+     */
+    public boolean hasSideEffects() {
+        return hasSideEffects;
+    }
     
     @SuppressWarnings("cast") // keep cast to make 1.6 compile
     private void getAllSupers(ClassNode type, Set<ClassNode> set) {
@@ -37,7 +37,7 @@ public class CurrentIdentifierPointcut extends FilteringPointcut<Expression> {
      */
     @Override
     public Collection<?> matches(GroovyDSLDContext pattern, Object toMatch) {
-        return super.matches(pattern, pattern.getCurrentScope().getCurrentNode());
+        return super.matches(pattern, pattern.getCurrentNode());
     }
 
     @Override
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.script;
+
+import groovy.lang.GroovyClassLoader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.eclipse.core.runtime.Platform;
+import org.osgi.framework.Bundle;
+
+/**
+ * An on-disk cache of compiled DSLD scripts, kept in the state location of the plugin.
+ * Entries are keyed by the name and contents of the script and by the versions of
+ * Groovy and of this plugin, so a script is only compiled again when one of these changes.
+ * <p>
+ * The classes of a script are always loaded through their own {@link ScriptClassLoader}
+ * whether or not they came from the cache, so the two paths behave the same.
+ * <p>
+ * Set the system property <code>greclipse.dsld.classCache</code> to false to disable the cache.
+ *
+ * @created Jul 24, 2013
+ */
+public class DSLDClassCache {
+
+    private static final boolean ENABLED = !"false".equals(System.getProperty("greclipse.dsld.classCache"));
+
+    private static final int MAGIC = 0x44534C44; // "DSLD"
+
+    /** entries that have not been used for this long are deleted */
+    private static final long MAX_UNUSED_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    private static DSLDClassCache instance;
+
+    static synchronized DSLDClassCache getInstance() {
+        if (instance == null) {
+            instance = new DSLDClassCache(ENABLED ? getCacheDirectory() : null);
+        }
+        return instance;
+    }
+
+    private static File getCacheDirectory() {
+        try {
+            File dir = GroovyDSLCoreActivator.getDefault().getStateLocation().append("dsldClasses").toFile();
+            if (dir.isDirectory() || dir.mkdirs()) {
+                return dir;
+            }
+        } catch (IllegalStateException e) {
+            // no state location, so run without the cache
+        }
+        return null;
+    }
+
+    /**
+     * Loads the classes of a single script
+     */
+    public static class ScriptClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classBytes;
+
+        ScriptClassLoader(ClassLoader parent, Map<String, byte[]> classBytes) {
+            super(parent);
+            this.classBytes = new HashMap<String, byte[]>(classBytes);
+        }
+
+        @Override
+        protected synchronized Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classBytes.remove(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /** null if the cache is disabled */
+    private final File cacheDir;
+
+    private final String versionKey;
+
+    private int compileCount;
+
+    DSLDClassCache(File cacheDir) {
+        this(cacheDir, getVersion("org.codehaus.groovy") + "/" + getVersion(GroovyDSLCoreActivator.PLUGIN_ID));
+    }
+
+    /**
+     * For testing only. Creates a cache in the given folder for the given versions of Groovy and of this plugin
+     */
+    public DSLDClassCache(File cacheDir, String versionKey) {
+        this.cacheDir = cacheDir;
+        this.versionKey = versionKey;
+        if (cacheDir != null) {
+            deleteUnusedEntries();
+        }
+    }
+
+    /**
+     * For testing only.
+     *
+     * @return the number of scripts that were compiled since this cache was created
+     */
+    public synchronized int getCompileCount() {
+        return compileCount;
+    }
+
+    private static String getVersion(String bundleId) {
+        Bundle bundle = Platform.getBundle(bundleId);
+        return bundle != null ? bundle.getVersion().toString() : "unknown";
+    }
+
+    private void deleteUnusedEntries() {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            long oldest = System.currentTimeMillis() - MAX_UNUSED_MILLIS;
+            for (File file : files) {
+                if (file.lastModified() < oldest) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the main class of the compiled script, compiling it only if it is not in the cache
+     *
+     * @param scriptName the name of the script file
+     * @param scriptContents the source of the script
+     * @param gcl the class loader that the script is compiled against
+     * @return the script class, or the first class in the script if it does not have a script class
+     */
+    public Class<?> getScriptClass(String scriptName, String scriptContents, GroovyClassLoader gcl) throws ClassNotFoundException {
+        File entry = cacheDir != null ? new File(cacheDir, createKey(scriptName, scriptContents)) : null;
+
+        Map<String, byte[]> classes = null;
+        if (entry != null && entry.isFile()) {
+            classes = read(entry);
+            if (classes != null) {
+                entry.setLastModified(System.currentTimeMillis());
+                if (GroovyLogManager.manager.hasLoggers()) {
+                    GroovyLogManager.manager.log(TraceCategory.DSL, "Using cached classes for " + scriptName);
+                }
+            }
+        }
+        if (classes == null) {
+            classes = compile(scriptName, scriptContents, gcl);
+            synchronized (this) {
+                compileCount++;
+            }
+            if (entry != null) {
+                write(entry, classes);
+            }
+        }
+
+        // the main class is always first
+        String mainClassName = classes.keySet().iterator().next();
+        return new ScriptClassLoader(gcl, classes).loadClass(mainClassName);
+    }
+
+    private String createKey(String scriptName, String scriptContents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(versionKey.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(scriptName.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(scriptContents.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append(".classes").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the bytes of all classes in the script by class name, starting with the main class
+     */
+    private static Map<String, byte[]> compile(String scriptName, String scriptContents, GroovyClassLoader gcl) {
+        CompilerConfiguration config = CompilerConfiguration.DEFAULT;
+        CompilationUnit unit = new CompilationUnit(config, null, gcl);
+        unit.addSource(new SourceUnit(scriptName, scriptContents, config, gcl, new ErrorCollector(config)));
+        unit.compile(Phases.CLASS_GENERATION);
+
+        String mainClassName = unit.getFirstClassNode().getName();
+        Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+        for (Object obj : unit.getClasses()) {
+            GroovyClass groovyClass = (GroovyClass) obj;
+            if (groovyClass.getName().equals(mainClassName)) {
+                classes.put(groovyClass.getName(), groovyClass.getBytes());
+            }
+        }
+        for (Object obj : unit.getClasses()) {
+            GroovyClass groovyClass = (GroovyClass) obj;
+            if (!classes.containsKey(groovyClass.getName())) {
+                classes.put(groovyClass.getName(), groovyClass.getBytes());
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @return the cached classes or null if the entry cannot be read, in which case it is deleted
+     */
+    private static Map<String, byte[]> read(File entry) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            if (in.readInt() == MAGIC) {
+                int count = in.readInt();
+                Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+                for (int i = 0; i < count; i++) {
+                    String name = in.readUTF();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    classes.put(name, bytes);
+                }
+                if (count > 0) {
+                    return classes;
+                }
+            }
+        } catch (IOException e) {
+            GroovyLogManager.manager.logException(TraceCategory.DSL, e);
+        } finally {
+            close(in);
+        }
+        // corrupt, so make room for the newly compiled classes
+        entry.delete();
+        return null;
+    }
+
+    private static void write(File entry, Map<String, byte[]> classes) {
+        // write to a temporary file first since other refresh jobs may be reading the same entry
+        File temp = new File(entry.getParentFile(), entry.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(classes.size());
+            for (Entry<String, byte[]> clazz : classes.entrySet()) {
+                out.writeUTF(clazz.getKey());
+                out.writeInt(clazz.getValue().length);
+                out.write(clazz.getValue());
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(entry)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            GroovyLogManager.manager.logException(TraceCategory.DSL, e);
+            temp.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -231,9 +231,9 @@ public class DSLDScriptExecutor {
             Object result = null;
             try {
                 String scriptContents = getContents(scriptFile);
-                Class<Script> clazz = null;
+                Class<?> clazz = null;
                 try {
-                    clazz = gcl.parseClass(scriptContents, scriptFile.getName());
+                    clazz = DSLDClassCache.getInstance().getScriptClass(scriptFile.getName(), scriptContents, gcl);
                 } catch (Exception e) {
                     if (GroovyLogManager.manager.hasLoggers()) {
                         StringWriter writer = new StringWriter();
@@ -253,7 +253,7 @@ public class DSLDScriptExecutor {
                     }
                     return result;
                 }
-                Script dsldScript = clazz.newInstance();
+                Script dsldScript = (Script) clazz.newInstance();
                 dsldScript.setBinding(new DSLDScriptBinding(dsldScript));
                 result = dsldScript.run();
             } catch (UnsupportedDSLVersion e) {
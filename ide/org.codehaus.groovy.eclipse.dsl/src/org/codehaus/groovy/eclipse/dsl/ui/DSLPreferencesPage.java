@@ -427,7 +427,7 @@ public class DSLPreferencesPage extends PreferencePage implements IWorkbenchPref
             public IStatus runInUIThread(IProgressMonitor monitor) {
                 GroovyLogManager.manager.log(TraceCategory.DSL, EVENT);
                 GroovyLogManager.manager.logStart(EVENT);
-                GroovyDSLCoreActivator.getDefault().getContextStoreManager().initializeAll(true);
+                GroovyDSLCoreActivator.getDefault().getContextStoreManager().recompileAll(true);
                 if (!DSLPreferencesPage.this.getControl().isDisposed()) {
                     refresh();
                 }
@@ -26,7 +26,7 @@ public class RefreshDSLDFilesActionDelegate implements IWorkbenchWindowActionDel
     private IProject[] groovyProjects;
     
     public void run(IAction action) {
-        GroovyDSLCoreActivator.getDefault().getContextStoreManager().initialize(groovyProjects, false);
+        GroovyDSLCoreActivator.getDefault().getContextStoreManager().recompile(groovyProjects, false);
     }
 
     public void selectionChanged(IAction action, ISelection selection) {
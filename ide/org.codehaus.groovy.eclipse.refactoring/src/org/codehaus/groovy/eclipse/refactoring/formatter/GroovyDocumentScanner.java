@@ -26,6 +26,7 @@ import org.codehaus.groovy.antlr.GroovySourceToken;
 import org.codehaus.groovy.eclipse.core.GroovyCore;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.jdt.groovy.core.util.GroovyScanner;
+import org.eclipse.jdt.groovy.core.util.GroovyScanner.RestartPoint;
 import org.eclipse.jdt.internal.core.util.Util;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
@@ -37,9 +38,12 @@ import org.eclipse.jface.text.ITextSelection;
  * This class provides methods to retrieve tokens for a given IDocument
  * presumed to contain Groovy source code.
  * <p>
- * A sophisticated implementation could try to work incrementally and invalidate
- * only some tokens when the document is changed. This implementation is rather
- * naive and clears the whole cache on every document change.
+ * The document is scanned lazily, only as far as the tokens are asked for.
+ * While scanning, checkpoints are kept from which the scanner can be
+ * restarted. When the document is changed, the tokens are scanned again from
+ * the last checkpoint before the change, until the scanner reaches the state
+ * it had at a checkpoint after the change. The tokens after that are kept and
+ * only moved to their new positions.
  *
  * @author kdvolder
  * @created 2010-05-26
@@ -61,8 +65,58 @@ public class GroovyDocumentScanner implements IDocumentListener {
      */
     protected List<Token> tokens;
 
+    /**
+     * The scanner that scans the tokens after the cached ones. This is null
+     * when the whole document has been scanned.
+     */
     private GroovyScanner tokenScanner;
 
+    /**
+     * A point between two tokens from which scanning can be restarted.
+     */
+    private static class Checkpoint {
+        /** The number of tokens before the checkpoint */
+        int tokenCount;
+
+        /** The offset of the end of the token before the checkpoint */
+        int offset;
+
+        final RestartPoint restartPoint;
+
+        Checkpoint(int tokenCount, int offset, RestartPoint restartPoint) {
+            this.tokenCount = tokenCount;
+            this.offset = offset;
+            this.restartPoint = restartPoint;
+        }
+    }
+
+    /**
+     * The checkpoints of the cached tokens, in document order. The first one is
+     * at the start of the document. This is null when the tokens have not been
+     * scanned by this class.
+     */
+    private List<Checkpoint> checkpoints;
+
+    /**
+     * A checkpoint is taken after every newline token, and at least after
+     * this number of tokens.
+     */
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * The number of chars after a token that the lexer may look at to decide
+     * where the token ends. This is the k of the Groovy lexer.
+     */
+    private static final int LOOKAHEAD = 4;
+
+    /**
+     * The antlr line and column of the end of the changed text, before the
+     * document was changed.
+     */
+    private int oldEndLine;
+
+    private int oldEndColumn;
+
     /** At most this number of scanner errors will be reported */
     private static int logLimit = 4;
 
@@ -76,43 +130,210 @@ public class GroovyDocumentScanner implements IDocumentListener {
     }
 
     public void documentChanged(DocumentEvent event) {
-        reset();
+        if (checkpoints == null) {
+            reset();
+        } else {
+            try {
+                rescan(event);
+            } catch (Exception e) {
+                // start all over again
+                reset();
+            }
+        }
     }
 
-    public void documentAboutToBeChanged(DocumentEvent event) {}
+    public void documentAboutToBeChanged(DocumentEvent event) {
+        if (checkpoints != null) {
+            try {
+                int oldEnd = event.getOffset() + event.getLength();
+                int line = document.getLineOfOffset(oldEnd);
+                oldEndLine = line + 1;
+                oldEndColumn = oldEnd - document.getLineOffset(line) + 1;
+            } catch (BadLocationException e) {
+                reset();
+            }
+        }
+    }
 
     /**
      * This method must be called internally before operating on the list of
      * scanned tokens, to ensure that we have scanned the file at least upto the
      * position that we are interested in.
      * <p>
-     * Current implementation is very naive and just scans the whole file at
-     * once. A smarter implementation could stop scanning when the position of
-     * interest is reached, and keep enough state to be able to scan onward
-     * later if a request for tokens requires it.
+     * Scanning stops at the first token that starts at or after the given
+     * offset, and goes on from there when a later request for tokens requires
+     * it.
      */
     protected void ensureScanned(int end) {
         if (tokens == null) {
             // We haven't started scanning yet. Initialise the scanner and token list.
             tokenScanner = new GroovyScanner(document.get());
-            tokens = getTokensIncludingEOF();
+            tokens = new ArrayList<Token>();
+            checkpoints = new ArrayList<Checkpoint>();
+            checkpoints.add(new Checkpoint(0, 0, tokenScanner.getRestartPoint()));
         }
-    }
-
-    private List<Token> getTokensIncludingEOF() {
-        List<Token> result = new ArrayList<Token>();
-        Token token;
         try {
-            do {
-                token = nextToken();
-                result.add(token);
-            } while (token.getType() != GroovyTokenTypeBridge.EOF);
+            while (tokenScanner != null && (tokens.isEmpty() || getStart(tokens.get(tokens.size() - 1)) < end)) {
+                scanToken();
+            }
         } catch (Exception e) {
-            if (logLimit-- > 0) {
-                Util.log(e);
+            stopScanning(e);
+        }
+    }
+
+    /**
+     * Gives up on scanning the rest of the document after an error.
+     */
+    private void stopScanning(Exception e) {
+        tokenScanner = null;
+        if (logLimit-- > 0) {
+            Util.log(e);
+        }
+    }
+
+    private void scanToken() throws TokenStreamException, BadLocationException {
+        Token token = nextToken();
+        tokens.add(token);
+        if (token.getType() == GroovyTokenTypeBridge.EOF) {
+            tokenScanner = null;
+        } else if (token.getType() == GroovyTokenTypeBridge.NLS
+                || tokens.size() - getLastCheckpoint().tokenCount >= CHECKPOINT_INTERVAL) {
+            checkpoints.add(new Checkpoint(tokens.size(), getEnd(token), tokenScanner.getRestartPoint()));
+        }
+    }
+
+    private Checkpoint getLastCheckpoint() {
+        return checkpoints.get(checkpoints.size() - 1);
+    }
+
+    /**
+     * Scans the tokens again from the last checkpoint before a change, until
+     * the scanner reaches the state of a checkpoint after the change, or until
+     * it gets past the tokens that were scanned before. In the first case the
+     * tokens after that checkpoint are the same as before, so they are moved to
+     * their new positions. In the second case scanning goes on lazily.
+     */
+    private void rescan(DocumentEvent event) throws TokenStreamException, BadLocationException {
+        int offset = event.getOffset();
+        int oldEnd = offset + event.getLength();
+        int newEnd = offset + (event.getText() == null ? 0 : event.getText().length());
+        int delta = newEnd - oldEnd;
+
+        // find the last checkpoint that the change cannot affect, scanning
+        // from the start of the document is always safe
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (checkpoints.get(mid).offset + LOOKAHEAD <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        Checkpoint restart = checkpoints.get(low);
+
+        List<Token> oldTokens = new ArrayList<Token>(tokens.subList(restart.tokenCount, tokens.size()));
+        List<Checkpoint> oldCheckpoints = new ArrayList<Checkpoint>(checkpoints.subList(low + 1, checkpoints.size()));
+        boolean scannedToEnd = tokenScanner == null;
+        tokens.subList(restart.tokenCount, tokens.size()).clear();
+        checkpoints.subList(low + 1, checkpoints.size()).clear();
+        tokenScanner = new GroovyScanner(document, restart.offset, restart.restartPoint);
+
+        int next = 0;
+        while (tokenScanner != null) {
+            Checkpoint last = getLastCheckpoint();
+            while (next < oldCheckpoints.size()
+                    && (oldCheckpoints.get(next).offset < oldEnd || oldCheckpoints.get(next).offset + delta < last.offset)) {
+                next++;
+            }
+            if (next == oldCheckpoints.size()) {
+                // no tokens left to reuse
+                return;
+            }
+            Checkpoint old = oldCheckpoints.get(next);
+            if (old.offset + delta == last.offset && old.restartPoint.hasSameState(last.restartPoint)) {
+                reuse(oldTokens, restart.tokenCount, old, oldCheckpoints.subList(next + 1, oldCheckpoints.size()), delta, newEnd,
+                        scannedToEnd);
+                return;
+            }
+            try {
+                scanToken();
+            } catch (Exception e) {
+                // the same tokens as scanning from the start would give
+                stopScanning(e);
+            }
+        }
+    }
+
+    /**
+     * Appends the tokens and checkpoints that were scanned before a change,
+     * after the checkpoint where the scanner got back into the same state.
+     *
+     * @param oldTokens the old tokens after the checkpoint that was restarted
+     *        from
+     * @param oldTokenCount the number of old tokens before those
+     * @param from the old checkpoint that the scanner got back to
+     * @param oldCheckpoints the old checkpoints after that one
+     * @param delta the difference of the offsets after the change
+     * @param scannedToEnd true if the old tokens go up to the end of the
+     *        document, otherwise scanning is restarted from the last old
+     *        checkpoint
+     */
+    private void reuse(List<Token> oldTokens, int oldTokenCount, Checkpoint from, List<Checkpoint> oldCheckpoints, int delta,
+            int newEnd, boolean scannedToEnd) throws BadLocationException {
+        int start = from.tokenCount - oldTokenCount;
+        int end;
+        if (scannedToEnd) {
+            end = oldTokens.size();
+        } else if (oldCheckpoints.isEmpty()) {
+            end = start;
+        } else {
+            end = oldCheckpoints.get(oldCheckpoints.size() - 1).tokenCount - oldTokenCount;
+        }
+        List<Token> reused = oldTokens.subList(start, end);
+        int tokenDelta = tokens.size() - from.tokenCount;
+
+        int newEndLine = document.getLineOfOffset(newEnd);
+        int newEndColumn = newEnd - document.getLineOffset(newEndLine) + 1;
+        moveTokens(reused, newEndLine + 1 - oldEndLine, newEndColumn - oldEndColumn);
+        tokens.addAll(reused);
+        for (Checkpoint checkpoint : oldCheckpoints) {
+            checkpoint.tokenCount += tokenDelta;
+            checkpoint.offset += delta;
+            checkpoints.add(checkpoint);
+        }
+
+        if (!scannedToEnd) {
+            Checkpoint last = getLastCheckpoint();
+            tokenScanner = new GroovyScanner(document, last.offset, last.restartPoint);
+        } else {
+            tokenScanner = null;
+        }
+    }
+
+    /**
+     * Moves tokens that come after a change to their antlr line and column
+     * after the change.
+     */
+    private void moveTokens(List<Token> moved, int lineDelta, int columnDelta) {
+        for (Token token : moved) {
+            if (lineDelta == 0 && token.getLine() > oldEndLine) {
+                // neither this token nor the ones after it have moved
+                break;
+            }
+            if (token.getLine() == oldEndLine) {
+                token.setColumn(token.getColumn() + columnDelta);
+            }
+            token.setLine(token.getLine() + lineDelta);
+            if (token instanceof GroovySourceToken) {
+                GroovySourceToken gToken = (GroovySourceToken) token;
+                if (gToken.getLineLast() == oldEndLine) {
+                    gToken.setColumnLast(gToken.getColumnLast() + columnDelta);
+                }
+                gToken.setLineLast(gToken.getLineLast() + lineDelta);
             }
         }
-        return result;
     }
 
     private Token nextToken() throws TokenStreamException, BadLocationException {
@@ -134,6 +355,12 @@ public class GroovyDocumentScanner implements IDocumentListener {
      */
     private void reset() {
         tokens = null;
+        checkpoints = null;
+        tokenScanner = null;
+    }
+
+    private int getStart(Token token) throws BadLocationException {
+        return GroovyScanner.getOffset(document, token.getLine(), token.getColumn());
     }
 
     /**
@@ -261,7 +488,8 @@ public class GroovyDocumentScanner implements IDocumentListener {
                 endTokenIndex = endTokenIndex - 1;
             }
             Assert.isTrue(startTokenIndex <= endTokenIndex);
-            return tokens.subList(startTokenIndex, endTokenIndex + 1);
+            // copy, since the list grows when more tokens are scanned
+            return new ArrayList<Token>(tokens.subList(startTokenIndex, endTokenIndex + 1));
         } catch (BadLocationException e) {
             throw new Error(e);
         }
@@ -28,7 +28,7 @@ import org.codehaus.groovy.ast.expr.ConstantExpression;
 import org.codehaus.groovy.ast.expr.Expression;
 import org.codehaus.groovy.eclipse.editor.highlighting.HighlightedTypedPosition.HighlightKind;
 import org.eclipse.jdt.core.IJavaElement;
-import org.eclipse.jdt.groovy.search.ITypeRequestor;
+import org.eclipse.jdt.groovy.search.IReplayableRequestor;
 import org.eclipse.jdt.groovy.search.TypeLookupResult;
 import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
 import org.eclipse.jface.text.Position;
@@ -40,7 +40,7 @@ import org.eclipse.jface.text.Position;
  * @author Andrew Eisenberg
  * @created Oct 29, 2009
  */
-public class SemanticHighlightingReferenceRequestor extends SemanticReferenceRequestor implements ITypeRequestor {
+public class SemanticHighlightingReferenceRequestor extends SemanticReferenceRequestor implements IReplayableRequestor {
     /**
      * this set contains positions in a non-overlapping,
      * increasing lexical order
@@ -12,6 +12,7 @@
 package org.codehaus.jdt.groovy.integration;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
 import org.eclipse.jdt.core.search.SearchPattern;
@@ -57,6 +58,10 @@ class DefaultLanguageSupport implements LanguageSupport {
 				optimizeStringLiterals, useSourceJavadocParser);
 	}
 
+	public void parseAhead(Parser parser, ICompilationUnit[] sourceUnits, int maxUnits) {
+		// the java parser parses the units one by one
+	}
+
 	public ImportMatchLocatorParser getImportMatchLocatorParserParser(ProblemReporter problemReporter,
 			MatchLocator locator) {
 		return new ImportMatchLocatorParser(problemReporter, locator);
@@ -101,6 +106,11 @@ class DefaultLanguageSupport implements LanguageSupport {
 		return false;
 	}
 
+	public boolean[] maybePerformDelegatedSearch(PossibleMatch[] possibleMatches, SearchPattern pattern,
+			SearchRequestor requestor, IProgressMonitor monitor) {
+		return new boolean[possibleMatches.length];
+	}
+
 	public EventHandler getEventHandler() {
 		return DefaultEventHandler.instance;
 	}
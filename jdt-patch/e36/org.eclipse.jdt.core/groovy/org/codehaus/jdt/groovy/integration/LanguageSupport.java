@@ -12,6 +12,7 @@
 package org.codehaus.jdt.groovy.integration;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
 import org.eclipse.jdt.core.search.SearchPattern;
@@ -37,6 +38,14 @@ import org.eclipse.jdt.internal.core.search.matching.PossibleMatch;
 public interface LanguageSupport {
 
 	Parser getParser(Object requestor, CompilerOptions compilerOptions, ProblemReporter problemReporter, boolean parseLiteralExpressionsAsConstants, int variant);
+
+	/**
+	 * Lets the parser of a compiler start on the units of a compile before they are parsed one by one.
+	 * @param parser the parser of the compiler
+	 * @param sourceUnits the units to compile, in the order they will be parsed
+	 * @param maxUnits the number of units of the array to compile
+	 */
+	void parseAhead(Parser parser, ICompilationUnit[] sourceUnits, int maxUnits);
 
 	IndexingParser getIndexingParser(ISourceElementRequestor requestor, IProblemFactory problemFactory, CompilerOptions options, boolean reportLocalDeclarations, 
 			boolean optimizeStringLiterals, boolean useSourceJavadocParser);
@@ -102,6 +111,21 @@ public interface LanguageSupport {
 	 */
 	boolean maybePerformDelegatedSearch(PossibleMatch possibleMatch, SearchPattern pattern, SearchRequestor requestor);
 
+	/**
+	 * Maybe perform the searches for several possible matches using special language support.
+	 * The searches may run in parallel, but their results are sent to the SearchRequestor in the
+	 * order of the possible matches.
+	 * @param possibleMatches the possible matches to look for
+	 * @param pattern
+	 * @param requestor the requestor to send any completed search results to
+	 * @param monitor the progress monitor of the search, which is checked for cancelation, or null
+	 * @return for each possible match, true iff its search was performed
+	 * @throws org.eclipse.core.runtime.OperationCanceledException if the search is canceled before all the results are sent
+	 * @see #maybePerformDelegatedSearch(PossibleMatch, SearchPattern, SearchRequestor)
+	 */
+	boolean[] maybePerformDelegatedSearch(PossibleMatch[] possibleMatches, SearchPattern pattern, SearchRequestor requestor,
+			IProgressMonitor monitor);
+
 	EventHandler getEventHandler();
 
 	void filterNonSourceMembers(BinaryType binaryType);
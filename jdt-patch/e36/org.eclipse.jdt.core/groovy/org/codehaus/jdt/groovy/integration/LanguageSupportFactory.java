@@ -12,6 +12,7 @@
 package org.codehaus.jdt.groovy.integration;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.WorkingCopyOwner;
@@ -43,10 +44,17 @@ public class LanguageSupportFactory {
 	private static LanguageSupport languageSupport;
 	
 	public static final int CommentRecorderParserVariant = 2;
+
+	// Number of threads used to search the groovy possible matches of a single batch. Searching in parallel is off by default.
+	public static final int SEARCH_THREADS = Integer.getInteger("greclipse.search.threads", 1); //$NON-NLS-1$
 	
 	public static Parser getParser(Object requestor, CompilerOptions compilerOptions, ProblemReporter problemReporter, boolean parseLiteralExpressionsAsConstants,int variant) {
 		return getLanguageSupport().getParser(requestor, compilerOptions,problemReporter,parseLiteralExpressionsAsConstants, variant);
 	}
+
+	public static void parseAhead(Parser parser, ICompilationUnit[] sourceUnits, int maxUnits) {
+		getLanguageSupport().parseAhead(parser, sourceUnits, maxUnits);
+	}
 	
 	public static IndexingParser getIndexingParser(ISourceElementRequestor requestor, IProblemFactory problemFactory, CompilerOptions options, boolean reportLocalDeclarations, 
 			boolean optimizeStringLiterals, boolean useSourceJavadocParser) {
@@ -95,6 +103,11 @@ public class LanguageSupportFactory {
 	public static boolean maybePerformDelegatedSearch(PossibleMatch possibleMatch, SearchPattern pattern, SearchRequestor requestor) {
 		return getLanguageSupport().maybePerformDelegatedSearch(possibleMatch, pattern, requestor);
 	}
+
+	public static boolean[] maybePerformDelegatedSearch(PossibleMatch[] possibleMatches, SearchPattern pattern, SearchRequestor requestor,
+			IProgressMonitor monitor) {
+		return getLanguageSupport().maybePerformDelegatedSearch(possibleMatches, pattern, requestor, monitor);
+	}
 	
 	/**
 	 * Removes members from this binary type that are not mapped to locations in the 
@@ -10,8 +10,6 @@
  *******************************************************************************/
 package org.codehaus.jdt.groovy.integration;
 
-import java.util.List;
-
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 
 /**
@@ -22,11 +20,21 @@ import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 public interface ISupplementalIndexer {
 
 	/**
-	 * Provides supplemental indexing for a class file
+	 * Receives the references found by a supplemental indexer
+	 */
+	interface IReferenceRequestor {
+		void acceptNameReference(char[] name);
+
+		void acceptMethodReference(char[] selector, int argCount);
+	}
+
+	/**
+	 * Provides supplemental indexing for a class file. Reports the names and methods that the class file
+	 * refers to dynamically, since these do not appear in its constant pool as member references.
 	 * @param contents The byte contents of the classfile
 	 * @param reader a reader for the class file
-	 * @return a char[] list of extra things to add to the index
+	 * @param requestor receives the references
 	 */
-	List extractNamedReferences(byte[] contents, ClassFileReader reader);
+	void indexReferences(byte[] contents, ClassFileReader reader, IReferenceRequestor requestor);
 
 }
@@ -8,7 +8,7 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
-package org.eclipse.jdt.internal.core.builder;
+package org.eclipse.jdt.internal.core.builder; // GROOVY PATCHED
 
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
@@ -48,6 +48,18 @@ public boolean isOutputFolder() {
 
 public abstract boolean isPackage(String qualifiedPackageName);
 
+// GROOVY start
+static final String[] NO_TYPE_NAMES = new String[0];
+
+/**
+ * Answers the simple names of the types in the given package that this location could find, including member types like X$Y.
+ * Answers an empty array if the package is not in this location, or null if the types of this location cannot be listed.
+ */
+public String[] findTypeNames(String qualifiedPackageName) {
+	return null;
+}
+// GROOVY end
+
 public void cleanup() {
 	// free anything which is not required when the state is saved
 }
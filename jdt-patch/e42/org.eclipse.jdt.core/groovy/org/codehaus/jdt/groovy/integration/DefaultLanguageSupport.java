@@ -12,6 +12,7 @@
 package org.codehaus.jdt.groovy.integration;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.WorkingCopyOwner;
@@ -61,6 +62,10 @@ class DefaultLanguageSupport implements LanguageSupport {
 				optimizeStringLiterals, useSourceJavadocParser);
 	}
 
+	public void parseAhead(Parser parser, ICompilationUnit[] sourceUnits, int maxUnits) {
+		// the java parser parses the units one by one
+	}
+
 	public ImportMatchLocatorParser getImportMatchLocatorParserParser(ProblemReporter problemReporter,
 			MatchLocator locator) {
 		return new ImportMatchLocatorParser(problemReporter, locator);
@@ -105,6 +110,11 @@ class DefaultLanguageSupport implements LanguageSupport {
 		return false;
 	}
 
+	public boolean[] maybePerformDelegatedSearch(PossibleMatch[] possibleMatches, SearchPattern pattern,
+			SearchRequestor requestor, IProgressMonitor monitor) {
+		return new boolean[possibleMatches.length];
+	}
+
 	public EventHandler getEventHandler() {
 		return DefaultEventHandler.instance;
 	}
@@ -10,6 +10,7 @@
  *     Tal Lev-Ami - added package cache for zip files
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.builder;
+// GROOVY PATCHED
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.*;
@@ -33,6 +34,7 @@ static class PackageCacheEntry {
 	long lastModified;
 	long fileSize;
 	SimpleSet packageSet;
+	SimpleLookupTable typeNameTable; // GROOVY
 
 	PackageCacheEntry(long lastModified, long fileSize, SimpleSet packageSet) {
 		this.lastModified = lastModified;
@@ -43,6 +45,45 @@ static class PackageCacheEntry {
 
 static SimpleLookupTable PackageCache = new SimpleLookupTable();
 
+// GROOVY start
+/**
+ * Calculate and cache the type names of each package in the zipFile, along with its package list.
+ * @param jar The ClasspathJar to use, whose package list is known
+ * @return A SimpleLookupTable with the String[] of simple type names of each package name in the zipFile.
+ */
+static SimpleLookupTable findTypeNameTable(ClasspathJar jar) {
+	PackageCacheEntry cacheEntry = (PackageCacheEntry) PackageCache.get(jar.zipFilename);
+	// the entry is current if it holds the package list that the jar found
+	boolean isCurrent = cacheEntry != null && cacheEntry.packageSet == jar.knownPackageNames;
+	if (isCurrent && cacheEntry.typeNameTable != null)
+		return cacheEntry.typeNameTable;
+
+	SimpleLookupTable typeNameTable = new SimpleLookupTable(41);
+	for (Enumeration e = jar.zipFile.entries(); e.hasMoreElements(); ) {
+		String fileName = ((ZipEntry) e.nextElement()).getName();
+		if (!org.eclipse.jdt.internal.compiler.util.Util.isClassFileName(fileName)) continue;
+
+		int last = fileName.lastIndexOf('/');
+		String packageName = last > 0 ? fileName.substring(0, last) : ""; //$NON-NLS-1$
+		ArrayList typeNames = (ArrayList) typeNameTable.get(packageName);
+		if (typeNames == null)
+			typeNameTable.put(packageName, typeNames = new ArrayList());
+		typeNames.add(fileName.substring(last + 1, fileName.length() - SuffixConstants.SUFFIX_CLASS.length));
+	}
+	Object[] keys = typeNameTable.keyTable;
+	for (int i = keys.length; --i >= 0;) {
+		if (keys[i] != null) {
+			ArrayList typeNames = (ArrayList) typeNameTable.get(keys[i]);
+			typeNameTable.put(keys[i], typeNames.toArray(new String[typeNames.size()]));
+		}
+	}
+
+	if (isCurrent)
+		cacheEntry.typeNameTable = typeNameTable;
+	return typeNameTable;
+}
+// GROOVY end
+
 /**
  * Calculate and cache the package list available in the zipFile.
  * @param jar The ClasspathJar to use
@@ -83,6 +124,7 @@ ZipFile zipFile;
 long lastModified;
 boolean closeZipFileAtEnd;
 SimpleSet knownPackageNames;
+SimpleLookupTable typeNameTable; // GROOVY
 AccessRuleSet accessRuleSet;
 
 ClasspathJar(IFile resource, AccessRuleSet accessRuleSet) {
@@ -128,6 +170,7 @@ public void cleanup() {
 		this.zipFile = null;
 	}
 	this.knownPackageNames = null;
+	this.typeNameTable = null; // GROOVY
 }
 
 public boolean equals(Object o) {
@@ -186,6 +229,21 @@ public boolean isPackage(String qualifiedPackageName) {
 	return this.knownPackageNames.includes(qualifiedPackageName);
 }
 
+// GROOVY start
+public String[] findTypeNames(String qualifiedPackageName) {
+	if (!isPackage(qualifiedPackageName)) return NO_TYPE_NAMES; // most common case, and opens the zipFile
+
+	try {
+		if (this.typeNameTable == null)
+			this.typeNameTable = findTypeNameTable(this);
+	} catch (Exception e) { // treat as if the types cannot be listed
+		return null;
+	}
+	String[] typeNames = (String[]) this.typeNameTable.get(qualifiedPackageName);
+	return typeNames == null ? NO_TYPE_NAMES : typeNames;
+}
+// GROOVY end
+
 public long lastModified() {
 	if (this.lastModified == 0)
 		this.lastModified = new File(this.zipFilename).lastModified();
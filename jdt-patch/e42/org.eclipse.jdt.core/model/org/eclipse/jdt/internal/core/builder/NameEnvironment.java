@@ -12,6 +12,7 @@
  *           -  Another problem with inner classes referenced from jars or class folders: "The type ... cannot be resolved"
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.builder;
+// GROOVY PATCHED
 
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
@@ -365,6 +366,42 @@ public boolean isPackage(String qualifiedPackageName) {
 	return false;
 }
 
+// GROOVY start
+/**
+ * Answers the simple names of the types that findClass() could answer in the given package, including member types like X$Y,
+ * or null if they are not known. Like the other lookups, the package name is separated by '/'.
+ * The types of the source files provided at the beginning of the compilation are not included.
+ */
+public SimpleSet findTypeNames(String qualifiedPackageName) {
+	SimpleSet typeNames = new SimpleSet();
+	boolean isPackage = false;
+	for (int i = 0, l = this.binaryLocations.length; i < l; i++) {
+		if (!this.binaryLocations[i].isPackage(qualifiedPackageName)) continue;
+
+		String[] locationTypeNames = this.binaryLocations[i].findTypeNames(qualifiedPackageName);
+		if (locationTypeNames == null) return null;
+		for (int j = locationTypeNames.length; --j >= 0;)
+			typeNames.add(locationTypeNames[j]);
+		isPackage = true;
+	}
+	if (this.additionalUnits != null) {
+		Object[] keys = this.additionalUnits.keyTable;
+		for (int i = keys.length; --i >= 0;) {
+			if (keys[i] == null) continue;
+
+			String qualifiedTypeName = (String) keys[i]; // doesn't have file extension
+			int last = qualifiedTypeName.lastIndexOf('/');
+			if (last < 0 ? qualifiedPackageName.length() == 0
+					: last == qualifiedPackageName.length() && qualifiedTypeName.startsWith(qualifiedPackageName)) {
+				typeNames.add(qualifiedTypeName.substring(last + 1));
+				isPackage = true;
+			}
+		}
+	}
+	return isPackage ? typeNames : null;
+}
+// GROOVY end
+
 void setNames(String[] typeNames, SourceFile[] additionalFiles) {
 	// convert the initial typeNames to a set
 	if (typeNames == null) {
@@ -9,6 +9,7 @@
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.builder;
+// GROOVY PATCHED
 
 import java.io.IOException;
 
@@ -134,6 +135,18 @@ public boolean isPackage(String qualifiedPackageName) {
 	return directoryList(qualifiedPackageName) != null;
 }
 
+// GROOVY start
+public String[] findTypeNames(String qualifiedPackageName) {
+	String[] dirList = directoryList(qualifiedPackageName);
+	if (dirList == null) return NO_TYPE_NAMES;
+
+	String[] typeNames = new String[dirList.length];
+	for (int i = dirList.length; --i >= 0;)
+		typeNames[i] = dirList[i].substring(0, dirList[i].length() - SuffixConstants.SUFFIX_CLASS.length);
+	return typeNames;
+}
+// GROOVY end
+
 public void reset() {
 	this.directoryCache = new SimpleLookupTable(5);
 }
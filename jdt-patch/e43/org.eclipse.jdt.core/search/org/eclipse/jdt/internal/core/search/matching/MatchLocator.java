@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.zip.ZipFile;
@@ -1073,6 +1074,29 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 	// GROOVY start
 	boolean isInterestingProject = LanguageSupportFactory.isInterestingProject(javaProject.getProject());
 	Set alreadyMatched = new HashSet();
+	// the possible matches whose delegated search has already been attempted
+	Set delegated = new HashSet();
+	if (isInterestingProject && LanguageSupportFactory.SEARCH_THREADS > 1) {
+		// search all the interesting possible matches together, so that they can be searched in parallel. Otherwise they are
+		// searched one at a time below, so that their matches are reported in the same order as the other possible matches
+		List interesting = new ArrayList();
+		for (int i = start, maxUnits = start + length; i < maxUnits; i++) {
+			if (possibleMatches[i].isInterestingSourceFile()) {
+				interesting.add(possibleMatches[i]);
+			}
+		}
+		if (!interesting.isEmpty()) {
+			PossibleMatch[] interestingMatches = (PossibleMatch[]) interesting.toArray(new PossibleMatch[interesting.size()]);
+			boolean[] matchesPerformed = LanguageSupportFactory.maybePerformDelegatedSearch(interestingMatches, this.pattern, this.requestor,
+					this.progressMonitor);
+			for (int i = 0; i < interestingMatches.length; i++) {
+				delegated.add(interestingMatches[i]);
+				if (matchesPerformed[i]) {
+					alreadyMatched.add(interestingMatches[i]);
+				}
+			}
+		}
+	}
 	// GROOVY end
 
 	
@@ -1085,7 +1109,7 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 		for (int i = start, maxUnits = start + length; i < maxUnits; i++) {
 			PossibleMatch possibleMatch = possibleMatches[i];
 			// GROOVY start
-			if (isInterestingProject && possibleMatch.isInterestingSourceFile()) {
+			if (isInterestingProject && possibleMatch.isInterestingSourceFile() && !delegated.contains(possibleMatch)) {
 				boolean matchPerformed = LanguageSupportFactory.maybePerformDelegatedSearch(possibleMatch, this.pattern, this.requestor);
 				if (matchPerformed) {
 					alreadyMatched.add(possibleMatch);